@@ -0,0 +1,183 @@
+package spectrum.analyzer.software;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resamples demodulated audio to the output rate and hands it to a {@link PcmSink} on a background thread.
+ * <p>
+ * {@link #write(double[], int)} runs on the DSP thread: it resamples the block with a
+ * {@link PolyphaseResampler}, converts it to clipped 16-bit PCM and queues it without blocking, dropping
+ * the block if the writer has fallen behind. The writer thread drains the queue into the sink, so slow
+ * disk I/O never stalls demodulation.
+ */
+public class AudioOutput {
+    public static final int OUTPUT_RATE = 48_000;
+
+    private static final short[] END_OF_STREAM = new short[0];
+
+    private final PcmSink sink;
+    private final PolyphaseResampler resampler;
+    private final BlockingQueue<short[]> queue;
+    private final AtomicLong writtenSamples = new AtomicLong();
+    private final AtomicLong droppedBlocks = new AtomicLong();
+    private volatile boolean running;
+    private volatile IOException lastError;
+    private volatile double gain = 1.0;
+    private double[] resampled = new double[0];
+    private Thread writerThread;
+
+    /**
+     * Constructs an AudioOutput that resamples to 48 kHz.
+     * @param sink The destination of the PCM stream.
+     * @param inputRate The sample rate of the demodulated input in Hz.
+     */
+    public AudioOutput(PcmSink sink, int inputRate) {
+        this(sink, inputRate, 64);
+    }
+
+    /**
+     * Constructs an AudioOutput.
+     * @param sink The destination of the PCM stream.
+     * @param inputRate The sample rate of the demodulated input in Hz.
+     * @param queueCapacity The number of blocks that may wait for the writer before blocks are dropped.
+     */
+    public AudioOutput(PcmSink sink, int inputRate, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity");
+        }
+        this.sink = sink;
+        this.resampler = new PolyphaseResampler(inputRate, OUTPUT_RATE);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Opens the sink and starts the background writer thread.
+     * @throws IOException If the sink cannot be opened.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        sink.open(OUTPUT_RATE);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "audio-output");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the output after all queued audio has been written and closes the sink.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            queue.put(END_OF_STREAM);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sets the gain applied before conversion to PCM; 1.0 maps an input of 1.0 to full scale.
+     * @param gain The linear gain.
+     */
+    public void setGain(double gain) {
+        this.gain = gain;
+    }
+
+    /**
+     * Resamples a block of demodulated samples and queues it without blocking the caller.
+     * Must be called from one thread at a time, since the resampler state carries across blocks.
+     * @param samples The demodulated samples, nominally within [-1, 1].
+     * @param count The number of samples.
+     * @return True if the block was queued, false if it was dropped.
+     */
+    public boolean write(double[] samples, int count) {
+        if (!running) return false;
+        int capacity = resampler.getMaxOutput(count);
+        if (resampled.length < capacity) {
+            resampled = new double[capacity];
+        }
+        int produced = resampler.process(samples, count, resampled);
+        short[] pcm = new short[produced];
+        double scale = gain * Short.MAX_VALUE;
+        for (int n = 0; n < produced; n++) {
+            double value = resampled[n] * scale;
+            pcm[n] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(value)));
+        }
+        if (queue.offer(pcm)) {
+            return true;
+        }
+        droppedBlocks.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Checks whether the output is running.
+     * @return True if audio is being accepted.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the sink the audio is written to.
+     * @return The sink.
+     */
+    public PcmSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Gets the number of PCM samples written to the sink so far.
+     * @return The sample count.
+     */
+    public long getWrittenSamples() {
+        return writtenSamples.get();
+    }
+
+    /**
+     * Gets the number of blocks dropped because the queue was full.
+     * @return The dropped block count.
+     */
+    public long getDroppedBlocks() {
+        return droppedBlocks.get();
+    }
+
+    /**
+     * Gets the error that stopped the writer, if any.
+     * @return The I/O error, or null.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Drains the queue into the sink until the end-of-stream marker arrives.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                short[] block = queue.take();
+                if (block == END_OF_STREAM) break;
+                sink.write(block, block.length);
+                writtenSamples.addAndGet(block.length);
+            }
+        } catch (IOException e) {
+            lastError = e;
+            running = false;
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package spectrum.analyzer.software;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Frequency allocation table indexed for fast overlap queries.
+ * <p>
+ * Bands are read from CSV lines {@code startHz,stopHz,label[,confidencePercent[,minDbm[,priority]]]};
+ * blank lines, lines starting with {@code #} and an unparsable first line (the header) are skipped. The
+ * bands are sorted by start frequency into flat arrays that form an implicit balanced search tree: the middle of every index range is the
+ * node and {@code maxStop} holds the largest stop frequency of its range. An overlap query descends
+ * only into ranges that can contain a match, so it costs O(log n + k) for k reported bands. When
+ * bands overlap, classification picks the band with the highest priority (0 when not given) and, among
+ * equal priorities, the narrowest band.
+ */
+public class BandPlan {
+    private final double[] starts;
+    private final double[] stops;
+    private final double[] maxStop;
+    private final String[] labels;
+    private final double[] confidences;
+    private final double[] minAmplitudes;
+    private final int[] priorities;
+
+    /**
+     * Constructs a BandPlan from parsed bands.
+     * @param bands The bands.
+     */
+    private BandPlan(List<Band> bands) {
+        bands.sort(Comparator.comparingDouble((Band band) -> band.start).thenComparingDouble(band -> band.stop));
+        int n = bands.size();
+        starts = new double[n];
+        stops = new double[n];
+        maxStop = new double[n];
+        labels = new String[n];
+        confidences = new double[n];
+        minAmplitudes = new double[n];
+        priorities = new int[n];
+        for (int i = 0; i < n; i++) {
+            Band band = bands.get(i);
+            starts[i] = band.start;
+            stops[i] = band.stop;
+            labels[i] = band.label;
+            confidences[i] = band.confidence;
+            minAmplitudes[i] = band.minAmplitude;
+            priorities[i] = band.priority;
+        }
+        buildMaxStop(0, n);
+    }
+
+    /**
+     * Loads the band plan shipped with the application.
+     * @return The default band plan.
+     * @throws IOException If the resource is missing or malformed.
+     */
+    public static BandPlan loadDefault() throws IOException {
+        InputStream stream = BandPlan.class.getResourceAsStream("band_plan.csv");
+        if (stream == null) {
+            throw new IOException("Default band plan not found");
+        }
+        try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Loads a band plan from a CSV file.
+     * @param file The CSV file.
+     * @return The band plan.
+     * @throws IOException If the file cannot be read or a line is malformed.
+     */
+    public static BandPlan load(Path file) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Parses band plan CSV lines.
+     * @param source The CSV text.
+     * @return The band plan.
+     * @throws IOException If the text cannot be read or a line is malformed.
+     */
+    public static BandPlan parse(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        List<Band> bands = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        boolean first = true;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] fields = line.split(",", -1);
+            boolean header = first;
+            first = false;
+            try {
+                if (fields.length < 3) {
+                    throw new NumberFormatException("expected start, stop and label");
+                }
+                double start = Double.parseDouble(fields[0].trim());
+                double stop = Double.parseDouble(fields[1].trim());
+                if (!(stop > start)) {
+                    throw new NumberFormatException("stop must be above start");
+                }
+                double confidence = fields.length > 3 && !fields[3].isBlank() ? Double.parseDouble(fields[3].trim()) : 80.0;
+                double minAmplitude = fields.length > 4 && !fields[4].isBlank()
+                        ? Double.parseDouble(fields[4].trim()) : Double.NEGATIVE_INFINITY;
+                int priority = fields.length > 5 && !fields[5].isBlank() ? Integer.parseInt(fields[5].trim()) : 0;
+                bands.add(new Band(start, stop, fields[2].trim(), confidence, minAmplitude, priority));
+            } catch (NumberFormatException e) {
+                if (header) continue;
+                throw new IOException("Invalid band plan line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        return new BandPlan(bands);
+    }
+
+    /**
+     * Gets the number of bands.
+     * @return The band count.
+     */
+    public int size() {
+        return starts.length;
+    }
+
+    /**
+     * Gets the start frequency of a band.
+     * @param band The band index.
+     * @return The start frequency in Hz.
+     */
+    public double getStart(int band) {
+        return starts[band];
+    }
+
+    /**
+     * Gets the stop frequency of a band.
+     * @param band The band index.
+     * @return The stop frequency in Hz.
+     */
+    public double getStop(int band) {
+        return stops[band];
+    }
+
+    /**
+     * Gets the label of a band.
+     * @param band The band index.
+     * @return The label.
+     */
+    public String getLabel(int band) {
+        return labels[band];
+    }
+
+    /**
+     * Gets the classification confidence of a band.
+     * @param band The band index.
+     * @return The confidence in percent.
+     */
+    public double getConfidence(int band) {
+        return confidences[band];
+    }
+
+    /**
+     * Finds the band of highest priority containing a frequency, ignoring minimum signal levels.
+     * @param frequency The frequency in Hz.
+     * @return The band index, or -1 if no band matches.
+     */
+    public int find(double frequency) {
+        return find(frequency, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds the band of highest priority containing a frequency that a signal of the given level qualifies
+     * for; the narrowest band breaks ties.
+     * @param frequency The frequency in Hz.
+     * @param amplitude The signal level in dBm; bands with a higher minimum level are skipped.
+     * @return The band index, or -1 if no band matches.
+     */
+    public int find(double frequency, double amplitude) {
+        int[] best = {-1};
+        query(frequency, frequency, band -> {
+            if (amplitude <= minAmplitudes[band]) return;
+            if (best[0] < 0 || priorities[band] > priorities[best[0]]) {
+                best[0] = band;
+            } else if (priorities[band] == priorities[best[0]]
+                    && stops[band] - starts[band] < stops[best[0]] - starts[best[0]]) {
+                best[0] = band;
+            }
+        });
+        return best[0];
+    }
+
+    /**
+     * Reports every band overlapping a frequency range, in ascending start order.
+     * @param from The lower edge of the range in Hz.
+     * @param to The upper edge of the range in Hz.
+     * @param consumer Receives the band indices.
+     */
+    public void query(double from, double to, IntConsumer consumer) {
+        query(0, starts.length, from, to, consumer);
+    }
+
+    /**
+     * Visits an index range of the implicit tree.
+     * @param lo The first index, inclusive.
+     * @param hi The last index, exclusive.
+     * @param from The lower edge of the query in Hz.
+     * @param to The upper edge of the query in Hz.
+     * @param consumer Receives the band indices.
+     */
+    private void query(int lo, int hi, double from, double to, IntConsumer consumer) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (maxStop[mid] < from) return;
+            query(lo, mid, from, to, consumer);
+            if (starts[mid] > to) return;
+            if (stops[mid] >= from) consumer.accept(mid);
+            lo = mid + 1;
+        }
+    }
+
+    /**
+     * Computes the largest stop frequency of every index range of the implicit tree.
+     * @param lo The first index, inclusive.
+     * @param hi The last index, exclusive.
+     * @return The largest stop frequency of the range.
+     */
+    private double buildMaxStop(int lo, int hi) {
+        if (lo >= hi) return Double.NEGATIVE_INFINITY;
+        int mid = (lo + hi) >>> 1;
+        double max = Math.max(stops[mid], Math.max(buildMaxStop(lo, mid), buildMaxStop(mid + 1, hi)));
+        maxStop[mid] = max;
+        return max;
+    }
+
+    /**
+     * A parsed band.
+     */
+    private static final class Band {
+        private final double start;
+        private final double stop;
+        private final String label;
+        private final double confidence;
+        private final double minAmplitude;
+        private final int priority;
+
+        Band(double start, double stop, String label, double confidence, double minAmplitude, int priority) {
+            this.start = start;
+            this.stop = stop;
+            this.label = label;
+            this.confidence = confidence;
+            this.minAmplitude = minAmplitude;
+            this.priority = priority;
+        }
+    }
+}
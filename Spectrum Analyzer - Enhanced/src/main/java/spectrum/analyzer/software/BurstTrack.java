@@ -0,0 +1,121 @@
+package spectrum.analyzer.software;
+
+/**
+ * Represents a hopping or pulsed emitter built from a sequence of similar bursts.
+ */
+public class BurstTrack {
+    private final int id;
+    private final int burstCount;
+    private final double hopRate;
+    private final double dwellTime;
+    private final double bandwidth;
+    private final double lowFrequency;
+    private final double highFrequency;
+    private final double peakAmplitude;
+    private final long lastSeen;
+
+    /**
+     * Constructs a BurstTrack with the specified properties.
+     * @param id The track identity.
+     * @param burstCount The number of bursts associated with the track.
+     * @param hopRate The burst rate in hops per second.
+     * @param dwellTime The mean burst duration in milliseconds.
+     * @param bandwidth The mean burst bandwidth in Hz.
+     * @param lowFrequency The lowest burst center frequency in Hz.
+     * @param highFrequency The highest burst center frequency in Hz.
+     * @param peakAmplitude The strongest burst amplitude in dBm.
+     * @param lastSeen The timestamp of the end of the latest burst in milliseconds since the epoch.
+     */
+    public BurstTrack(int id, int burstCount, double hopRate, double dwellTime, double bandwidth,
+                      double lowFrequency, double highFrequency, double peakAmplitude, long lastSeen) {
+        this.id = id;
+        this.burstCount = burstCount;
+        this.hopRate = hopRate;
+        this.dwellTime = dwellTime;
+        this.bandwidth = bandwidth;
+        this.lowFrequency = lowFrequency;
+        this.highFrequency = highFrequency;
+        this.peakAmplitude = peakAmplitude;
+        this.lastSeen = lastSeen;
+    }
+
+    /**
+     * Gets the track identity.
+     * @return The identity.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the number of bursts associated with the track.
+     * @return The burst count.
+     */
+    public int getBurstCount() {
+        return burstCount;
+    }
+
+    /**
+     * Gets the burst rate.
+     * @return The rate in hops per second, or 0 for a single burst.
+     */
+    public double getHopRate() {
+        return hopRate;
+    }
+
+    /**
+     * Gets the mean burst duration.
+     * @return The dwell time in milliseconds.
+     */
+    public double getDwellTime() {
+        return dwellTime;
+    }
+
+    /**
+     * Gets the mean burst bandwidth.
+     * @return The bandwidth in Hz.
+     */
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Gets the lowest burst center frequency.
+     * @return The frequency in Hz.
+     */
+    public double getLowFrequency() {
+        return lowFrequency;
+    }
+
+    /**
+     * Gets the highest burst center frequency.
+     * @return The frequency in Hz.
+     */
+    public double getHighFrequency() {
+        return highFrequency;
+    }
+
+    /**
+     * Gets the strongest burst amplitude.
+     * @return The amplitude in dBm.
+     */
+    public double getPeakAmplitude() {
+        return peakAmplitude;
+    }
+
+    /**
+     * Gets the time the latest burst ended.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public long getLastSeen() {
+        return lastSeen;
+    }
+
+    /**
+     * Tells whether the bursts move in frequency rather than repeat on one channel.
+     * @return True if the burst centers spread over more than one burst bandwidth.
+     */
+    public boolean isHopping() {
+        return highFrequency - lowFrequency > bandwidth;
+    }
+}
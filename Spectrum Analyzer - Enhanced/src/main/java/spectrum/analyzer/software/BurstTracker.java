@@ -0,0 +1,349 @@
+package spectrum.analyzer.software;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds short bursts in the spectrogram and groups them into hopping or pulsed emitter tracks.
+ * <p>
+ * Each frame is thresholded into runs of bins. Runs are labelled into connected components of the
+ * time/frequency plane with a union-find over the components of the previous row: a run joins every
+ * component it overlaps, merging them, and a component is closed as soon as a row has no run touching
+ * it. Only the previous row's runs and the open components are kept, and a component that stays open
+ * for more than {@code windowRows} rows is treated as a continuous emitter rather than a burst, so
+ * memory is bounded by the window depth and a frame costs O(bins). Closed bursts are associated with
+ * the track whose bursts have a similar bandwidth and dwell time and that was seen recently; each
+ * track reports its hop rate, mean dwell time, mean bandwidth and frequency spread.
+ */
+public class BurstTracker {
+    private static final int MERGE_GAP = 1;
+    private static final int MAX_TRACKS = 32;
+    private static final double SIMILARITY = 0.5;
+
+    private int windowRows = 64;
+    private long trackTimeout = 5000;
+
+    private int[] previousStart = new int[0];
+    private int[] previousStop = new int[0];
+    private Blob[] previousBlob = new Blob[0];
+    private int previousCount;
+    private int[] currentStart = new int[0];
+    private int[] currentStop = new int[0];
+    private Blob[] currentBlob = new Blob[0];
+    private final List<Blob> openBlobs = new ArrayList<>();
+    private final List<Track> tracks = new ArrayList<>();
+    private int nextTrackId = 1;
+    private double minFreq;
+    private double freqStep;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long framePeriod;
+    private long frame;
+
+    /**
+     * Sets the window depth, the longest burst in frames before a component counts as continuous.
+     * @param windowRows The window depth in frames.
+     */
+    public synchronized void setWindowRows(int windowRows) {
+        this.windowRows = Math.max(1, windowRows);
+    }
+
+    /**
+     * Sets the time after which a track without new bursts is dropped.
+     * @param trackTimeout The timeout in milliseconds.
+     */
+    public synchronized void setTrackTimeout(long trackTimeout) {
+        this.trackTimeout = trackTimeout;
+    }
+
+    /**
+     * Clears all components and tracks, for example after the span changed.
+     */
+    public synchronized void reset() {
+        previousCount = 0;
+        lastTimestamp = Long.MIN_VALUE;
+        openBlobs.clear();
+        tracks.clear();
+    }
+
+    /**
+     * Processes a frame.
+     * @param timestamp The frame timestamp in milliseconds since the epoch.
+     * @param amplitudes The amplitudes in dBm.
+     * @param threshold The detection threshold per bin in dBm.
+     * @param frameMinFreq The minimum frequency of the frame in Hz.
+     * @param frameMaxFreq The maximum frequency of the frame in Hz.
+     */
+    public synchronized void update(long timestamp, double[] amplitudes, double[] threshold,
+                                    double frameMinFreq, double frameMaxFreq) {
+        int n = amplitudes.length;
+        if (threshold.length != n) return;
+        minFreq = frameMinFreq;
+        freqStep = (frameMaxFreq - frameMinFreq) / n;
+        if (lastTimestamp != Long.MIN_VALUE && timestamp > lastTimestamp) {
+            framePeriod = timestamp - lastTimestamp;
+        }
+        lastTimestamp = timestamp;
+        // Rows are told apart by a frame counter; frames can share a millisecond timestamp
+        frame++;
+        int count = extractRuns(amplitudes, threshold);
+        labelRuns(count, timestamp, amplitudes);
+        closeBlobs();
+        tracks.removeIf(track -> timestamp - track.lastSeen > trackTimeout);
+
+        // The current row becomes the previous row; swap buffers instead of copying
+        int[] starts = previousStart;
+        previousStart = currentStart;
+        currentStart = starts;
+        int[] stops = previousStop;
+        previousStop = currentStop;
+        currentStop = stops;
+        Blob[] blobs = previousBlob;
+        previousBlob = currentBlob;
+        currentBlob = blobs;
+        previousCount = count;
+    }
+
+    /**
+     * Takes a snapshot of the active tracks.
+     * @return The tracks, most active first.
+     */
+    public synchronized List<BurstTrack> getTracks() {
+        List<BurstTrack> result = new ArrayList<>(tracks.size());
+        for (Track track : tracks) {
+            double span = (track.lastStart - track.firstStart) / 1000.0;
+            double hopRate = track.bursts > 1 && span > 0 ? (track.bursts - 1) / span : 0;
+            result.add(new BurstTrack(track.id, track.bursts, hopRate, track.dwell, track.bandwidth,
+                    track.lowFrequency, track.highFrequency, track.peak, track.lastSeen));
+        }
+        result.sort((a, b) -> Integer.compare(b.getBurstCount(), a.getBurstCount()));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Splits a frame into runs of bins above the threshold, bridging gaps of up to {@value #MERGE_GAP} bins.
+     * @param x The amplitudes in dBm.
+     * @param threshold The threshold per bin in dBm.
+     * @return The number of runs.
+     */
+    private int extractRuns(double[] x, double[] threshold) {
+        int n = x.length;
+        if (currentStart.length < n / 2 + 1) {
+            int capacity = n / 2 + 1;
+            currentStart = new int[capacity];
+            currentStop = new int[capacity];
+            currentBlob = new Blob[capacity];
+        }
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (x[i] <= threshold[i]) continue;
+            if (count > 0 && i - currentStop[count - 1] - 1 <= MERGE_GAP) {
+                currentStop[count - 1] = i;
+            } else {
+                currentStart[count] = i;
+                currentStop[count] = i;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Assigns every run of the current row to a component, joining the components it overlaps.
+     * @param count The number of runs in the current row.
+     * @param timestamp The frame timestamp in milliseconds.
+     * @param x The amplitudes in dBm.
+     */
+    private void labelRuns(int count, long timestamp, double[] x) {
+        int p = 0;
+        for (int r = 0; r < count; r++) {
+            int start = currentStart[r], stop = currentStop[r];
+            Blob blob = null;
+            while (p < previousCount && previousStop[p] < start - MERGE_GAP) p++;
+            for (int q = p; q < previousCount && previousStart[q] <= stop + MERGE_GAP; q++) {
+                Blob other = previousBlob[q].find();
+                if (blob == null) {
+                    blob = other;
+                } else if (other != blob) {
+                    blob = union(blob, other);
+                }
+            }
+            if (blob == null) {
+                blob = new Blob(timestamp);
+                openBlobs.add(blob);
+            }
+            double peak = Double.NEGATIVE_INFINITY;
+            for (int i = start; i <= stop; i++) peak = Math.max(peak, x[i]);
+            blob.extend(start, stop, peak, frame, timestamp);
+            currentBlob[r] = blob;
+        }
+    }
+
+    /**
+     * Merges two components.
+     * @param a The first root.
+     * @param b The second root.
+     * @return The surviving root.
+     */
+    private Blob union(Blob a, Blob b) {
+        if (a.rank < b.rank) {
+            Blob swap = a;
+            a = b;
+            b = swap;
+        }
+        b.parent = a;
+        if (a.rank == b.rank) a.rank++;
+        a.startTime = Math.min(a.startTime, b.startTime);
+        a.lowBin = Math.min(a.lowBin, b.lowBin);
+        a.highBin = Math.max(a.highBin, b.highBin);
+        a.peak = Math.max(a.peak, b.peak);
+        a.rows = Math.max(a.rows, b.rows);
+        a.lastFrame = Math.max(a.lastFrame, b.lastFrame);
+        a.lastTime = Math.max(a.lastTime, b.lastTime);
+        a.continuous |= b.continuous;
+        return a;
+    }
+
+    /**
+     * Closes the components that were not continued by the current row and reports the bursts.
+     */
+    private void closeBlobs() {
+        for (int i = openBlobs.size() - 1; i >= 0; i--) {
+            Blob blob = openBlobs.get(i);
+            if (blob.parent != blob) {
+                openBlobs.remove(i); // merged into another component
+                continue;
+            }
+            if (blob.rows > windowRows) {
+                blob.continuous = true;
+            }
+            if (blob.lastFrame == frame) continue;
+            openBlobs.remove(i);
+            if (!blob.continuous) {
+                associate(blob);
+            }
+        }
+    }
+
+    /**
+     * Adds a closed burst to the most similar recent track, or starts a new track.
+     * @param blob The closed component.
+     */
+    private void associate(Blob blob) {
+        double bandwidth = (blob.highBin - blob.lowBin + 1) * freqStep;
+        // Each row covers one frame period, so a single-row burst still has a dwell time
+        double dwell = blob.lastTime - blob.startTime + framePeriod;
+        double center = minFreq + (blob.lowBin + blob.highBin + 1) * 0.5 * freqStep;
+        Track best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Track track : tracks) {
+            double bandwidthError = Math.abs(bandwidth - track.bandwidth) / Math.max(bandwidth, track.bandwidth);
+            double dwellError = Math.abs(dwell - track.dwell) / Math.max(1.0, Math.max(dwell, track.dwell));
+            if (bandwidthError > SIMILARITY || dwellError > SIMILARITY) continue;
+            double score = bandwidthError + dwellError;
+            if (score < bestScore) {
+                best = track;
+                bestScore = score;
+            }
+        }
+        if (best == null) {
+            if (tracks.size() >= MAX_TRACKS) {
+                Track oldest = tracks.get(0);
+                for (Track track : tracks) {
+                    if (track.lastSeen < oldest.lastSeen) oldest = track;
+                }
+                tracks.remove(oldest);
+            }
+            best = new Track(nextTrackId++, blob.startTime, center, bandwidth, dwell, blob.peak);
+            tracks.add(best);
+        } else {
+            best.bursts++;
+            best.bandwidth += (bandwidth - best.bandwidth) / best.bursts;
+            best.dwell += (dwell - best.dwell) / best.bursts;
+            best.lowFrequency = Math.min(best.lowFrequency, center);
+            best.highFrequency = Math.max(best.highFrequency, center);
+            best.peak = Math.max(best.peak, blob.peak);
+            best.lastStart = blob.startTime;
+        }
+        best.lastSeen = blob.lastTime;
+    }
+
+    /**
+     * A connected component of the thresholded spectrogram, also a union-find node.
+     */
+    private static final class Blob {
+        private Blob parent = this;
+        private int rank;
+        private long startTime;
+        private long lastFrame = Long.MIN_VALUE;
+        private long lastTime;
+        private int lowBin = Integer.MAX_VALUE;
+        private int highBin = Integer.MIN_VALUE;
+        private double peak = Double.NEGATIVE_INFINITY;
+        private int rows;
+        private boolean continuous;
+
+        Blob(long startTime) {
+            this.startTime = startTime;
+        }
+
+        /**
+         * Finds the root of the component, halving the path on the way.
+         * @return The root.
+         */
+        Blob find() {
+            Blob node = this;
+            while (node.parent != node) {
+                node.parent = node.parent.parent;
+                node = node.parent;
+            }
+            return node;
+        }
+
+        /**
+         * Adds a run of the current row to the component.
+         * @param start The first bin of the run.
+         * @param stop The last bin of the run.
+         * @param runPeak The strongest amplitude of the run in dBm.
+         * @param row The frame number of the row.
+         * @param timestamp The row timestamp in milliseconds.
+         */
+        void extend(int start, int stop, double runPeak, long row, long timestamp) {
+            lowBin = Math.min(lowBin, start);
+            highBin = Math.max(highBin, stop);
+            peak = Math.max(peak, runPeak);
+            if (lastFrame != row) {
+                rows++;
+                lastFrame = row;
+                lastTime = timestamp;
+            }
+        }
+    }
+
+    /**
+     * A sequence of similar bursts attributed to one emitter.
+     */
+    private static final class Track {
+        private final int id;
+        private final long firstStart;
+        private long lastStart;
+        private long lastSeen;
+        private int bursts = 1;
+        private double bandwidth;
+        private double dwell;
+        private double lowFrequency;
+        private double highFrequency;
+        private double peak;
+
+        Track(int id, long start, double center, double bandwidth, double dwell, double peak) {
+            this.id = id;
+            this.firstStart = start;
+            this.lastStart = start;
+            this.lowFrequency = center;
+            this.highFrequency = center;
+            this.bandwidth = bandwidth;
+            this.dwell = dwell;
+            this.peak = peak;
+        }
+    }
+}
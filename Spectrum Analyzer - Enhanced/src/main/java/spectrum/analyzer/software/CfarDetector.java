@@ -0,0 +1,198 @@
+package spectrum.analyzer.software;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Constant false alarm rate detector that adapts the detection threshold to the local noise floor.
+ * <p>
+ * For every bin the noise is estimated from {@code trainingCells} bins on each side, skipping
+ * {@code guardCells} bins next to the bin under test. The cell-averaging ("CA") mode averages both
+ * windows, "GO" uses the greater and "SO" the smaller of the two window means. Window sums are slid
+ * across the frame in linear power, so a frame costs O(n) regardless of the window size. The
+ * threshold is the noise estimate times the CA-CFAR scale factor {@code N (Pfa^(-1/N) - 1)} for the
+ * configured false alarm probability.
+ */
+public class CfarDetector {
+    private static final double DB_TO_LN = Math.log(10) / 10;
+
+    private String mode = "CA";
+    private int guardCells = 32;
+    private int trainingCells = 64;
+    private double falseAlarmRate = 1e-6;
+    private int mergeGap = 2;
+    private double[] power = new double[0];
+    private double[] scale = new double[0];
+
+    /**
+     * Constructs a CfarDetector with default settings.
+     */
+    public CfarDetector() {
+        updateScale();
+    }
+
+    /**
+     * Sets the detector mode (CA, GO or SO).
+     * @param mode The detector mode.
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Sets the window sizes.
+     * @param guardCells The number of guard bins on each side of the bin under test.
+     * @param trainingCells The number of training bins on each side.
+     */
+    public void setWindow(int guardCells, int trainingCells) {
+        this.guardCells = Math.max(0, guardCells);
+        this.trainingCells = Math.max(1, trainingCells);
+        updateScale();
+    }
+
+    /**
+     * Sets the false alarm probability per bin.
+     * @param falseAlarmRate The probability, between 0 and 1.
+     */
+    public void setFalseAlarmRate(double falseAlarmRate) {
+        this.falseAlarmRate = falseAlarmRate;
+        updateScale();
+    }
+
+    /**
+     * Sets the largest gap in bins that is bridged when joining detections into one emission.
+     * @param mergeGap The gap in bins.
+     */
+    public void setMergeGap(int mergeGap) {
+        this.mergeGap = Math.max(0, mergeGap);
+    }
+
+    /**
+     * Computes the detection threshold of a frame.
+     * @param amplitudes The amplitudes in dBm.
+     * @return The threshold per bin in dBm.
+     */
+    public double[] computeThreshold(double[] amplitudes) {
+        int n = amplitudes.length;
+        if (power.length != n) {
+            power = new double[n];
+        }
+        for (int i = 0; i < n; i++) {
+            power[i] = Math.exp(amplitudes[i] * DB_TO_LN);
+        }
+        double[] threshold = new double[n];
+        int near = guardCells + 1;
+        int far = guardCells + trainingCells;
+        // Windows for bin i: left [i - far, i - near], right [i + near, i + far], clipped to the frame
+        double leftSum = 0, rightSum = 0;
+        for (int j = near; j <= Math.min(far, n - 1); j++) {
+            rightSum += power[j];
+        }
+        for (int i = 0; i < n; i++) {
+            int leftCount = Math.max(0, Math.min(i - near, n - 1) - Math.max(0, i - far) + 1);
+            int rightCount = Math.max(0, Math.min(i + far, n - 1) - Math.max(0, i + near) + 1);
+            double noise;
+            int cells;
+            if (leftCount == 0 || rightCount == 0 || mode.equals("CA")) {
+                cells = leftCount + rightCount;
+                noise = cells > 0 ? (leftSum + rightSum) / cells : power[i];
+            } else {
+                double leftMean = leftSum / leftCount, rightMean = rightSum / rightCount;
+                boolean left = mode.equals("GO") ? leftMean >= rightMean : leftMean <= rightMean;
+                noise = left ? leftMean : rightMean;
+                cells = left ? leftCount : rightCount;
+            }
+            threshold[i] = 10 * Math.log10(Math.max(noise, Double.MIN_NORMAL) * scale[Math.max(1, cells)]);
+
+            // Slide both windows one bin to the right
+            int enterLeft = i + 1 - near, leaveLeft = i - far;
+            if (enterLeft >= 0 && enterLeft < n) leftSum += power[enterLeft];
+            if (leaveLeft >= 0) leftSum = remove(leftSum, power[leaveLeft], Math.max(0, leaveLeft + 1), enterLeft);
+            int enterRight = i + 1 + far, leaveRight = i + 1 + near - 1;
+            if (enterRight < n) rightSum += power[enterRight];
+            if (leaveRight < n) rightSum = remove(rightSum, power[leaveRight], leaveRight + 1, Math.min(enterRight, n - 1));
+        }
+        return threshold;
+    }
+
+    /**
+     * Joins bins above the threshold into emissions.
+     * @param amplitudes The amplitudes in dBm.
+     * @param threshold The threshold per bin in dBm.
+     * @param minFreq The minimum frequency of the frame in Hz.
+     * @param maxFreq The maximum frequency of the frame in Hz.
+     * @return The detected emissions, ordered by frequency.
+     */
+    public List<Emission> detect(double[] amplitudes, double[] threshold, double minFreq, double maxFreq) {
+        int n = amplitudes.length;
+        double freqStep = (maxFreq - minFreq) / n;
+        List<Emission> emissions = new ArrayList<>();
+        int start = -1, stop = -1, peak = -1;
+        for (int i = 0; i < n; i++) {
+            if (amplitudes[i] <= threshold[i]) continue;
+            if (start >= 0 && i - stop - 1 > mergeGap) {
+                emissions.add(toEmission(amplitudes, start, stop, peak, minFreq, freqStep));
+                start = -1;
+            }
+            if (start < 0) {
+                start = i;
+                peak = i;
+            }
+            if (amplitudes[i] > amplitudes[peak]) peak = i;
+            stop = i;
+        }
+        if (start >= 0) {
+            emissions.add(toEmission(amplitudes, start, stop, peak, minFreq, freqStep));
+        }
+        return emissions;
+    }
+
+    /**
+     * Creates an emission from a run of bins, integrating the power of every bin in the run.
+     * @param amplitudes The amplitudes in dBm.
+     * @param start The first bin.
+     * @param stop The last bin.
+     * @param peak The strongest bin.
+     * @param minFreq The minimum frequency of the frame in Hz.
+     * @param freqStep The bin width in Hz.
+     * @return The emission.
+     */
+    private static Emission toEmission(double[] amplitudes, int start, int stop, int peak, double minFreq,
+                                       double freqStep) {
+        double sum = 0;
+        for (int i = start; i <= stop; i++) {
+            sum += Math.exp(amplitudes[i] * DB_TO_LN);
+        }
+        return new Emission(start, stop, minFreq + start * freqStep, minFreq + (stop + 1) * freqStep,
+                minFreq + peak * freqStep, amplitudes[peak], 10 * Math.log10(sum));
+    }
+
+    /**
+     * Removes a value from a running sum, recomputing the sum when the removed value dominated it and
+     * the subtraction would leave only rounding error.
+     * @param sum The running sum.
+     * @param value The value leaving the window.
+     * @param from The first bin remaining in the window.
+     * @param to The last bin remaining in the window.
+     * @return The updated sum.
+     */
+    private double remove(double sum, double value, int from, int to) {
+        double result = sum - value;
+        if (result > value * 1e-9) return result;
+        result = 0;
+        for (int j = from; j <= to; j++) {
+            result += power[j];
+        }
+        return result;
+    }
+
+    /**
+     * Precomputes the CA-CFAR scale factor for every possible number of training cells.
+     */
+    private void updateScale() {
+        scale = new double[2 * trainingCells + 1];
+        for (int cells = 1; cells < scale.length; cells++) {
+            scale[cells] = cells * (Math.pow(falseAlarmRate, -1.0 / cells) - 1);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Demodulates a raster of equally spaced channels at once: a {@link Channelizer} splits the IQ stream and
+ * every selected channel feeds its own {@link Demodulator}.
+ * <p>
+ * The channelizer needs a power-of-two channel count, so the spacing is the requested one rounded to the
+ * nearest sample rate divided by a power of two. The selected channels sit side by side centred on DC,
+ * placed by {@link #rasterOffset(int, int)} like the channel lines of the spectrum display. An even
+ * number of channels puts the channel centres half a spacing off the channelizer's grid, so the input is
+ * first mixed down by half a spacing. The channel outputs are narrow, so only the analog modes (AM, FM,
+ * PM) are demodulated; the digital modes leave the bank idle.
+ */
+public class ChannelBank {
+    private static final int MIN_CHANNELS = 8;
+    private static final int MAX_CHANNELS = 4096;
+
+    private final Channelizer channelizer;
+    private final int[] channels;
+    private final double[] offsets;
+    private final double[] mixCos;
+    private final double[] mixSin;
+    private int mixPhase;
+    private double[] mixedI = new double[0];
+    private double[] mixedQ = new double[0];
+    private final Demodulator[] demodulators;
+    private final double[][] channelI;
+    private final double[][] channelQ;
+    private final double[][] outputs;
+    private final int[] outputCounts;
+
+    /**
+     * Constructs a ChannelBank with no demodulation selected.
+     * @param sampleRate The IQ sample rate in Hz.
+     * @param spacing The requested channel spacing in Hz.
+     * @param count The number of channels to demodulate.
+     */
+    public ChannelBank(double sampleRate, double spacing, int count) {
+        int exponent = (int) Math.round(Math.log(sampleRate / spacing) / Math.log(2));
+        int size = Math.max(MIN_CHANNELS, Math.min(MAX_CHANNELS, 1 << Math.max(0, Math.min(30, exponent))));
+        this.channelizer = new Channelizer(sampleRate, size);
+        int selected = Math.min(count, size);
+        this.channels = new int[selected];
+        this.offsets = new double[selected];
+        this.demodulators = new Demodulator[selected];
+        this.channelI = new double[selected][0];
+        this.channelQ = new double[selected][0];
+        this.outputs = new double[selected][0];
+        this.outputCounts = new int[selected];
+        boolean halfSpacing = selected % 2 == 0;
+        for (int c = 0; c < selected; c++) {
+            offsets[c] = rasterOffset(c, selected);
+            channels[c] = (int) Math.floor(offsets[c]);
+            demodulators[c] = new Demodulator(channelizer.getOutputRate());
+        }
+        // Half a spacing is pi / size radians per sample, so the mixer repeats every 2 * size samples
+        int period = halfSpacing ? 2 * size : 0;
+        this.mixCos = new double[period];
+        this.mixSin = new double[period];
+        for (int n = 0; n < period; n++) {
+            mixCos[n] = Math.cos(Math.PI * n / size);
+            mixSin[n] = -Math.sin(Math.PI * n / size);
+        }
+    }
+
+    /**
+     * Places a channel of a raster of equally spaced channels centred on the middle of the raster.
+     * @param channel The channel, from 0 to {@code count} - 1.
+     * @param count The number of channels.
+     * @return The centre of the channel relative to the raster centre, in channel spacings.
+     */
+    public static double rasterOffset(int channel, int count) {
+        return channel - (count - 1) / 2.0;
+    }
+
+    /**
+     * Gets the number of demodulated channels.
+     * @return The channel count.
+     */
+    public int getChannelCount() {
+        return channels.length;
+    }
+
+    /**
+     * Gets the centre frequency of a demodulated channel relative to the IQ centre.
+     * @param channel The channel, from 0 to {@link #getChannelCount()} - 1.
+     * @return The offset in Hz.
+     */
+    public double getChannelOffset(int channel) {
+        return offsets[channel] * channelizer.getChannelSpacing();
+    }
+
+    /**
+     * Gets the channel spacing actually used.
+     * @return The spacing in Hz.
+     */
+    public double getChannelSpacing() {
+        return channelizer.getChannelSpacing();
+    }
+
+    /**
+     * Gets the sample rate of the channel outputs.
+     * @return The sample rate in Hz.
+     */
+    public double getSampleRate() {
+        return channelizer.getOutputRate();
+    }
+
+    /**
+     * Selects the demodulation type of every channel.
+     * @param type The demodulation type; anything but AM, FM or PM switches the channels off.
+     */
+    public synchronized void setType(String type) {
+        boolean analog = type.equals("AM") || type.equals("FM") || type.equals("PM");
+        for (Demodulator demodulator : demodulators) {
+            demodulator.setType(analog ? type : "None");
+        }
+        channelizer.reset();
+        mixPhase = 0;
+        Arrays.fill(outputCounts, 0);
+    }
+
+    /**
+     * Sets the FM de-emphasis time constant of every channel.
+     * @param deemphasis The time constant in seconds, or 0 for none.
+     */
+    public synchronized void setDeemphasis(double deemphasis) {
+        for (Demodulator demodulator : demodulators) {
+            demodulator.setDeemphasis(deemphasis);
+        }
+    }
+
+    /**
+     * Channelizes a block of IQ samples and demodulates the selected channels in parallel.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     */
+    public synchronized void process(double[] i, double[] q, int count) {
+        if (!demodulators[0].isActive()) return;
+        double[] inputI = i, inputQ = q;
+        if (mixCos.length > 0) {
+            mix(i, q, count);
+            inputI = mixedI;
+            inputQ = mixedQ;
+        }
+        int produced = channelizer.process(inputI, inputQ, count);
+        if (channelI[0].length < produced) {
+            for (int c = 0; c < channels.length; c++) {
+                channelI[c] = new double[produced];
+                channelQ[c] = new double[produced];
+                outputs[c] = new double[produced];
+            }
+        }
+        IntStream.range(0, channels.length).parallel().forEach(c -> {
+            int n = channelizer.copyChannel(channels[c], channelI[c], channelQ[c]);
+            outputCounts[c] = demodulators[c].demodulate(channelI[c], channelQ[c], n, outputs[c]);
+        });
+    }
+
+    /**
+     * Mixes a block down by half a channel spacing into the mixer buffers, continuing the mixer phase.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     */
+    private void mix(double[] i, double[] q, int count) {
+        int period = mixCos.length;
+        if (mixedI.length < count) {
+            mixedI = new double[count];
+            mixedQ = new double[count];
+        }
+        for (int n = 0; n < count; n++) {
+            double c = mixCos[mixPhase], s = mixSin[mixPhase];
+            mixedI[n] = i[n] * c - q[n] * s;
+            mixedQ[n] = i[n] * s + q[n] * c;
+            mixPhase = mixPhase + 1 == period ? 0 : mixPhase + 1;
+        }
+    }
+
+    /**
+     * Copies the latest block of demodulated samples of one channel.
+     * @param channel The channel, from 0 to {@link #getChannelCount()} - 1.
+     * @param out Receives up to {@code out.length} samples.
+     * @return The number of samples copied, 0 if the channels are not demodulated.
+     */
+    public synchronized int copyOutput(int channel, double[] out) {
+        int count = Math.min(out.length, outputCounts[channel]);
+        System.arraycopy(outputs[channel], 0, out, 0, count);
+        return count;
+    }
+}
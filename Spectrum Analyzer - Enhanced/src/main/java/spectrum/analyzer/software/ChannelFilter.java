@@ -0,0 +1,282 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Streaming low-pass channel filter for complex baseband IQ samples.
+ * <p>
+ * The filter is a Kaiser-windowed sinc with a cutoff at half the channel bandwidth and a transition band
+ * of {@value #TRANSITION_FRACTION} of the bandwidth, so narrow channels need thousands of taps. Short
+ * filters run in direct form. Filters longer than {@value #DIRECT_FORM_MAX_TAPS} taps, where fast
+ * convolution measured faster in {@link ChannelFilterBenchmark}, run as overlap-save: the input is cut into FFT frames that overlap by
+ * {@code taps - 1} samples, each frame is transformed, multiplied by the cached spectrum of the taps and
+ * transformed back, and only the samples free of circular wrap-around are kept. Overlap-save emits whole
+ * hops, so its output is delayed by one hop, which is zero-filled after a reset.
+ * <p>
+ * Designs, including the tap spectrum, are cached per bandwidth, so switching back and forth between
+ * channels costs no redesign.
+ */
+public class ChannelFilter {
+    private static final double STOPBAND_ATTENUATION = 60.0;
+    private static final double TRANSITION_FRACTION = 0.2;
+    private static final int MAX_TAPS = 8191;
+    private static final int DIRECT_FORM_MAX_TAPS = 55;
+    private static final int CACHE_SIZE = 8;
+
+    private final double sampleRate;
+    private final int directFormMaxTaps;
+    private final Map<Long, Design> designs = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Design> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private Design design;
+
+    private double[] historyI = new double[0];
+    private double[] historyQ = new double[0];
+    private double[] frameI = new double[0];
+    private double[] frameQ = new double[0];
+    private double[] workI = new double[0];
+    private double[] workQ = new double[0];
+    private int frameFill;
+    private double[] readyI = new double[0];
+    private double[] readyQ = new double[0];
+    private int ready;
+
+    /**
+     * A filter design: the taps and, for fast convolution, the FFT and the spectrum of the taps.
+     */
+    private static final class Design {
+        final double[] taps;
+        final Fft fft;
+        final double[] spectrumI;
+        final double[] spectrumQ;
+
+        Design(double[] taps, Fft fft, double[] spectrumI, double[] spectrumQ) {
+            this.taps = taps;
+            this.fft = fft;
+            this.spectrumI = spectrumI;
+            this.spectrumQ = spectrumQ;
+        }
+
+        int hop() {
+            return fft.getSize() - taps.length + 1;
+        }
+    }
+
+    /**
+     * Constructs a ChannelFilter that passes everything until a bandwidth is set.
+     * @param sampleRate The IQ sample rate in Hz.
+     */
+    public ChannelFilter(double sampleRate) {
+        this(sampleRate, DIRECT_FORM_MAX_TAPS);
+    }
+
+    /**
+     * Constructs a ChannelFilter with its own crossover to fast convolution, for measuring both forms.
+     * @param sampleRate The IQ sample rate in Hz.
+     * @param directFormMaxTaps The longest filter that runs in direct form.
+     */
+    ChannelFilter(double sampleRate, int directFormMaxTaps) {
+        this.sampleRate = sampleRate;
+        this.directFormMaxTaps = directFormMaxTaps;
+    }
+
+    /**
+     * Selects the channel bandwidth, reusing a cached design if there is one, and clears the filter state.
+     * @param bandwidth The two-sided bandwidth in Hz; 0, or at least the sample rate, turns the filter off.
+     */
+    public synchronized void setBandwidth(double bandwidth) {
+        if (bandwidth <= 0 || bandwidth >= sampleRate) {
+            design = null;
+        } else {
+            design = designs.computeIfAbsent(Math.round(bandwidth), key -> design(key));
+        }
+        reset();
+    }
+
+    /**
+     * Tells whether a bandwidth is selected.
+     * @return True if samples are filtered, false if they pass unchanged.
+     */
+    public synchronized boolean isActive() {
+        return design != null;
+    }
+
+    /**
+     * Gets the length of the selected filter.
+     * @return The number of taps, 0 if the filter is off.
+     */
+    public synchronized int getTaps() {
+        return design == null ? 0 : design.taps.length;
+    }
+
+    /**
+     * Tells whether the selected filter runs as overlap-save fast convolution.
+     * @return True for overlap-save, false for direct form or no filter.
+     */
+    public synchronized boolean isFastConvolution() {
+        return design != null && design.fft != null;
+    }
+
+    /**
+     * Gets the latency that overlap-save adds on top of the group delay of the taps.
+     * @return The delay in samples, 0 for direct form or no filter.
+     */
+    synchronized int getBlockDelay() {
+        return design == null || design.fft == null ? 0 : design.hop();
+    }
+
+    /**
+     * Clears the filter history and the overlap-save frame.
+     */
+    public synchronized void reset() {
+        Arrays.fill(historyI, 0);
+        Arrays.fill(historyQ, 0);
+        if (design == null) return;
+        int history = design.taps.length - 1;
+        if (design.fft == null) {
+            if (historyI.length < history) {
+                historyI = new double[history];
+                historyQ = new double[history];
+            }
+            return;
+        }
+        int size = design.fft.getSize();
+        frameI = new double[size];
+        frameQ = new double[size];
+        workI = new double[size];
+        workQ = new double[size];
+        frameFill = history;
+        // One hop of silence makes up the latency, so every call can return as many samples as it got
+        int hop = design.hop();
+        readyI = new double[2 * hop];
+        readyQ = new double[2 * hop];
+        ready = hop;
+    }
+
+    /**
+     * Filters a block of IQ samples, continuing from the state left by the previous block. The output
+     * arrays may be the input arrays.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @param outI Receives the filtered in-phase samples.
+     * @param outQ Receives the filtered quadrature samples.
+     */
+    public synchronized void process(double[] i, double[] q, int count, double[] outI, double[] outQ) {
+        if (design == null) {
+            if (outI != i) System.arraycopy(i, 0, outI, 0, count);
+            if (outQ != q) System.arraycopy(q, 0, outQ, 0, count);
+        } else if (design.fft == null) {
+            directForm(i, q, count, outI, outQ);
+        } else {
+            overlapSave(i, q, count, outI, outQ);
+        }
+    }
+
+    /**
+     * Designs a filter for a bandwidth.
+     * @param bandwidth The two-sided bandwidth in Hz.
+     * @return The design.
+     */
+    private Design design(double bandwidth) {
+        int length = FirDesign.kaiserLength(STOPBAND_ATTENUATION, TRANSITION_FRACTION * bandwidth / sampleRate);
+        length = Math.min(MAX_TAPS, length | 1);
+        double[] taps = FirDesign.lowpass(length, bandwidth / 2 / sampleRate, STOPBAND_ATTENUATION);
+        if (length <= directFormMaxTaps) {
+            return new Design(taps, null, null, null);
+        }
+        // Four times the filter length keeps about three quarters of every frame as output
+        int size = Integer.highestOneBit(4 * length - 1) << 1;
+        Fft fft = new Fft(size);
+        double[] spectrumI = Arrays.copyOf(taps, size);
+        double[] spectrumQ = new double[size];
+        fft.transform(spectrumI, spectrumQ, 0);
+        return new Design(taps, fft, spectrumI, spectrumQ);
+    }
+
+    /**
+     * Runs the direct-form convolution over a block with the last {@code taps - 1} inputs carried over.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @param outI Receives the filtered in-phase samples.
+     * @param outQ Receives the filtered quadrature samples.
+     */
+    private void directForm(double[] i, double[] q, int count, double[] outI, double[] outQ) {
+        double[] taps = design.taps;
+        int delay = taps.length - 1;
+        if (historyI.length < delay + count) {
+            historyI = Arrays.copyOf(historyI, delay + count);
+            historyQ = Arrays.copyOf(historyQ, delay + count);
+        }
+        System.arraycopy(i, 0, historyI, delay, count);
+        System.arraycopy(q, 0, historyQ, delay, count);
+        int half = taps.length / 2;
+        for (int n = 0; n < count; n++) {
+            // The taps are symmetric with an odd length, so mirrored inputs share a multiply
+            double sumI = taps[half] * historyI[n + half], sumQ = taps[half] * historyQ[n + half];
+            for (int k = 0; k < half; k++) {
+                sumI += taps[k] * (historyI[n + k] + historyI[n + delay - k]);
+                sumQ += taps[k] * (historyQ[n + k] + historyQ[n + delay - k]);
+            }
+            outI[n] = sumI;
+            outQ[n] = sumQ;
+        }
+        System.arraycopy(historyI, count, historyI, 0, delay);
+        System.arraycopy(historyQ, count, historyQ, 0, delay);
+    }
+
+    /**
+     * Feeds a block through the overlap-save frames and returns the same number of delayed samples.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @param outI Receives the filtered in-phase samples.
+     * @param outQ Receives the filtered quadrature samples.
+     */
+    private void overlapSave(double[] i, double[] q, int count, double[] outI, double[] outQ) {
+        int size = design.fft.getSize();
+        int history = design.taps.length - 1;
+        int hop = design.hop();
+        if (readyI.length < ready + count + hop) {
+            readyI = Arrays.copyOf(readyI, ready + count + hop);
+            readyQ = Arrays.copyOf(readyQ, ready + count + hop);
+        }
+        for (int consumed = 0; consumed < count; ) {
+            int take = Math.min(count - consumed, size - frameFill);
+            System.arraycopy(i, consumed, frameI, frameFill, take);
+            System.arraycopy(q, consumed, frameQ, frameFill, take);
+            frameFill += take;
+            consumed += take;
+            if (frameFill < size) break;
+
+            System.arraycopy(frameI, 0, workI, 0, size);
+            System.arraycopy(frameQ, 0, workQ, 0, size);
+            design.fft.transform(workI, workQ, 0);
+            double[] hI = design.spectrumI, hQ = design.spectrumQ;
+            for (int k = 0; k < size; k++) {
+                double re = workI[k] * hI[k] - workQ[k] * hQ[k];
+                workQ[k] = workI[k] * hQ[k] + workQ[k] * hI[k];
+                workI[k] = re;
+            }
+            design.fft.inverse(workI, workQ, 0);
+            // The first taps - 1 outputs wrap around the frame; the rest are the linear convolution
+            System.arraycopy(workI, history, readyI, ready, hop);
+            System.arraycopy(workQ, history, readyQ, ready, hop);
+            ready += hop;
+            System.arraycopy(frameI, hop, frameI, 0, history);
+            System.arraycopy(frameQ, hop, frameQ, 0, history);
+            frameFill = history;
+        }
+        System.arraycopy(readyI, 0, outI, 0, count);
+        System.arraycopy(readyQ, 0, outQ, 0, count);
+        ready -= count;
+        System.arraycopy(readyI, count, readyI, 0, ready);
+        System.arraycopy(readyQ, count, readyQ, 0, ready);
+    }
+}
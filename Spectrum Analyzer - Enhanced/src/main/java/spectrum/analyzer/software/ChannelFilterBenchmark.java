@@ -0,0 +1,146 @@
+package spectrum.analyzer.software;
+
+import java.util.Random;
+
+/**
+ * Reproduces the crossover between direct form and overlap-save in {@link ChannelFilter}.
+ * <p>
+ * For a range of bandwidths, and so of filter lengths, the same design runs once forced into direct form
+ * and once forced into overlap-save. Both outputs are checked against a plain convolution of the taps
+ * with the input, after removing the overlap-save block delay, and then both forms are timed on Gaussian
+ * noise in 4096-sample blocks. The direct-form limit in {@link ChannelFilter} is the longest filter for
+ * which direct form still wins. Run it with the application classes on the class path:
+ * {@code java spectrum.analyzer.software.ChannelFilterBenchmark}.
+ */
+final class ChannelFilterBenchmark {
+    private static final double SAMPLE_RATE = 256000.0;
+    private static final double[] BANDWIDTHS = {160000, 100000, 90000, 75000, 60000, 40000, 12500, 3125, 1000};
+    private static final int BLOCK = 4096;
+    private static final int CHECK_SAMPLES = 100000;
+    private static final int WARMUP_BLOCKS = 500;
+    private static final int TIMED_BLOCKS = 500;
+
+    private ChannelFilterBenchmark() {
+    }
+
+    /**
+     * Runs the equivalence check and the timing for every bandwidth and prints one line each.
+     * @param args Ignored.
+     */
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        double[] i = new double[CHECK_SAMPLES];
+        double[] q = new double[CHECK_SAMPLES];
+        for (int n = 0; n < CHECK_SAMPLES; n++) {
+            i[n] = random.nextGaussian();
+            q[n] = random.nextGaussian();
+        }
+        System.out.println("bandwidth  taps  direct error  fft error  direct ns/sample  fft ns/sample");
+        for (double bandwidth : BANDWIDTHS) {
+            ChannelFilter direct = new ChannelFilter(SAMPLE_RATE, Integer.MAX_VALUE);
+            ChannelFilter fast = new ChannelFilter(SAMPLE_RATE, 0);
+            direct.setBandwidth(bandwidth);
+            fast.setBandwidth(bandwidth);
+            double[] taps = impulseResponse(direct);
+            double[] reference = new double[2 * CHECK_SAMPLES];
+            convolve(taps, i, q, reference);
+            double directError = error(direct, i, q, reference);
+            double fastError = error(fast, i, q, reference);
+            System.out.printf("%9.0f %5d %13.1e %10.1e %17.1f %14.1f%n", bandwidth, taps.length, directError,
+                    fastError, time(direct, random), time(fast, random));
+        }
+    }
+
+    /**
+     * Reads the taps back by filtering a unit impulse.
+     * @param filter A direct-form filter.
+     * @return The taps.
+     */
+    private static double[] impulseResponse(ChannelFilter filter) {
+        int length = filter.getTaps();
+        double[] i = new double[length];
+        double[] q = new double[length];
+        i[0] = 1;
+        filter.reset();
+        filter.process(i, q, length, i, q);
+        return i;
+    }
+
+    /**
+     * Convolves complex samples with real taps the straightforward way, starting from silence.
+     * @param taps The taps.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param out Receives interleaved in-phase and quadrature outputs.
+     */
+    private static void convolve(double[] taps, double[] i, double[] q, double[] out) {
+        for (int n = 0; n < i.length; n++) {
+            double sumI = 0, sumQ = 0;
+            for (int k = 0; k < taps.length && k <= n; k++) {
+                sumI += taps[k] * i[n - k];
+                sumQ += taps[k] * q[n - k];
+            }
+            out[2 * n] = sumI;
+            out[2 * n + 1] = sumQ;
+        }
+    }
+
+    /**
+     * Filters the samples in uneven blocks and compares the result with the reference convolution.
+     * @param filter The filter under test.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param reference The interleaved reference outputs.
+     * @return The largest absolute difference.
+     */
+    private static double error(ChannelFilter filter, double[] i, double[] q, double[] reference) {
+        int count = i.length;
+        double[] outI = new double[count];
+        double[] outQ = new double[count];
+        filter.reset();
+        Random blocks = new Random(2);
+        for (int start = 0; start < count; ) {
+            int length = Math.min(count - start, 1 + blocks.nextInt(3000));
+            double[] blockI = new double[length];
+            double[] blockQ = new double[length];
+            System.arraycopy(i, start, blockI, 0, length);
+            System.arraycopy(q, start, blockQ, 0, length);
+            filter.process(blockI, blockQ, length, blockI, blockQ);
+            System.arraycopy(blockI, 0, outI, start, length);
+            System.arraycopy(blockQ, 0, outQ, start, length);
+            start += length;
+        }
+        int delay = filter.getBlockDelay();
+        double error = 0;
+        for (int n = delay; n < count; n++) {
+            error = Math.max(error, Math.abs(outI[n] - reference[2 * (n - delay)]));
+            error = Math.max(error, Math.abs(outQ[n] - reference[2 * (n - delay) + 1]));
+        }
+        return error;
+    }
+
+    /**
+     * Times the filter on Gaussian noise after warming up the JIT.
+     * @param filter The filter.
+     * @param random The noise source.
+     * @return The cost in nanoseconds per sample.
+     */
+    private static double time(ChannelFilter filter, Random random) {
+        double[] i = new double[BLOCK];
+        double[] q = new double[BLOCK];
+        for (int n = 0; n < BLOCK; n++) {
+            i[n] = random.nextGaussian();
+            q[n] = random.nextGaussian();
+        }
+        double[] outI = new double[BLOCK];
+        double[] outQ = new double[BLOCK];
+        for (int b = 0; b < WARMUP_BLOCKS; b++) {
+            filter.process(i, q, BLOCK, outI, outQ);
+        }
+        long start = System.nanoTime();
+        for (int b = 0; b < TIMED_BLOCKS; b++) {
+            filter.process(i, q, BLOCK, outI, outQ);
+        }
+        return (System.nanoTime() - start) / ((double) TIMED_BLOCKS * BLOCK);
+    }
+}
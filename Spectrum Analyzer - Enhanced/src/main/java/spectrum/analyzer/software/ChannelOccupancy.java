@@ -0,0 +1,102 @@
+package spectrum.analyzer.software;
+
+/**
+ * Represents the occupancy statistics of one raster channel at a point in time.
+ */
+public class ChannelOccupancy {
+    private final int channel;
+    private final double centerFrequency;
+    private final double bandwidth;
+    private final double power;
+    private final double minuteOccupancy;
+    private final double hourOccupancy;
+    private final double dayOccupancy;
+    private final double totalOccupancy;
+
+    /**
+     * Constructs a ChannelOccupancy with the specified properties.
+     * @param channel The channel number, starting at 1.
+     * @param centerFrequency The channel center in Hz.
+     * @param bandwidth The channel width in Hz.
+     * @param power The mean channel power of the latest frame in dBm.
+     * @param minuteOccupancy The busy fraction over the last minute.
+     * @param hourOccupancy The busy fraction over the last hour.
+     * @param dayOccupancy The busy fraction over the last day.
+     * @param totalOccupancy The busy fraction since the statistics were cleared.
+     */
+    public ChannelOccupancy(int channel, double centerFrequency, double bandwidth, double power,
+                            double minuteOccupancy, double hourOccupancy, double dayOccupancy, double totalOccupancy) {
+        this.channel = channel;
+        this.centerFrequency = centerFrequency;
+        this.bandwidth = bandwidth;
+        this.power = power;
+        this.minuteOccupancy = minuteOccupancy;
+        this.hourOccupancy = hourOccupancy;
+        this.dayOccupancy = dayOccupancy;
+        this.totalOccupancy = totalOccupancy;
+    }
+
+    /**
+     * Gets the channel number.
+     * @return The channel number, starting at 1.
+     */
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the channel center frequency.
+     * @return The frequency in Hz.
+     */
+    public double getCenterFrequency() {
+        return centerFrequency;
+    }
+
+    /**
+     * Gets the channel width.
+     * @return The width in Hz.
+     */
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Gets the mean channel power of the latest frame.
+     * @return The power in dBm.
+     */
+    public double getPower() {
+        return power;
+    }
+
+    /**
+     * Gets the busy fraction over the last minute.
+     * @return The fraction between 0 and 1.
+     */
+    public double getMinuteOccupancy() {
+        return minuteOccupancy;
+    }
+
+    /**
+     * Gets the busy fraction over the last hour.
+     * @return The fraction between 0 and 1.
+     */
+    public double getHourOccupancy() {
+        return hourOccupancy;
+    }
+
+    /**
+     * Gets the busy fraction over the last day.
+     * @return The fraction between 0 and 1.
+     */
+    public double getDayOccupancy() {
+        return dayOccupancy;
+    }
+
+    /**
+     * Gets the busy fraction since the statistics were cleared.
+     * @return The fraction between 0 and 1.
+     */
+    public double getTotalOccupancy() {
+        return totalOccupancy;
+    }
+}
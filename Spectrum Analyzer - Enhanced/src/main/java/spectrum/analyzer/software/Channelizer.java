@@ -0,0 +1,157 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Polyphase filter-bank channelizer that splits a complex baseband stream into equally spaced channels.
+ * <p>
+ * Channel k is centred on {@code k * sampleRate / channels} and channels above half the sample rate wrap
+ * to negative frequencies. Every {@code channels / 2} input samples the last {@code channels *}
+ * {@value #TAPS_PER_BRANCH} samples are weighted by a single low-pass prototype, folded into
+ * {@code channels} polyphase sums and transformed by one FFT, which yields the next output sample of
+ * every channel at once. The cost per input sample grows with the logarithm of the channel count, where
+ * separate mixers and filters would grow linearly with it.
+ * <p>
+ * The outputs are oversampled by two: each channel is delivered at twice the channel spacing, so the
+ * prototype's transition band lies outside the channel and the channel edges are free of aliasing.
+ */
+public class Channelizer {
+    private static final int TAPS_PER_BRANCH = 8;
+    private static final double STOPBAND_ATTENUATION = 60.0;
+
+    private final double sampleRate;
+    private final int channels;
+    private final int decimation;
+    private final double[] prototype;
+    private final Fft fft;
+    private final double[] foldI;
+    private final double[] foldQ;
+    private double[] historyI;
+    private double[] historyQ;
+    private int phase;
+    private boolean oddOutput = true;
+    private double[] outputI = new double[0];
+    private double[] outputQ = new double[0];
+    private int outputCount;
+
+    /**
+     * Constructs a Channelizer.
+     * @param sampleRate The IQ sample rate in Hz.
+     * @param channels The number of channels, a power of two of at least 2.
+     */
+    public Channelizer(double sampleRate, int channels) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.decimation = channels / 2;
+        this.fft = new Fft(channels);
+        // Cut off at half the channel spacing; the symmetric taps need no time reversal for the fold
+        this.prototype = FirDesign.lowpass(channels * TAPS_PER_BRANCH, 0.5 / channels, STOPBAND_ATTENUATION);
+        this.foldI = new double[channels];
+        this.foldQ = new double[channels];
+        this.historyI = new double[prototype.length - 1];
+        this.historyQ = new double[prototype.length - 1];
+    }
+
+    /**
+     * Gets the number of channels.
+     * @return The channel count.
+     */
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * Gets the spacing between channel centres.
+     * @return The spacing in Hz.
+     */
+    public double getChannelSpacing() {
+        return sampleRate / channels;
+    }
+
+    /**
+     * Gets the sample rate of every channel output.
+     * @return The output rate in Hz.
+     */
+    public double getOutputRate() {
+        return sampleRate / decimation;
+    }
+
+    /**
+     * Channelizes a block of IQ samples, continuing from the state left by the previous block. The
+     * outputs replace those of the previous block.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @return The number of output samples produced for each channel.
+     */
+    public synchronized int process(double[] i, double[] q, int count) {
+        int length = prototype.length;
+        int delay = length - 1;
+        if (historyI.length < delay + count) {
+            historyI = Arrays.copyOf(historyI, delay + count);
+            historyQ = Arrays.copyOf(historyQ, delay + count);
+        }
+        System.arraycopy(i, 0, historyI, delay, count);
+        System.arraycopy(q, 0, historyQ, delay, count);
+        int capacity = (phase + count) / decimation + 1;
+        if (outputI.length < capacity * channels) {
+            outputI = new double[capacity * channels];
+            outputQ = new double[capacity * channels];
+        }
+        outputCount = 0;
+        for (int end = decimation - phase; end <= count; end += decimation) {
+            // The window ends with the sample just received; fold it into the polyphase branches
+            Arrays.fill(foldI, 0);
+            Arrays.fill(foldQ, 0);
+            for (int start = end - 1, p = 0; p < length; p += channels) {
+                for (int r = 0; r < channels; r++) {
+                    double h = prototype[p + r];
+                    foldI[r] += h * historyI[start + p + r];
+                    foldQ[r] += h * historyQ[start + p + r];
+                }
+            }
+            fft.transform(foldI, foldQ, 0);
+            // Half-length hops leave bin k turned by pi k per output; undo it on the odd outputs
+            int offset = outputCount * channels;
+            for (int k = 0; k < channels; k++) {
+                double sign = oddOutput && (k & 1) == 1 ? -1 : 1;
+                outputI[offset + k] = sign * foldI[k];
+                outputQ[offset + k] = sign * foldQ[k];
+            }
+            oddOutput = !oddOutput;
+            outputCount++;
+        }
+        phase = (phase + count) % decimation;
+        System.arraycopy(historyI, count, historyI, 0, delay);
+        System.arraycopy(historyQ, count, historyQ, 0, delay);
+        return outputCount;
+    }
+
+    /**
+     * Copies the latest outputs of one channel.
+     * @param channel The channel index; negative indices count down from DC.
+     * @param i Receives the in-phase samples.
+     * @param q Receives the quadrature samples.
+     * @return The number of samples copied.
+     */
+    public synchronized int copyChannel(int channel, double[] i, double[] q) {
+        int k = Math.floorMod(channel, channels);
+        int count = Math.min(outputCount, Math.min(i.length, q.length));
+        for (int m = 0; m < count; m++) {
+            i[m] = outputI[m * channels + k];
+            q[m] = outputQ[m * channels + k];
+        }
+        return count;
+    }
+
+    /**
+     * Clears the input history so the next block starts a new stream.
+     */
+    public synchronized void reset() {
+        Arrays.fill(historyI, 0);
+        Arrays.fill(historyQ, 0);
+        phase = 0;
+        oddOutput = true;
+        outputCount = 0;
+    }
+}
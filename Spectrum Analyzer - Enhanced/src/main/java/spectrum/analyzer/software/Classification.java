@@ -0,0 +1,111 @@
+package spectrum.analyzer.software;
+
+/**
+ * Represents the classification of one tracked emission together with the features it was based on.
+ */
+public class Classification {
+    private final int emissionId;
+    private final String label;
+    private final String shape;
+    private final double confidence;
+    private final double bandwidth;
+    private final double flatness;
+    private final double peakToAverage;
+    private final double occupancy;
+
+    /**
+     * Constructs a Classification with the specified properties.
+     * @param emissionId The identity of the tracked emission.
+     * @param label The band plan label, or "Unknown".
+     * @param shape The spectral shape: "CW", "Narrowband" or "Wideband".
+     * @param confidence The confidence between 0 and 1.
+     * @param bandwidth The occupied bandwidth in Hz.
+     * @param flatness The spectral flatness between 0 and 1.
+     * @param peakToAverage The peak-to-average power ratio in dB.
+     * @param occupancy The fraction of recent frames in which the emission was present.
+     */
+    public Classification(int emissionId, String label, String shape, double confidence, double bandwidth,
+                          double flatness, double peakToAverage, double occupancy) {
+        this.emissionId = emissionId;
+        this.label = label;
+        this.shape = shape;
+        this.confidence = confidence;
+        this.bandwidth = bandwidth;
+        this.flatness = flatness;
+        this.peakToAverage = peakToAverage;
+        this.occupancy = occupancy;
+    }
+
+    /**
+     * Gets the identity of the tracked emission, stable while the emission persists.
+     * @return The emission identity.
+     */
+    public int getEmissionId() {
+        return emissionId;
+    }
+
+    /**
+     * Gets the band plan label.
+     * @return The label, or "Unknown".
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the spectral shape.
+     * @return "CW", "Narrowband" or "Wideband".
+     */
+    public String getShape() {
+        return shape;
+    }
+
+    /**
+     * Gets the confidence.
+     * @return The confidence between 0 and 1.
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Gets the occupied bandwidth.
+     * @return The bandwidth in Hz.
+     */
+    public double getBandwidth() {
+        return bandwidth;
+    }
+
+    /**
+     * Gets the spectral flatness (geometric over arithmetic mean of the power).
+     * @return The flatness between 0 and 1.
+     */
+    public double getFlatness() {
+        return flatness;
+    }
+
+    /**
+     * Gets the peak-to-average power ratio across the emission's bins.
+     * @return The ratio in dB.
+     */
+    public double getPeakToAverage() {
+        return peakToAverage;
+    }
+
+    /**
+     * Gets the occupancy over the recent frame history.
+     * @return The fraction of frames between 0 and 1.
+     */
+    public double getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Formats the label and confidence for display.
+     * @return The label with its confidence in percent.
+     */
+    @Override
+    public String toString() {
+        return String.format("%s (%.0f%%)", label, confidence * 100);
+    }
+}
@@ -0,0 +1,101 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates recovered symbols into a decaying two-dimensional histogram for constellation display.
+ * <p>
+ * Each symbol increments one cell of a square grid covering +/-{@value #RANGE} in I and Q, so adding a
+ * symbol is O(1) and the display cost depends only on the grid size, not on the symbol rate. Rendering
+ * maps the logarithm of each cell count to a colour and applies an exponential decay, so the image shows
+ * a persistence of the recent symbols.
+ */
+public class ConstellationDensity {
+    private static final double RANGE = 1.5;
+
+    private final int size;
+    private final float[] counts;
+    private long symbolCount;
+
+    /**
+     * Constructs a ConstellationDensity.
+     * @param size The number of cells along each axis.
+     */
+    public ConstellationDensity(int size) {
+        this.size = size;
+        this.counts = new float[size * size];
+    }
+
+    /**
+     * Gets the number of cells along each axis.
+     * @return The grid size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of symbols added since the last clear.
+     * @return The symbol count.
+     */
+    public synchronized long getSymbolCount() {
+        return symbolCount;
+    }
+
+    /**
+     * Adds symbols to the histogram.
+     * @param i The in-phase components.
+     * @param q The quadrature components.
+     * @param count The number of symbols.
+     */
+    public synchronized void add(double[] i, double[] q, int count) {
+        double scale = size / (2 * RANGE);
+        for (int n = 0; n < count; n++) {
+            int x = (int) ((i[n] + RANGE) * scale);
+            int y = (int) ((RANGE - q[n]) * scale);
+            if (x >= 0 && x < size && y >= 0 && y < size) {
+                counts[y * size + x]++;
+            }
+        }
+        symbolCount += count;
+    }
+
+    /**
+     * Clears the histogram.
+     */
+    public synchronized void clear() {
+        Arrays.fill(counts, 0);
+        symbolCount = 0;
+    }
+
+    /**
+     * Renders the histogram as ARGB pixels and then decays it.
+     * @param pixels Receives {@code size * size} pixels, row by row.
+     * @param decay The factor every cell is multiplied by after rendering, between 0 and 1.
+     */
+    public synchronized void render(int[] pixels, float decay) {
+        float max = 0;
+        for (float count : counts) {
+            max = Math.max(max, count);
+        }
+        double norm = max > 0 ? 1 / Math.log1p(max) : 0;
+        for (int c = 0; c < counts.length; c++) {
+            float count = counts[c];
+            pixels[c] = count > 0 ? heatColor(Math.log1p(count) * norm) : 0xFF000000;
+            counts[c] = count * decay;
+        }
+    }
+
+    /**
+     * Maps a level to a black-blue-cyan-yellow-white colour ramp.
+     * @param level The level between 0 and 1.
+     * @return The ARGB colour.
+     */
+    static int heatColor(double level) {
+        double v = Math.max(0, Math.min(1, level)) * 4;
+        double r = Math.max(0, Math.min(1, v - 2));
+        double g = Math.max(0, Math.min(1, v - 1));
+        double b = v < 3 ? Math.min(1, v) - Math.max(0, v - 2) : v - 3;
+        return 0xFF000000 | ((int) (r * 255) << 16) | ((int) (g * 255) << 8) | (int) (b * 255);
+    }
+}
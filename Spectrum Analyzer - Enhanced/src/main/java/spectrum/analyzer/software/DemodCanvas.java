@@ -2,13 +2,27 @@ package spectrum.analyzer.software;
 
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 
 /**
- * Canvas for rendering demodulated signal data.
+ * Canvas for rendering demodulated signal data as a waveform, a constellation density, an eye diagram,
+ * the EVM of each OFDM subcarrier or the waveforms of the channelizer's channels.
  */
 public class DemodCanvas extends Canvas {
+    private static final double FULL_SCALE = 1.5;
+    private static final float CONSTELLATION_DECAY = 0.9f;
+    private static final double EVM_FLOOR_DB = -40;
+
     private final SignalProcessor signalProcessor;
+    private final double[] samples = new double[4096];
+    private final double[] subcarrierEvm = new double[OfdmReceiver.SUBCARRIERS];
+    private final int[] pixels;
+    private final WritableImage constellationImage;
+    private final int[] eyePixels;
+    private final WritableImage eyeImage;
+    private String mode = "Waveform";
 
     /**
      * Constructs a DemodCanvas with specified dimensions and processor.
@@ -19,37 +33,208 @@ public class DemodCanvas extends Canvas {
     public DemodCanvas(double width, double height, SignalProcessor processor) {
         super(width, height);
         this.signalProcessor = processor;
+        int size = processor.getConstellation().getSize();
+        this.pixels = new int[size * size];
+        this.constellationImage = new WritableImage(size, size);
+        EyeDiagram eye = processor.getEyeDiagram();
+        this.eyePixels = new int[eye.getWidth() * eye.getHeight()];
+        this.eyeImage = new WritableImage(eye.getWidth(), eye.getHeight());
     }
 
     /**
-     * Updates and redraws the demodulated signal plot.
+     * Sets the display mode.
+     * @param mode The mode (Waveform, Constellation, Eye Diagram, Subcarrier EVM or Channels).
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Updates and redraws the canvas in the selected mode.
      */
     public void update() {
         GraphicsContext gc = getGraphicsContext2D();
         gc.setFill(Color.BLACK);
         gc.fillRect(0, 0, getWidth(), getHeight());
+        if (mode.equals("Constellation")) {
+            drawConstellation(gc);
+        } else if (mode.equals("Eye Diagram")) {
+            drawEyeDiagram(gc);
+        } else if (mode.equals("Subcarrier EVM")) {
+            drawSubcarrierEvm(gc);
+        } else if (mode.equals("Channels")) {
+            drawChannels(gc);
+        } else {
+            drawWaveform(gc);
+        }
+    }
 
-        SpectrumData data = signalProcessor.getSpectrumData();
-        double[] amplitudes = data.getAmplitudes();
-        gc.setStroke(Color.YELLOW);
-        gc.setLineWidth(1.0);
+    /**
+     * Draws the latest block of demodulated samples, one min/max column per pixel.
+     * @param gc The graphics context.
+     */
+    private void drawWaveform(GraphicsContext gc) {
         double width = getWidth();
         double height = getHeight();
-        double xScale = width / amplitudes.length;
-        double yScale = height / 400.0;
+        gc.setStroke(Color.DARKGRAY);
+        gc.setLineWidth(0.5);
+        gc.strokeLine(0, height / 2, width, height / 2);
+
+        int count = signalProcessor.copyDemodOutput(samples);
+        if (count == 0) {
+            gc.setFill(Color.GRAY);
+            gc.fillText("No demodulation selected", 10, 20);
+            return;
+        }
+        strokeColumns(gc, count, height / 2, height / 2);
+        gc.setFill(Color.GRAY);
+        gc.fillText(String.format("%.1f ms", count / signalProcessor.getDemodSampleRate() * 1000), width - 60, 15);
+    }
+
+    /**
+     * Draws the latest block of every channel of the channel bank in its own horizontal strip.
+     * @param gc The graphics context.
+     */
+    private void drawChannels(GraphicsContext gc) {
+        ChannelBank bank = signalProcessor.getChannelBank();
+        if (bank == null) {
+            gc.setFill(Color.GRAY);
+            gc.fillText("Set a channel count of 2 or more", 10, 20);
+            return;
+        }
+        double width = getWidth();
+        double strip = getHeight() / bank.getChannelCount();
+        for (int c = 0; c < bank.getChannelCount(); c++) {
+            double centre = (c + 0.5) * strip;
+            gc.setStroke(Color.DARKGRAY);
+            gc.setLineWidth(0.5);
+            gc.strokeLine(0, centre, width, centre);
+            if (c > 0) gc.strokeLine(0, c * strip, width, c * strip);
+            int count = bank.copyOutput(c, samples);
+            if (count > 0) strokeColumns(gc, count, centre, strip / 2);
+            gc.setFill(Color.GRAY);
+            gc.fillText(String.format("%+.1f kHz", bank.getChannelOffset(c) / 1000), 5, c * strip + 15);
+        }
+    }
+
+    /**
+     * Strokes the first samples of the sample buffer as one min/max column per pixel.
+     * @param gc The graphics context.
+     * @param count The number of samples.
+     * @param centre The y coordinate of zero.
+     * @param halfHeight The height from zero to full scale.
+     */
+    private void strokeColumns(GraphicsContext gc, int count, double centre, double halfHeight) {
+        double yScale = halfHeight / FULL_SCALE;
+        int columns = (int) getWidth();
+        gc.setStroke(Color.YELLOW);
+        gc.setLineWidth(1.0);
         gc.beginPath();
-        for (int i = 0; i < amplitudes.length; i++) {
-            double x = i * xScale;
-            double y = height / 2 - amplitudes[i] * yScale;
-            if (i == 0) {
-                gc.moveTo(x, y);
+        for (int x = 0; x < columns; x++) {
+            int from = (int) ((long) x * count / columns);
+            int to = Math.max(from + 1, (int) ((long) (x + 1) * count / columns));
+            double min = samples[from], max = samples[from];
+            for (int n = from + 1; n < to; n++) {
+                min = Math.min(min, samples[n]);
+                max = Math.max(max, samples[n]);
+            }
+            double top = centre - Math.min(max, FULL_SCALE) * yScale;
+            double bottom = centre - Math.max(min, -FULL_SCALE) * yScale;
+            if (x == 0) {
+                gc.moveTo(x + 0.5, top);
             } else {
-                gc.lineTo(x, y);
+                gc.lineTo(x + 0.5, top);
             }
+            gc.lineTo(x + 0.5, bottom);
         }
         gc.stroke();
+    }
+
+    /**
+     * Draws the recovered symbols as a density image, square and centred. The histogram is rendered to
+     * pixels off the scene graph and written in one bulk {@code setPixels} call, so the cost per frame
+     * is fixed by the image size however many symbols were accumulated.
+     * @param gc The graphics context.
+     */
+    private void drawConstellation(GraphicsContext gc) {
+        ConstellationDensity constellation = signalProcessor.getConstellation();
+        if (constellation.getSymbolCount() == 0) {
+            gc.setFill(Color.GRAY);
+            gc.fillText("No PSK or QAM symbols", 10, 20);
+            return;
+        }
+        int size = constellation.getSize();
+        constellation.render(pixels, CONSTELLATION_DECAY);
+        constellationImage.getPixelWriter().setPixels(0, 0, size, size, PixelFormat.getIntArgbInstance(), pixels, 0, size);
+        double side = Math.min(getWidth(), getHeight());
+        double left = (getWidth() - side) / 2;
+        gc.setImageSmoothing(false);
+        gc.drawImage(constellationImage, left, 0, side, side);
         gc.setStroke(Color.DARKGRAY);
         gc.setLineWidth(0.5);
-        gc.strokeLine(0, height / 2, width, height / 2);
+        gc.strokeLine(left, side / 2, left + side, side / 2);
+        gc.strokeLine(left + side / 2, 0, left + side / 2, side);
+        gc.setFill(Color.GRAY);
+        gc.fillText(String.format("%,d symbols", constellation.getSymbolCount()), left + side + 10, 15);
+    }
+
+    /**
+     * Draws the eye diagram over two symbol periods, stretched to the canvas, with the same bulk pixel
+     * write as the constellation.
+     * @param gc The graphics context.
+     */
+    private void drawEyeDiagram(GraphicsContext gc) {
+        EyeDiagram eye = signalProcessor.getEyeDiagram();
+        if (eye.getSegmentCount() == 0) {
+            gc.setFill(Color.GRAY);
+            gc.fillText("No PSK or QAM symbols", 10, 20);
+            return;
+        }
+        int width = eye.getWidth(), height = eye.getHeight();
+        eye.render(eyePixels, CONSTELLATION_DECAY);
+        eyeImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), eyePixels, 0, width);
+        gc.setImageSmoothing(true);
+        gc.drawImage(eyeImage, 0, 0, getWidth(), getHeight());
+        gc.setStroke(Color.DARKGRAY);
+        gc.setLineWidth(0.5);
+        gc.strokeLine(getWidth() / 2, 0, getWidth() / 2, getHeight());
+        gc.strokeLine(0, getHeight() / 2, getWidth(), getHeight() / 2);
+        gc.setFill(Color.GRAY);
+        gc.fillText(String.format("%,d symbols", eye.getSegmentCount()), getWidth() - 110, 15);
+    }
+
+    /**
+     * Draws the EVM of each OFDM subcarrier as a bar in dB, pilots in cyan and data in yellow.
+     * @param gc The graphics context.
+     */
+    private void drawSubcarrierEvm(GraphicsContext gc) {
+        if (!signalProcessor.copySubcarrierEvm(subcarrierEvm)) {
+            gc.setFill(Color.GRAY);
+            gc.fillText("No OFDM demodulation selected", 10, 20);
+            return;
+        }
+        double width = getWidth();
+        double height = getHeight();
+        int count = subcarrierEvm.length;
+        double barWidth = width / count;
+        gc.setStroke(Color.DARKGRAY);
+        gc.setLineWidth(0.5);
+        for (double db = -10; db > EVM_FLOOR_DB; db -= 10) {
+            double y = height * db / EVM_FLOOR_DB;
+            gc.strokeLine(0, y, width, y);
+            gc.setFill(Color.GRAY);
+            gc.fillText(String.format("%.0f dB", db), 2, y - 2);
+        }
+        for (int n = 0; n < count; n++) {
+            double evm = subcarrierEvm[n];
+            if (Double.isNaN(evm)) continue;
+            double db = Math.max(EVM_FLOOR_DB, Math.min(0, 20 * Math.log10(Math.max(evm, 1e-6) / 100)));
+            double top = height * db / EVM_FLOOR_DB;
+            int bin = Math.floorMod(n - count / 2, count);
+            gc.setFill(OfdmReceiver.isPilot(bin) ? Color.CYAN : Color.YELLOW);
+            gc.fillRect(n * barWidth + 1, top, Math.max(1, barWidth - 2), height - top);
+        }
+        gc.setFill(Color.GRAY);
+        gc.fillText(String.format("CFO %.1f Hz", signalProcessor.getOfdmFrequencyOffset()), width - 90, 15);
     }
 }
\ No newline at end of file
@@ -1,44 +1,478 @@
 package spectrum.analyzer.software;
 
+/**
+ * Streaming demodulator for blocks of time-domain IQ samples.
+ * <p>
+ * The demodulation type is resolved once, when it is set, into a strategy object that owns all state
+ * that must survive a block boundary: the previous sample of the FM discriminator, the carrier loop of
+ * PM, the timing and carrier loops of the digital modes, the AGC level and the DC blocker. Blocks are
+ * processed in place into a caller-supplied output buffer, so the per-sample loop does no allocation
+ * and no string compares.
+ */
 public class Demodulator {
+    private final double sampleRate;
+    private final ConstellationDensity constellation = new ConstellationDensity(256);
+    private final ModulationQuality quality = new ModulationQuality(16, 4096);
+    private final EyeDiagram eye = new EyeDiagram(256, 192);
+    private volatile OfdmReceiver ofdmReceiver;
+    private double symbolRate = 16_000.0;
+    private String type = "None";
+    private double deemphasis;
+    private Strategy strategy;
 
-    public double[] demodulate(double[] amplitudes, double[] phases, String type) {
-        double[] result = new double[amplitudes.length];
-        System.arraycopy(amplitudes, 0, result, 0, amplitudes.length);
+    /**
+     * A demodulation algorithm with its own state carried across blocks.
+     */
+    public interface Strategy {
+        /**
+         * Demodulates a block of IQ samples.
+         * @param i The in-phase samples.
+         * @param q The quadrature samples.
+         * @param count The number of samples to process.
+         * @param out Receives one output sample per input sample.
+         */
+        void process(double[] i, double[] q, int count, double[] out);
 
-        if (type.equals("AM")) {
-            for (int i = 0; i < result.length; i++) {
-                result[i] = Math.abs(result[i]) * Math.cos(phases[i]);
+        /**
+         * Clears the state so the next block starts a new stream.
+         */
+        void reset();
+    }
+
+    /**
+     * Constructs a Demodulator with no demodulation selected.
+     * @param sampleRate The IQ sample rate in Hz.
+     */
+    public Demodulator(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Selects the demodulation type and builds its strategy with fresh state.
+     * @param type The demodulation type (None, AM, FM, PM, QAM, PSK or OFDM).
+     */
+    public synchronized void setType(String type) {
+        this.type = type;
+        this.strategy = createStrategy(type);
+        constellation.clear();
+        eye.clear();
+    }
+
+    /**
+     * Sets the symbol rate of the PSK and QAM modes and rebuilds the strategy with fresh state.
+     * @param symbolRate The symbol rate in Bd; the sample rate should be an integer multiple of it.
+     */
+    public synchronized void setSymbolRate(double symbolRate) {
+        this.symbolRate = symbolRate;
+        this.strategy = createStrategy(type);
+    }
+
+    /**
+     * Gets the density histogram of the symbols recovered by the PSK and QAM modes.
+     * @return The constellation density.
+     */
+    public ConstellationDensity getConstellation() {
+        return constellation;
+    }
+
+    /**
+     * Gets the eye diagram of the PSK and QAM modes, built from the derotated matched filter output.
+     * @return The eye diagram.
+     */
+    public EyeDiagram getEyeDiagram() {
+        return eye;
+    }
+
+    /**
+     * Gets the EVM and MER statistics of the symbols recovered by the PSK and QAM modes.
+     * @return The modulation quality, reset whenever the strategy is rebuilt.
+     */
+    public ModulationQuality getQuality() {
+        return quality;
+    }
+
+    /**
+     * Gets the receiver of the OFDM mode, for its per-subcarrier statistics.
+     * @return The receiver, or null when OFDM is not selected.
+     */
+    public OfdmReceiver getOfdmReceiver() {
+        return ofdmReceiver;
+    }
+
+    /**
+     * Sets the FM de-emphasis time constant and rebuilds the strategy with fresh state.
+     * @param deemphasis The time constant in seconds (50e-6 or 75e-6 for broadcast FM), or 0 for none.
+     */
+    public synchronized void setDeemphasis(double deemphasis) {
+        this.deemphasis = deemphasis;
+        this.strategy = createStrategy(type);
+    }
+
+    /**
+     * Gets the FM de-emphasis time constant.
+     * @return The time constant in seconds, or 0 for none.
+     */
+    public synchronized double getDeemphasis() {
+        return deemphasis;
+    }
+
+    /**
+     * Gets the selected demodulation type.
+     * @return The demodulation type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Tells whether a demodulation type other than None is selected.
+     * @return True if blocks are demodulated.
+     */
+    public synchronized boolean isActive() {
+        return strategy != null;
+    }
+
+    /**
+     * Gets the IQ sample rate.
+     * @return The sample rate in Hz.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Demodulates a block of IQ samples, continuing from the state left by the previous block.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples to process.
+     * @param out Receives one output sample per input sample.
+     * @return The number of output samples, 0 if no demodulation is selected.
+     */
+    public synchronized int demodulate(double[] i, double[] q, int count, double[] out) {
+        if (strategy == null) return 0;
+        strategy.process(i, q, count, out);
+        return count;
+    }
+
+    /**
+     * Clears the state of the selected strategy, for example when the IQ source restarts.
+     */
+    public synchronized void reset() {
+        if (strategy != null) strategy.reset();
+    }
+
+    /**
+     * Builds the strategy for a demodulation type from the current settings and restarts the symbol
+     * statistics.
+     * @param type The demodulation type.
+     * @return The strategy, or null for None or an unknown type.
+     */
+    private Strategy createStrategy(String type) {
+        quality.reset(0);
+        ofdmReceiver = null;
+        switch (type) {
+            case "AM":
+                return new EnvelopeStrategy();
+            case "OFDM":
+                ofdmReceiver = new OfdmReceiver();
+                return new OfdmStrategy(ofdmReceiver, constellation, quality);
+            case "FM":
+                return new FmStrategy(sampleRate, deemphasis);
+            case "PM":
+                return new PmStrategy(sampleRate);
+            case "PSK":
+                return new DigitalStrategy(new SymbolRecovery((int) Math.round(sampleRate / symbolRate), false), constellation, quality, eye);
+            case "QAM":
+                return new DigitalStrategy(new SymbolRecovery((int) Math.round(sampleRate / symbolRate), true), constellation, quality, eye);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Envelope detector with AGC and DC blocking, used for AM.
+     */
+    private static final class EnvelopeStrategy implements Strategy {
+        private final Agc agc = new Agc();
+        private double previousInput;
+        private double previousOutput;
+
+        @Override
+        public void process(double[] i, double[] q, int count, double[] out) {
+            for (int n = 0; n < count; n++) {
+                double envelope = agc.apply(Math.sqrt(i[n] * i[n] + q[n] * q[n]));
+                // One-pole DC blocker removes the carrier level and leaves the modulation
+                double y = envelope - previousInput + 0.995 * previousOutput;
+                previousInput = envelope;
+                previousOutput = y;
+                out[n] = y;
             }
-        } else if (type.equals("FM")) {
-            for (int i = 1; i < result.length; i++) {
-                result[i] = (phases[i] - phases[i - 1]) / (2 * Math.PI);
+        }
+
+        @Override
+        public void reset() {
+            agc.reset();
+            previousInput = 0;
+            previousOutput = 0;
+        }
+    }
+
+    /**
+     * Quadrature FM discriminator: the angle of each sample times the conjugate of the previous one,
+     * which needs no phase unwrapping as long as the deviation stays below half the sample rate.
+     * <p>
+     * A block is processed in three passes over primitive scratch arrays: the conjugate products, which
+     * have no loop-carried dependency so the JIT can vectorise them, then the polynomial {@link FastMath#atan2},
+     * then the one-pole de-emphasis filter, the only pass with a recurrence.
+     */
+    private static final class FmStrategy implements Strategy {
+        private final double deemphasisGain;
+        private double previousI = 1;
+        private double previousQ;
+        private double deemphasisState;
+        private double[] products = new double[0];
+
+        /**
+         * Constructs an FM discriminator.
+         * @param sampleRate The IQ sample rate in Hz.
+         * @param deemphasis The de-emphasis time constant in seconds, or 0 for none.
+         */
+        FmStrategy(double sampleRate, double deemphasis) {
+            this.deemphasisGain = deemphasis > 0 ? 1 - Math.exp(-1 / (sampleRate * deemphasis)) : 1;
+        }
+
+        @Override
+        public void process(double[] i, double[] q, int count, double[] out) {
+            if (count == 0) return;
+            if (products.length < count) {
+                products = new double[count];
             }
-            result[0] = result[1];
-        } else if (type.equals("PM")) {
-            for (int i = 0; i < result.length; i++) {
-                result[i] = phases[i] / (2 * Math.PI);
+            double[] re = products;
+            re[0] = i[0] * previousI + q[0] * previousQ;
+            out[0] = q[0] * previousI - i[0] * previousQ;
+            for (int n = 1; n < count; n++) {
+                re[n] = i[n] * i[n - 1] + q[n] * q[n - 1];
+                out[n] = q[n] * i[n - 1] - i[n] * q[n - 1];
             }
-        } else if (type.equals("QAM")) {
-            for (int i = 0; i < result.length; i++) {
-                double I = result[i] * Math.cos(phases[i]);
-                double Q = result[i] * Math.sin(phases[i]);
-                result[i] = Math.sqrt(I * I + Q * Q);
+            for (int n = 0; n < count; n++) {
+                out[n] = FastMath.atan2(out[n], re[n]) * (1 / Math.PI);
             }
-        } else if (type.equals("PSK")) {
-            for (int i = 0; i < result.length; i++) {
-                result[i] = Math.round(phases[i] / (Math.PI / 4)) * (Math.PI / 4);
+            if (deemphasisGain < 1) {
+                double y = deemphasisState, g = deemphasisGain;
+                for (int n = 0; n < count; n++) {
+                    y += g * (out[n] - y);
+                    out[n] = y;
+                }
+                deemphasisState = y;
             }
-        } else if (type.equals("OFDM")) {
-            for (int i = 0; i < result.length; i++) {
-                result[i] = Math.abs(result[i]) * Math.cos(phases[i] + randomPhaseOffset());
+            previousI = i[count - 1];
+            previousQ = q[count - 1];
+        }
+
+        @Override
+        public void reset() {
+            previousI = 1;
+            previousQ = 0;
+            deemphasisState = 0;
+        }
+    }
+
+    /**
+     * Phase demodulator: a slow PLL tracks the carrier and the phase of the derotated sample is the
+     * modulation. The phase is unwrapped so that deviations beyond +/-pi stay continuous, with a slow
+     * leak that keeps the unwrapped phase centred.
+     */
+    private static final class PmStrategy implements Strategy {
+        private final Pll pll;
+        private double previousPhase;
+        private double unwrapped;
+
+        PmStrategy(double sampleRate) {
+            this.pll = new Pll(200 / sampleRate);
+        }
+
+        @Override
+        public void process(double[] i, double[] q, int count, double[] out) {
+            for (int n = 0; n < count; n++) {
+                pll.step(i[n], q[n]);
+                double phase = FastMath.atan2(pll.getQ(), pll.getI());
+                double delta = phase - previousPhase;
+                if (delta > Math.PI) delta -= 2 * Math.PI;
+                else if (delta < -Math.PI) delta += 2 * Math.PI;
+                previousPhase = phase;
+                unwrapped = 0.9999 * unwrapped + delta;
+                out[n] = unwrapped / Math.PI;
             }
         }
 
-        return result;
+        @Override
+        public void reset() {
+            pll.reset();
+            previousPhase = 0;
+            unwrapped = 0;
+        }
     }
 
-    private double randomPhaseOffset() {
-        return Math.random() * Math.PI / 8;
+    /**
+     * Digital demodulator: recovers symbols, adds them to the constellation density and the quality
+     * statistics, and outputs the derotated in-phase matched filter signal, which also feeds the eye
+     * diagram around each symbol strobe.
+     */
+    private static final class DigitalStrategy implements Strategy {
+        private final SymbolRecovery recovery;
+        private final ConstellationDensity constellation;
+        private final ModulationQuality quality;
+        private final EyeDiagram eye;
+
+        DigitalStrategy(SymbolRecovery recovery, ConstellationDensity constellation, ModulationQuality quality,
+                        EyeDiagram eye) {
+            this.recovery = recovery;
+            this.constellation = constellation;
+            this.quality = quality;
+            this.eye = eye;
+            quality.reset(recovery.getClassCount());
+        }
+
+        @Override
+        public void process(double[] i, double[] q, int count, double[] out) {
+            int symbols = recovery.process(i, q, count, out);
+            constellation.add(recovery.getSymbolI(), recovery.getSymbolQ(), symbols);
+            quality.add(recovery.getSymbolI(), recovery.getSymbolQ(), recovery.getDecisionI(),
+                    recovery.getDecisionQ(), recovery.getDecisionClasses(), symbols);
+            eye.add(out, count, recovery.getStrobes(), symbols, recovery.getSymbolPeriod());
+        }
+
+        @Override
+        public void reset() {
+            recovery.reset();
+        }
+    }
+
+    /**
+     * OFDM demodulator: equalises the data subcarriers into the constellation density and the quality
+     * statistics, and outputs the cyclic prefix correlation so the symbol timing can be seen.
+     */
+    private static final class OfdmStrategy implements Strategy {
+        private final OfdmReceiver receiver;
+        private final ConstellationDensity constellation;
+        private final ModulationQuality quality;
+
+        OfdmStrategy(OfdmReceiver receiver, ConstellationDensity constellation, ModulationQuality quality) {
+            this.receiver = receiver;
+            this.constellation = constellation;
+            this.quality = quality;
+            quality.reset(4);
+        }
+
+        @Override
+        public void process(double[] i, double[] q, int count, double[] out) {
+            int points = receiver.process(i, q, count, out);
+            constellation.add(receiver.getSymbolI(), receiver.getSymbolQ(), points);
+            quality.add(receiver.getSymbolI(), receiver.getSymbolQ(), receiver.getDecisionI(),
+                    receiver.getDecisionQ(), receiver.getDecisionClasses(), points);
+        }
+
+        @Override
+        public void reset() {
+            receiver.reset();
+        }
+    }
+
+    /**
+     * Second-order phase-locked loop. The carrier is a unit phasor rotated by a small-angle
+     * approximation and renormalised every sample, and the phase detector is the sine of the error, so a
+     * step needs no trigonometric calls.
+     */
+    private static final class Pll {
+        private final double alpha;
+        private final double beta;
+        private double cos = 1;
+        private double sin;
+        private double frequency;
+        private double derotatedI;
+        private double derotatedQ;
+
+        /**
+         * Constructs a loop with a damping factor of 0.707.
+         * @param bandwidth The loop noise bandwidth as a fraction of the sample rate.
+         */
+        Pll(double bandwidth) {
+            double damping = Math.sqrt(0.5);
+            double theta = 2 * Math.PI * bandwidth / (damping + 1 / (4 * damping));
+            double d = 1 + 2 * damping * theta + theta * theta;
+            this.alpha = 4 * damping * theta / d;
+            this.beta = 4 * theta * theta / d;
+        }
+
+        /**
+         * Derotates a sample by the tracked carrier and advances the loop.
+         * @param i The in-phase sample.
+         * @param q The quadrature sample.
+         */
+        void step(double i, double q) {
+            derotatedI = i * cos + q * sin;
+            derotatedQ = q * cos - i * sin;
+            double magnitude = Math.sqrt(derotatedI * derotatedI + derotatedQ * derotatedQ);
+            double error = magnitude > 0 ? derotatedQ / magnitude : 0;
+            frequency += beta * error;
+            double d = frequency + alpha * error;
+            double cd = 1 - d * d / 2, sd = d - d * d * d / 6;
+            double c = cos * cd - sin * sd;
+            double s = sin * cd + cos * sd;
+            // One Newton step keeps the phasor on the unit circle
+            double norm = (3 - c * c - s * s) / 2;
+            cos = c * norm;
+            sin = s * norm;
+        }
+
+        /**
+         * Gets the in-phase component of the latest derotated sample.
+         * @return The in-phase component.
+         */
+        double getI() {
+            return derotatedI;
+        }
+
+        /**
+         * Gets the quadrature component of the latest derotated sample.
+         * @return The quadrature component.
+         */
+        double getQ() {
+            return derotatedQ;
+        }
+
+        /**
+         * Clears the loop state.
+         */
+        void reset() {
+            cos = 1;
+            sin = 0;
+            frequency = 0;
+        }
+    }
+
+    /**
+     * Automatic gain control that normalises a magnitude to a running average level of 1.
+     */
+    private static final class Agc {
+        private static final double RATE = 1e-3;
+        private double level = 1;
+
+        /**
+         * Scales a magnitude by the inverse of the running level and updates the level.
+         * @param magnitude The input magnitude.
+         * @return The normalised magnitude.
+         */
+        double apply(double magnitude) {
+            level += RATE * (magnitude - level);
+            return level > 0 ? magnitude / level : 0;
+        }
+
+        /**
+         * Restores the initial level.
+         */
+        void reset() {
+            level = 1;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package spectrum.analyzer.software;
+
+/**
+ * Represents a contiguous run of bins detected above the adaptive threshold.
+ */
+public class Emission {
+    private final int startBin;
+    private final int stopBin;
+    private final double startFrequency;
+    private final double stopFrequency;
+    private final double peakFrequency;
+    private final double peakAmplitude;
+    private final double power;
+
+    /**
+     * Constructs an Emission with the specified properties.
+     * @param startBin The first bin of the emission, inclusive.
+     * @param stopBin The last bin of the emission, inclusive.
+     * @param startFrequency The lower edge in Hz.
+     * @param stopFrequency The upper edge in Hz.
+     * @param peakFrequency The frequency of the strongest bin in Hz.
+     * @param peakAmplitude The amplitude of the strongest bin in dBm.
+     * @param power The total power of the emission in dBm.
+     */
+    public Emission(int startBin, int stopBin, double startFrequency, double stopFrequency,
+                    double peakFrequency, double peakAmplitude, double power) {
+        this.startBin = startBin;
+        this.stopBin = stopBin;
+        this.startFrequency = startFrequency;
+        this.stopFrequency = stopFrequency;
+        this.peakFrequency = peakFrequency;
+        this.peakAmplitude = peakAmplitude;
+        this.power = power;
+    }
+
+    /**
+     * Gets the first bin of the emission.
+     * @return The bin index.
+     */
+    public int getStartBin() {
+        return startBin;
+    }
+
+    /**
+     * Gets the last bin of the emission.
+     * @return The bin index.
+     */
+    public int getStopBin() {
+        return stopBin;
+    }
+
+    /**
+     * Gets the lower edge of the emission.
+     * @return The frequency in Hz.
+     */
+    public double getStartFrequency() {
+        return startFrequency;
+    }
+
+    /**
+     * Gets the upper edge of the emission.
+     * @return The frequency in Hz.
+     */
+    public double getStopFrequency() {
+        return stopFrequency;
+    }
+
+    /**
+     * Gets the frequency of the strongest bin.
+     * @return The frequency in Hz.
+     */
+    public double getPeakFrequency() {
+        return peakFrequency;
+    }
+
+    /**
+     * Gets the amplitude of the strongest bin.
+     * @return The amplitude in dBm.
+     */
+    public double getPeakAmplitude() {
+        return peakAmplitude;
+    }
+
+    /**
+     * Gets the total power of the emission.
+     * @return The power in dBm.
+     */
+    public double getPower() {
+        return power;
+    }
+}
@@ -0,0 +1,167 @@
+package spectrum.analyzer.software;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Classifies every detected emission from its features and keeps the results across frames.
+ * <p>
+ * Emissions are associated with the tracks of the previous frame by overlapping bins, which gives each
+ * emission a stable identity. Every frame the features of an emission are measured over its own bins
+ * only: bandwidth, spectral flatness, peak-to-average ratio, and occupancy over the last
+ * {@value #HISTORY} frames held as a bit history. The classification is rebuilt only when the band
+ * changes or a feature moves more than its tolerance away from the value the cached classification
+ * was built from; otherwise the cached label, shape and confidence are returned with the features
+ * measured this frame.
+ */
+public class EmissionClassifier {
+    private static final int HISTORY = 64;
+    private static final double DB_TO_LN = Math.log(10) / 10;
+    private static final double BANDWIDTH_TOLERANCE = 0.15;
+    private static final double FLATNESS_TOLERANCE = 0.05;
+    private static final double PEAK_TO_AVERAGE_TOLERANCE = 1.0;
+    private static final double OCCUPANCY_TOLERANCE = 0.1;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private int nextId = 1;
+    private double lastMinFreq;
+    private double lastMaxFreq;
+    private int lastBinCount;
+    private long evaluations;
+
+    /**
+     * Classifies the emissions of a frame.
+     * @param emissions The emissions of the frame, ordered by frequency.
+     * @param amplitudes The amplitudes of the frame in dBm.
+     * @param minFreq The minimum frequency of the frame in Hz.
+     * @param maxFreq The maximum frequency of the frame in Hz.
+     * @param plan The band plan used for labels.
+     * @return The classifications, parallel to the emission list.
+     */
+    public List<Classification> update(List<Emission> emissions, double[] amplitudes, double minFreq,
+                                       double maxFreq, BandPlan plan) {
+        if (minFreq != lastMinFreq || maxFreq != lastMaxFreq || amplitudes.length != lastBinCount) {
+            tracks.clear();
+            lastMinFreq = minFreq;
+            lastMaxFreq = maxFreq;
+            lastBinCount = amplitudes.length;
+        }
+        double freqStep = (maxFreq - minFreq) / amplitudes.length;
+        Track[] matches = associate(emissions);
+        for (Track track : tracks) {
+            track.history <<= 1;
+            track.frames = Math.min(HISTORY, track.frames + 1);
+        }
+        List<Classification> results = new ArrayList<>(emissions.size());
+        for (int e = 0; e < emissions.size(); e++) {
+            Emission emission = emissions.get(e);
+            Track track = matches[e];
+            if (track == null) {
+                track = new Track(nextId++);
+                track.frames = 1;
+                tracks.add(track);
+            }
+            track.startBin = emission.getStartBin();
+            track.stopBin = emission.getStopBin();
+            track.history |= 1;
+            results.add(classify(track, emission, amplitudes, freqStep, plan));
+        }
+        tracks.removeIf(track -> track.history == 0);
+        tracks.sort(Comparator.comparingInt(track -> track.startBin));
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * Gets the number of full classifications computed so far, which excludes cache hits.
+     * @return The evaluation count.
+     */
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    /**
+     * Matches emissions to the tracks of the previous frame by bin overlap in one merge pass.
+     * @param emissions The emissions, ordered by frequency.
+     * @return The matched track per emission, or null for a new emission.
+     */
+    private Track[] associate(List<Emission> emissions) {
+        Track[] matches = new Track[emissions.size()];
+        int t = 0;
+        for (int e = 0; e < emissions.size(); e++) {
+            Emission emission = emissions.get(e);
+            while (t < tracks.size() && tracks.get(t).stopBin < emission.getStartBin()) t++;
+            if (t < tracks.size() && tracks.get(t).startBin <= emission.getStopBin()) {
+                matches[e] = tracks.get(t++);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Measures the features of an emission and reuses the cached decision if they did not change.
+     * @param track The emission's track.
+     * @param emission The emission.
+     * @param x The amplitudes in dBm.
+     * @param freqStep The bin width in Hz.
+     * @param plan The band plan.
+     * @return The classification.
+     */
+    private Classification classify(Track track, Emission emission, double[] x, double freqStep, BandPlan plan) {
+        int from = emission.getStartBin(), to = emission.getStopBin();
+        int bins = to - from + 1;
+        double sumPower = 0, sumLog = 0, peak = Double.NEGATIVE_INFINITY;
+        for (int i = from; i <= to; i++) {
+            sumPower += Math.exp(x[i] * DB_TO_LN);
+            sumLog += x[i] * DB_TO_LN;
+            peak = Math.max(peak, x[i]);
+        }
+        double meanPower = sumPower / bins;
+        double flatness = Math.exp(sumLog / bins) / meanPower;
+        double peakToAverage = peak - Math.log(meanPower) / DB_TO_LN;
+        double occupancy = (double) Long.bitCount(track.history) / track.frames;
+        int band = plan.find(emission.getPeakFrequency(), emission.getPeakAmplitude());
+        Classification cached = track.basis;
+        if (cached != null && band == track.band && plan == track.plan
+                && Math.abs(bins * freqStep - cached.getBandwidth()) <= BANDWIDTH_TOLERANCE * cached.getBandwidth()
+                && Math.abs(flatness - cached.getFlatness()) <= FLATNESS_TOLERANCE
+                && Math.abs(peakToAverage - cached.getPeakToAverage()) <= PEAK_TO_AVERAGE_TOLERANCE
+                && Math.abs(occupancy - cached.getOccupancy()) <= OCCUPANCY_TOLERANCE) {
+            return new Classification(track.id, cached.getLabel(), cached.getShape(), cached.getConfidence(),
+                    bins * freqStep, flatness, peakToAverage, occupancy);
+        }
+        evaluations++;
+        String shape = bins <= 3 ? "CW" : flatness > 0.6 ? "Wideband" : "Narrowband";
+        String label = band < 0 ? "Unknown" : plan.getLabel(band);
+        double bandConfidence = band < 0 ? 0.5 : plan.getConfidence(band) / 100;
+        // Persistent emissions are more trustworthy; a flat wideband shape in a known band fits a digital carrier
+        double confidence = bandConfidence * (0.7 + 0.3 * occupancy);
+        if (band >= 0 && shape.equals("Wideband")) {
+            confidence = Math.min(1.0, confidence * 1.1);
+        }
+        track.band = band;
+        track.plan = plan;
+        track.basis = new Classification(track.id, label, shape, confidence, bins * freqStep,
+                flatness, peakToAverage, occupancy);
+        return track.basis;
+    }
+
+    /**
+     * An emission followed across frames with its cached classification.
+     */
+    private static final class Track {
+        private final int id;
+        private int startBin;
+        private int stopBin;
+        private long history;
+        private int frames;
+        private int band;
+        private BandPlan plan;
+        private Classification basis;
+
+        Track(int id) {
+            this.id = id;
+        }
+    }
+}
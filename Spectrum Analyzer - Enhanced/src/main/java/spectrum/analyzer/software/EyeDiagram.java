@@ -0,0 +1,120 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates two-symbol segments of a demodulated signal into a decaying hit histogram for eye diagram
+ * display.
+ * <p>
+ * Each segment is centred on a symbol strobe from the timing recovery, so the eye stays open and still
+ * while the timing loop tracks drift. Consecutive samples are joined by rasterising the straight line
+ * between them into the histogram one column at a time, so the traces are continuous even at a few
+ * samples per symbol, and no path is ever drawn on the canvas. Rendering maps the logarithm of each
+ * count to the same colour ramp as the constellation and then decays the counts.
+ */
+public class EyeDiagram {
+    private static final double RANGE = 1.5;
+
+    private final int width;
+    private final int height;
+    private final float[] counts;
+    private long segmentCount;
+
+    /**
+     * Constructs an EyeDiagram.
+     * @param width The number of columns, spanning two symbol periods.
+     * @param height The number of rows, spanning +/-{@value #RANGE}.
+     */
+    public EyeDiagram(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.counts = new float[width * height];
+    }
+
+    /**
+     * Gets the number of columns.
+     * @return The width in cells.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Gets the number of rows.
+     * @return The height in cells.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Gets the number of segments added since the last clear.
+     * @return The segment count.
+     */
+    public synchronized long getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Adds the segments around each strobe of a block. Segments that reach outside the block are skipped.
+     * @param samples The demodulated samples of the block.
+     * @param count The number of samples.
+     * @param strobes The symbol strobe positions, in samples from the block start.
+     * @param strobeCount The number of strobes.
+     * @param period The symbol period in samples.
+     */
+    public synchronized void add(double[] samples, int count, double[] strobes, int strobeCount, double period) {
+        double columnsPerSample = width / (2 * period);
+        double rowScale = height / (2 * RANGE);
+        for (int s = 0; s < strobeCount; s++) {
+            double start = strobes[s] - period;
+            int first = (int) Math.ceil(start);
+            int last = (int) Math.floor(strobes[s] + period);
+            if (first < 0 || last >= count) continue;
+            double previousX = (first - start) * columnsPerSample;
+            double previousY = (RANGE - samples[first]) * rowScale;
+            for (int n = first + 1; n <= last; n++) {
+                double x = (n - start) * columnsPerSample;
+                double y = (RANGE - samples[n]) * rowScale;
+                // Columns whose centres fall in [previousX, x), so adjacent lines never share a column
+                int from = (int) Math.ceil(previousX - 0.5), to = Math.min(width - 1, (int) Math.ceil(x - 0.5) - 1);
+                double slope = (y - previousY) / (x - previousX);
+                double row = previousY + (from + 0.5 - previousX) * slope;
+                for (int column = from; column <= to; column++, row += slope) {
+                    if (row >= 0 && row < height) {
+                        counts[(int) row * width + column]++;
+                    }
+                }
+                previousX = x;
+                previousY = y;
+            }
+            segmentCount++;
+        }
+    }
+
+    /**
+     * Clears the histogram.
+     */
+    public synchronized void clear() {
+        Arrays.fill(counts, 0);
+        segmentCount = 0;
+    }
+
+    /**
+     * Renders the histogram as ARGB pixels and then decays it.
+     * @param pixels Receives {@code width * height} pixels, row by row.
+     * @param decay The factor every cell is multiplied by after rendering, between 0 and 1.
+     */
+    public synchronized void render(int[] pixels, float decay) {
+        float max = 0;
+        for (float count : counts) {
+            max = Math.max(max, count);
+        }
+        double norm = max > 0 ? 1 / Math.log1p(max) : 0;
+        for (int c = 0; c < counts.length; c++) {
+            float count = counts[c];
+            pixels[c] = count > 0 ? ConstellationDensity.heatColor(Math.log1p(count) * norm) : 0xFF000000;
+            counts[c] = count * decay;
+        }
+    }
+}
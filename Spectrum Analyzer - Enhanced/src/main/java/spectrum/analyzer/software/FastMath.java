@@ -0,0 +1,37 @@
+package spectrum.analyzer.software;
+
+/**
+ * Fast approximations of elementary functions for per-sample DSP loops.
+ */
+public final class FastMath {
+    private static final double HALF_PI = Math.PI / 2;
+    // Hastings' minimax polynomial for atan on [-1, 1]; maximum absolute error about 1.2e-5 rad
+    private static final double A1 = 0.9998660;
+    private static final double A3 = -0.3302995;
+    private static final double A5 = 0.1801410;
+    private static final double A7 = -0.0851330;
+    private static final double A9 = 0.0208351;
+
+    private FastMath() {
+    }
+
+    /**
+     * Approximates {@link Math#atan2(double, double)} with a ninth-order odd polynomial after reducing
+     * the angle to the first octant. The absolute error is at most 1.2e-5 rad, about -108 dB relative to
+     * pi full scale, which is below the quantisation noise of 16-bit audio. Returns 0 for (0, 0).
+     * @param y The ordinate.
+     * @param x The abscissa.
+     * @return The angle in radians, in [-pi, pi].
+     */
+    public static double atan2(double y, double x) {
+        double ax = Math.abs(x), ay = Math.abs(y);
+        double max = Math.max(ax, ay);
+        if (max == 0) return 0;
+        double z = Math.min(ax, ay) / max;
+        double z2 = z * z;
+        double r = z * (A1 + z2 * (A3 + z2 * (A5 + z2 * (A7 + z2 * A9))));
+        if (ay > ax) r = HALF_PI - r;
+        if (x < 0) r = Math.PI - r;
+        return y < 0 ? -r : r;
+    }
+}
@@ -0,0 +1,120 @@
+package spectrum.analyzer.software;
+
+import java.util.Random;
+
+/**
+ * Reproduces the accuracy and speed figures quoted for {@link FastMath#atan2}.
+ * <p>
+ * The error sweep compares the approximation with {@link Math#atan2} on a fine grid of angles at several
+ * magnitudes, on Gaussian pairs from a fixed seed and on the axes and diagonals. The throughput run feeds
+ * simulated FM through the {@link Demodulator} and through a reference discriminator that calls
+ * {@link Math#atan2} per sample, in the same block size as the audio path, and reports millions of samples
+ * per second after warm-up. Run it with the application classes on the class path:
+ * {@code java spectrum.analyzer.software.FastMathBenchmark}.
+ */
+final class FastMathBenchmark {
+    private static final double SAMPLE_RATE = 256000.0;
+    private static final int BLOCK = 4096;
+    private static final int BLOCKS = 64;
+    private static final int ROUNDS = 5;
+    private static final int REPEATS = 10;
+
+    private FastMathBenchmark() {
+    }
+
+    /**
+     * Runs the error sweep and the throughput comparison and prints the results.
+     * @param args Ignored.
+     */
+    public static void main(String[] args) {
+        System.out.printf("atan2 maximum error: %.3e rad%n", maxError());
+        int n = BLOCK * BLOCKS;
+        IqSimulator simulator = new IqSimulator(SAMPLE_RATE);
+        simulator.setModulation("FM");
+        double[] i = new double[n];
+        double[] q = new double[n];
+        simulator.generate(i, q, n);
+        Demodulator demodulator = new Demodulator(SAMPLE_RATE);
+        demodulator.setType("FM");
+        double[] reference = new double[n];
+        double[] fast = new double[n];
+        referenceDiscriminator(i, q, n, reference);
+        demodulator.demodulate(i, q, n, fast);
+        double difference = 0;
+        for (int k = 0; k < n; k++) {
+            difference = Math.max(difference, Math.abs(fast[k] - reference[k]));
+        }
+        System.out.printf("FM output maximum difference: %.3e of full scale%n", difference);
+
+        double[] blockI = new double[BLOCK];
+        double[] blockQ = new double[BLOCK];
+        double[] out = new double[BLOCK];
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < REPEATS; r++) {
+                for (int b = 0; b < n; b += BLOCK) {
+                    System.arraycopy(i, b, blockI, 0, BLOCK);
+                    System.arraycopy(q, b, blockQ, 0, BLOCK);
+                    referenceDiscriminator(blockI, blockQ, BLOCK, out);
+                }
+            }
+            long middle = System.nanoTime();
+            for (int r = 0; r < REPEATS; r++) {
+                for (int b = 0; b < n; b += BLOCK) {
+                    System.arraycopy(i, b, blockI, 0, BLOCK);
+                    System.arraycopy(q, b, blockQ, 0, BLOCK);
+                    demodulator.demodulate(blockI, blockQ, BLOCK, out);
+                }
+            }
+            long end = System.nanoTime();
+            double samples = (double) REPEATS * n;
+            System.out.printf("round %d: Math.atan2 %.1f Msps, FastMath.atan2 %.1f Msps%n", round + 1,
+                    samples * 1e3 / (middle - start), samples * 1e3 / (end - middle));
+        }
+    }
+
+    /**
+     * Measures the largest absolute difference between the approximation and {@link Math#atan2}.
+     * @return The error in radians.
+     */
+    private static double maxError() {
+        double error = 0;
+        int steps = 1 << 20;
+        for (double radius : new double[]{1e-300, 1e-6, 1, 1e6, 1e300}) {
+            for (int k = 0; k < steps; k++) {
+                double angle = -Math.PI + 2 * Math.PI * k / steps;
+                double y = radius * Math.sin(angle), x = radius * Math.cos(angle);
+                error = Math.max(error, Math.abs(FastMath.atan2(y, x) - Math.atan2(y, x)));
+            }
+        }
+        Random random = new Random(3);
+        for (int k = 0; k < 10_000_000; k++) {
+            double y = random.nextGaussian(), x = random.nextGaussian();
+            error = Math.max(error, Math.abs(FastMath.atan2(y, x) - Math.atan2(y, x)));
+        }
+        double[][] edges = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}, {1, 1}, {-1, -1}, {1, -1}, {-1, 1}};
+        for (double[] edge : edges) {
+            error = Math.max(error, Math.abs(FastMath.atan2(edge[0], edge[1]) - Math.atan2(edge[0], edge[1])));
+        }
+        return error;
+    }
+
+    /**
+     * The quadrature discriminator as it was before the polynomial: one {@link Math#atan2} per sample.
+     * Each call starts from a carrier at zero phase, like a freshly reset demodulator.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @param out Receives the frequency, scaled so that half the sample rate is 1.
+     */
+    private static void referenceDiscriminator(double[] i, double[] q, int count, double[] out) {
+        double previousI = 1, previousQ = 0;
+        for (int n = 0; n < count; n++) {
+            double re = i[n] * previousI + q[n] * previousQ;
+            double im = q[n] * previousI - i[n] * previousQ;
+            out[n] = Math.atan2(im, re) / Math.PI;
+            previousI = i[n];
+            previousQ = q[n];
+        }
+    }
+}
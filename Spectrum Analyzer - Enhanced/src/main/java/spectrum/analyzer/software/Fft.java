@@ -0,0 +1,100 @@
+package spectrum.analyzer.software;
+
+/**
+ * In-place radix-2 fast Fourier transform of a fixed power-of-two size.
+ * <p>
+ * The twiddle factors and the bit-reversal permutation are computed once in the constructor, so a
+ * transform does no trigonometry and no allocation. The tables are never written afterwards, so one
+ * instance can transform different arrays, or different regions of one array, from several threads at
+ * once.
+ */
+public class Fft {
+    private final int size;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    /**
+     * Constructs an Fft.
+     * @param size The transform size, a power of two of at least 2.
+     */
+    public Fft(int size) {
+        if (size < 2 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int k = 0; k < size; k++) {
+            reversed[k] = Integer.reverse(k) >>> (32 - bits);
+        }
+        this.cos = new double[size / 2];
+        this.sin = new double[size / 2];
+        for (int k = 0; k < size / 2; k++) {
+            cos[k] = Math.cos(2 * Math.PI * k / size);
+            sin[k] = -Math.sin(2 * Math.PI * k / size);
+        }
+    }
+
+    /**
+     * Gets the transform size.
+     * @return The number of points.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Computes the forward transform, X[k] = sum x[n] exp(-2 pi i k n / N), in place.
+     * @param re The real parts.
+     * @param im The imaginary parts.
+     * @param offset The index of the first of the {@link #getSize()} points to transform.
+     */
+    public void transform(double[] re, double[] im, int offset) {
+        for (int k = 0; k < size; k++) {
+            int r = reversed[k];
+            if (r > k) {
+                double t = re[offset + k];
+                re[offset + k] = re[offset + r];
+                re[offset + r] = t;
+                t = im[offset + k];
+                im[offset + k] = im[offset + r];
+                im[offset + r] = t;
+            }
+        }
+        for (int length = 2; length <= size; length <<= 1) {
+            int half = length >> 1;
+            int stride = size / length;
+            for (int start = offset; start < offset + size; start += length) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * stride], wi = sin[k * stride];
+                    int a = start + k, b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the inverse transform, x[n] = (1/N) sum X[k] exp(2 pi i k n / N), in place.
+     * @param re The real parts.
+     * @param im The imaginary parts.
+     * @param offset The index of the first of the {@link #getSize()} points to transform.
+     */
+    public void inverse(double[] re, double[] im, int offset) {
+        for (int k = offset; k < offset + size; k++) {
+            im[k] = -im[k];
+        }
+        transform(re, im, offset);
+        double scale = 1.0 / size;
+        for (int k = offset; k < offset + size; k++) {
+            re[k] *= scale;
+            im[k] = -im[k] * scale;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package spectrum.analyzer.software;
+
+/**
+ * Kaiser-window design of linear-phase low-pass FIR filters.
+ * <p>
+ * The window shape and length follow Kaiser's empirical formulas: the stopband attenuation fixes the
+ * window parameter beta, and the attenuation together with the transition width fixes the length.
+ */
+final class FirDesign {
+    private FirDesign() {
+    }
+
+    /**
+     * Estimates the length a Kaiser-windowed filter needs.
+     * @param attenuation The stopband attenuation in dB.
+     * @param transition The transition band width in cycles per sample.
+     * @return The number of taps.
+     */
+    static int kaiserLength(double attenuation, double transition) {
+        return (int) Math.ceil((attenuation - 8) / (2.285 * 2 * Math.PI * transition)) + 1;
+    }
+
+    /**
+     * Gets the Kaiser window parameter for a stopband attenuation.
+     * @param attenuation The stopband attenuation in dB.
+     * @return The window parameter beta.
+     */
+    static double kaiserBeta(double attenuation) {
+        if (attenuation > 50) {
+            return 0.1102 * (attenuation - 8.7);
+        }
+        if (attenuation >= 21) {
+            return 0.5842 * Math.pow(attenuation - 21, 0.4) + 0.07886 * (attenuation - 21);
+        }
+        return 0;
+    }
+
+    /**
+     * Designs a Kaiser-windowed sinc low-pass filter. The taps are symmetric, so the filter reads the
+     * same in both directions.
+     * @param length The number of taps.
+     * @param cutoff The cutoff, halfway through the transition band, in cycles per sample.
+     * @param attenuation The stopband attenuation in dB.
+     * @return The taps, scaled to unity gain at DC.
+     */
+    static double[] lowpass(int length, double cutoff, double attenuation) {
+        double beta = kaiserBeta(attenuation);
+        double i0Beta = besselI0(beta);
+        double center = (length - 1) / 2.0;
+        double[] taps = new double[length];
+        double sum = 0;
+        for (int k = 0; k < length; k++) {
+            double t = k - center;
+            double sinc = t == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            double r = length > 1 ? 2.0 * k / (length - 1) - 1 : 0;
+            taps[k] = sinc * besselI0(beta * Math.sqrt(Math.max(0, 1 - r * r))) / i0Beta;
+            sum += taps[k];
+        }
+        for (int k = 0; k < length; k++) {
+            taps[k] /= sum;
+        }
+        return taps;
+    }
+
+    /**
+     * Computes the zeroth-order modified Bessel function of the first kind.
+     * @param x The argument.
+     * @return I0(x).
+     */
+    static double besselI0(double x) {
+        double sum = 1, term = 1, half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < 1e-12 * sum) break;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,171 @@
+package spectrum.analyzer.software;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Off-heap ring buffer of recent spectrum frames for waterfall and time-domain measurements.
+ * <p>
+ * Rows are stored as 32-bit floats in direct buffers, so history depth does not add to the Java heap.
+ * The byte budget fixes the number of rows; once full, each new frame replaces the oldest one. Rows are
+ * addressed by age, 0 being the newest. A single thread appends while other threads read; a reader
+ * racing with the append that evicts the oldest row may see that row partially overwritten.
+ */
+public class FrameHistory {
+    private static final int MAX_CHUNK_BYTES = Integer.MAX_VALUE - 8;
+
+    private final long byteBudget;
+    private int binCount;
+    private int capacity;
+    private int rowsPerChunk;
+    private FloatBuffer[] chunks = new FloatBuffer[0];
+    private long[] timestamps = new long[0];
+    private volatile long appended;
+
+    /**
+     * Constructs a FrameHistory.
+     * @param byteBudget The maximum number of bytes used for rows.
+     */
+    public FrameHistory(long byteBudget) {
+        if (byteBudget <= 0) {
+            throw new IllegalArgumentException("History budget must be positive");
+        }
+        this.byteBudget = byteBudget;
+    }
+
+    /**
+     * Appends a frame, evicting the oldest frame when the history is full.
+     * The history is cleared when the bin count changes.
+     * @param timestamp The frame timestamp in milliseconds since the epoch.
+     * @param amplitudes The amplitudes in dBm.
+     */
+    public synchronized void append(long timestamp, double[] amplitudes) {
+        if (amplitudes.length != binCount) {
+            allocate(amplitudes.length);
+        }
+        if (capacity == 0) return;
+        long sequence = appended;
+        int slot = (int) (sequence % capacity);
+        FloatBuffer chunk = chunks[slot / rowsPerChunk];
+        int base = (slot % rowsPerChunk) * binCount;
+        for (int i = 0; i < binCount; i++) {
+            chunk.put(base + i, (float) amplitudes[i]);
+        }
+        timestamps[slot] = timestamp;
+        appended = sequence + 1;
+    }
+
+    /**
+     * Removes all frames.
+     */
+    public synchronized void clear() {
+        appended = 0;
+    }
+
+    /**
+     * Gets the number of frames currently held.
+     * @return The frame count.
+     */
+    public int size() {
+        return (int) Math.min(appended, capacity);
+    }
+
+    /**
+     * Gets the maximum number of frames the budget allows at the current bin count.
+     * @return The capacity in frames.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of bins per row.
+     * @return The bin count.
+     */
+    public int getBinCount() {
+        return binCount;
+    }
+
+    /**
+     * Gets the timestamp of a frame.
+     * @param age The frame age, 0 being the newest.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public long getTimestamp(int age) {
+        return timestamps[slot(age)];
+    }
+
+    /**
+     * Gets one amplitude without copying the row.
+     * @param age The frame age, 0 being the newest.
+     * @param bin The bin index.
+     * @return The amplitude in dBm.
+     */
+    public float getAmplitude(int age, int bin) {
+        int slot = slot(age);
+        return chunks[slot / rowsPerChunk].get((slot % rowsPerChunk) * binCount + bin);
+    }
+
+    /**
+     * Gets a read-only view of a row backed by the off-heap storage.
+     * @param age The frame age, 0 being the newest.
+     * @return The row view, positioned at bin 0.
+     */
+    public FloatBuffer getRow(int age) {
+        int slot = slot(age);
+        int base = (slot % rowsPerChunk) * binCount;
+        return chunks[slot / rowsPerChunk].slice(base, binCount).asReadOnlyBuffer();
+    }
+
+    /**
+     * Computes the maximum amplitude of a bin range in one row.
+     * @param age The frame age, 0 being the newest.
+     * @param from The first bin, inclusive.
+     * @param to The last bin, exclusive.
+     * @return The maximum amplitude in dBm.
+     */
+    public float getMax(int age, int from, int to) {
+        int slot = slot(age);
+        FloatBuffer chunk = chunks[slot / rowsPerChunk];
+        int base = (slot % rowsPerChunk) * binCount;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            max = Math.max(max, chunk.get(base + i));
+        }
+        return max;
+    }
+
+    /**
+     * Maps a frame age to its ring slot.
+     * @param age The frame age, 0 being the newest.
+     * @return The slot index.
+     * @throws IndexOutOfBoundsException If no frame of that age is held.
+     */
+    private int slot(int age) {
+        long sequence = appended;
+        if (age < 0 || age >= Math.min(sequence, capacity)) {
+            throw new IndexOutOfBoundsException("No frame of age " + age);
+        }
+        return (int) ((sequence - 1 - age) % capacity);
+    }
+
+    /**
+     * Allocates the off-heap rows for a new bin count.
+     * @param bins The number of bins per row.
+     */
+    private void allocate(int bins) {
+        long rowBytes = 4L * Math.max(1, bins);
+        binCount = bins;
+        capacity = (int) Math.min(Integer.MAX_VALUE, byteBudget / rowBytes);
+        rowsPerChunk = (int) Math.max(1, MAX_CHUNK_BYTES / rowBytes);
+        int chunkCount = capacity == 0 ? 0 : (capacity + rowsPerChunk - 1) / rowsPerChunk;
+        chunks = new FloatBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            int rows = Math.min(rowsPerChunk, capacity - i * rowsPerChunk);
+            chunks[i] = ByteBuffer.allocateDirect((int) (rows * rowBytes)).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        timestamps = new long[capacity];
+        appended = 0;
+    }
+}
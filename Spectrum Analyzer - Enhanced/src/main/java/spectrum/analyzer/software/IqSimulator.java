@@ -0,0 +1,183 @@
+package spectrum.analyzer.software;
+
+import java.util.Random;
+
+/**
+ * Generates a continuous stream of modulated baseband IQ samples for the demodulators.
+ * <p>
+ * A 1 kHz test tone (or random symbols for the digital modes) modulates a carrier that sits slightly
+ * off the tuned frequency, with additive Gaussian noise. PSK and QAM symbols are shaped with a
+ * root-raised-cosine filter at 16 kBd. The carrier, tone and symbol phases are kept
+ * between calls, so consecutive blocks join without discontinuities.
+ */
+public class IqSimulator {
+    private static final double CARRIER_OFFSET = 1000.0;
+    private static final double TONE_FREQUENCY = 1000.0;
+    private static final double FM_DEVIATION = 50_000.0;
+    private static final int SAMPLES_PER_SYMBOL = 16;
+    private static final int SHAPING_SPAN = 12;
+    private static final double SHAPING_ROLLOFF = 0.35;
+    private static final int OFDM_SUBCARRIERS = OfdmReceiver.SUBCARRIERS;
+    private static final int OFDM_CYCLIC_PREFIX = OfdmReceiver.CYCLIC_PREFIX;
+
+    private final double sampleRate;
+    private final Random random = new Random();
+    private String modulation = "None";
+    private double noiseLevel = 0.03;
+    private double carrierPhase;
+    private double tonePhase;
+    private int symbolSample;
+    private final double[] shapingTaps;
+    private final double[] recentI = new double[SHAPING_SPAN];
+    private final double[] recentQ = new double[SHAPING_SPAN];
+    private int recentIndex;
+    private final double[] ofdmI = new double[OFDM_SUBCARRIERS + OFDM_CYCLIC_PREFIX];
+    private final double[] ofdmQ = new double[OFDM_SUBCARRIERS + OFDM_CYCLIC_PREFIX];
+    private int ofdmSample = OFDM_SUBCARRIERS + OFDM_CYCLIC_PREFIX;
+    private final Fft ofdmFft = new Fft(OFDM_SUBCARRIERS);
+    private final double[] subcarrierI = new double[OFDM_SUBCARRIERS];
+    private final double[] subcarrierQ = new double[OFDM_SUBCARRIERS];
+
+    /**
+     * Constructs an IqSimulator.
+     * @param sampleRate The IQ sample rate in Hz.
+     */
+    public IqSimulator(double sampleRate) {
+        this.sampleRate = sampleRate;
+        this.shapingTaps = RootRaisedCosine.design(SAMPLES_PER_SYMBOL, SHAPING_ROLLOFF, SHAPING_SPAN);
+        // Unit energy per symbol spread over the symbol period gives about unit power per sample
+        double scale = Math.sqrt(SAMPLES_PER_SYMBOL);
+        for (int k = 0; k < shapingTaps.length; k++) {
+            shapingTaps[k] *= scale;
+        }
+    }
+
+    /**
+     * Gets the symbol rate of the PSK and QAM modulations.
+     * @return The symbol rate in Bd.
+     */
+    public double getSymbolRate() {
+        return sampleRate / SAMPLES_PER_SYMBOL;
+    }
+
+    /**
+     * Gets the IQ sample rate.
+     * @return The sample rate in Hz.
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Sets the simulated modulation.
+     * @param modulation The modulation (None, AM, FM, PM, QAM, PSK or OFDM).
+     */
+    public synchronized void setModulation(String modulation) {
+        this.modulation = modulation;
+        symbolSample = 0;
+        ofdmSample = ofdmI.length;
+    }
+
+    /**
+     * Sets the standard deviation of the additive noise relative to a unit carrier.
+     * @param noiseLevel The noise level.
+     */
+    public synchronized void setNoiseLevel(double noiseLevel) {
+        this.noiseLevel = noiseLevel;
+    }
+
+    /**
+     * Generates the next block of the stream.
+     * @param i Receives the in-phase samples.
+     * @param q Receives the quadrature samples.
+     * @param count The number of samples.
+     */
+    public synchronized void generate(double[] i, double[] q, int count) {
+        double carrierStep = 2 * Math.PI * CARRIER_OFFSET / sampleRate;
+        double toneStep = 2 * Math.PI * TONE_FREQUENCY / sampleRate;
+        boolean am = modulation.equals("AM"), fm = modulation.equals("FM"), pm = modulation.equals("PM");
+        boolean psk = modulation.equals("PSK"), qam = modulation.equals("QAM"), ofdm = modulation.equals("OFDM");
+        for (int n = 0; n < count; n++) {
+            double tone = Math.sin(tonePhase);
+            tonePhase += toneStep;
+            if (tonePhase > 2 * Math.PI) tonePhase -= 2 * Math.PI;
+            double re = 1, im = 0, phase = carrierPhase;
+            if (am) {
+                re = 1 + 0.5 * tone;
+            } else if (fm) {
+                carrierPhase += 2 * Math.PI * FM_DEVIATION * tone / sampleRate;
+            } else if (pm) {
+                phase += tone;
+            } else if (psk || qam) {
+                if (symbolSample == 0) nextSymbol(qam);
+                re = 0;
+                for (int j = 0; j < SHAPING_SPAN; j++) {
+                    int k = (recentIndex - j + SHAPING_SPAN) % SHAPING_SPAN;
+                    double tap = shapingTaps[symbolSample + j * SAMPLES_PER_SYMBOL];
+                    re += tap * recentI[k];
+                    im += tap * recentQ[k];
+                }
+                symbolSample = (symbolSample + 1) % SAMPLES_PER_SYMBOL;
+            } else if (ofdm) {
+                if (ofdmSample == ofdmI.length) nextOfdmSymbol();
+                re = ofdmI[ofdmSample];
+                im = ofdmQ[ofdmSample];
+                ofdmSample++;
+            }
+            carrierPhase += carrierStep;
+            if (carrierPhase > Math.PI) carrierPhase -= 2 * Math.PI;
+            if (carrierPhase < -Math.PI) carrierPhase += 2 * Math.PI;
+            double c = Math.cos(phase), s = Math.sin(phase);
+            i[n] = re * c - im * s + noiseLevel * random.nextGaussian();
+            q[n] = re * s + im * c + noiseLevel * random.nextGaussian();
+        }
+    }
+
+    /**
+     * Draws the next random QPSK or 16-QAM symbol with unit average power into the shaping filter.
+     * @param qam True for 16-QAM, false for QPSK.
+     */
+    private void nextSymbol(boolean qam) {
+        recentIndex = (recentIndex + 1) % SHAPING_SPAN;
+        if (qam) {
+            double scale = 1 / Math.sqrt(10);
+            recentI[recentIndex] = (2 * random.nextInt(4) - 3) * scale;
+            recentQ[recentIndex] = (2 * random.nextInt(4) - 3) * scale;
+        } else {
+            double scale = 1 / Math.sqrt(2);
+            recentI[recentIndex] = random.nextBoolean() ? scale : -scale;
+            recentQ[recentIndex] = random.nextBoolean() ? scale : -scale;
+        }
+    }
+
+    /**
+     * Builds the next OFDM symbol from random QPSK subcarriers and the receiver's pilots, with its
+     * cyclic prefix.
+     */
+    private void nextOfdmSymbol() {
+        int n = OFDM_SUBCARRIERS;
+        double scale = 1 / Math.sqrt(2);
+        for (int k = 0; k < n; k++) {
+            if (k == 0) { // subcarrier 0 (DC) stays empty
+                subcarrierI[k] = 0;
+                subcarrierQ[k] = 0;
+            } else if (OfdmReceiver.isPilot(k)) {
+                subcarrierI[k] = OfdmReceiver.PILOT_VALUE;
+                subcarrierQ[k] = 0;
+            } else {
+                subcarrierI[k] = random.nextBoolean() ? scale : -scale;
+                subcarrierQ[k] = random.nextBoolean() ? scale : -scale;
+            }
+        }
+        ofdmFft.inverse(subcarrierI, subcarrierQ, 0);
+        // The inverse transform divides by n; scale back up to unit power per sample
+        double norm = n / Math.sqrt(n - 1);
+        for (int t = 0; t < n; t++) {
+            ofdmI[OFDM_CYCLIC_PREFIX + t] = subcarrierI[t] * norm;
+            ofdmQ[OFDM_CYCLIC_PREFIX + t] = subcarrierQ[t] * norm;
+        }
+        System.arraycopy(ofdmI, n, ofdmI, 0, OFDM_CYCLIC_PREFIX);
+        System.arraycopy(ofdmQ, n, ofdmQ, 0, OFDM_CYCLIC_PREFIX);
+        ofdmSample = 0;
+    }
+}
@@ -0,0 +1,225 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Measures error vector magnitude (EVM) and modulation error ratio (MER) of recovered symbols.
+ * <p>
+ * Symbols arrive in batches as parallel primitive arrays of measured points, decided points and
+ * decision classes, so no object is created per symbol. Error and reference powers are accumulated three
+ * ways: running totals since the last reset, a sliding window over the most recent symbols kept in two
+ * ring buffers with running sums, and per-class totals that show whether the error is concentrated on
+ * particular constellation points, as it is with compression or IQ imbalance.
+ */
+public class ModulationQuality {
+    public static final double MAX_MER_DB = 60.0;
+
+    private final int maxClasses;
+    private final double[] windowError;
+    private final double[] windowReference;
+    private final long[] classSymbols;
+    private final double[] classError;
+    private final double[] classReference;
+    private int windowIndex;
+    private int windowFill;
+    private double windowErrorSum;
+    private double windowReferenceSum;
+    private double totalError;
+    private double totalReference;
+    private long totalSymbols;
+    private int classCount;
+
+    /**
+     * Constructs a ModulationQuality.
+     * @param maxClasses The largest number of constellation points that will be measured.
+     * @param windowSymbols The number of recent symbols in the windowed average.
+     */
+    public ModulationQuality(int maxClasses, int windowSymbols) {
+        if (maxClasses < 1 || windowSymbols < 1) {
+            throw new IllegalArgumentException("Invalid class count or window length");
+        }
+        this.maxClasses = maxClasses;
+        this.windowError = new double[windowSymbols];
+        this.windowReference = new double[windowSymbols];
+        this.classSymbols = new long[maxClasses];
+        this.classError = new double[maxClasses];
+        this.classReference = new double[maxClasses];
+    }
+
+    /**
+     * Clears all statistics and sets the number of constellation points of the next measurement.
+     * @param classCount The number of constellation points, at most the maximum given at construction.
+     */
+    public synchronized void reset(int classCount) {
+        this.classCount = Math.min(classCount, maxClasses);
+        Arrays.fill(windowError, 0);
+        Arrays.fill(windowReference, 0);
+        Arrays.fill(classSymbols, 0);
+        Arrays.fill(classError, 0);
+        Arrays.fill(classReference, 0);
+        windowIndex = 0;
+        windowFill = 0;
+        windowErrorSum = 0;
+        windowReferenceSum = 0;
+        totalError = 0;
+        totalReference = 0;
+        totalSymbols = 0;
+    }
+
+    /**
+     * Adds a batch of symbols.
+     * @param symbolI The in-phase components of the measured symbols.
+     * @param symbolQ The quadrature components of the measured symbols.
+     * @param decisionI The in-phase components of the decided symbols.
+     * @param decisionQ The quadrature components of the decided symbols.
+     * @param classes The constellation point index of each decision.
+     * @param count The number of symbols.
+     */
+    public synchronized void add(double[] symbolI, double[] symbolQ, double[] decisionI, double[] decisionQ,
+                                 int[] classes, int count) {
+        int length = windowError.length;
+        for (int n = 0; n < count; n++) {
+            double ei = symbolI[n] - decisionI[n], eq = symbolQ[n] - decisionQ[n];
+            double error = ei * ei + eq * eq;
+            double reference = decisionI[n] * decisionI[n] + decisionQ[n] * decisionQ[n];
+            totalError += error;
+            totalReference += reference;
+            windowErrorSum += error - windowError[windowIndex];
+            windowReferenceSum += reference - windowReference[windowIndex];
+            windowError[windowIndex] = error;
+            windowReference[windowIndex] = reference;
+            if (++windowIndex == length) {
+                windowIndex = 0;
+                // Recompute the sums once per wrap so rounding in the running updates cannot accumulate
+                windowErrorSum = 0;
+                windowReferenceSum = 0;
+                for (int k = 0; k < length; k++) {
+                    windowErrorSum += windowError[k];
+                    windowReferenceSum += windowReference[k];
+                }
+            }
+            int c = classes[n];
+            if (c >= 0 && c < classCount) {
+                classSymbols[c]++;
+                classError[c] += error;
+                classReference[c] += reference;
+            }
+        }
+        windowFill = (int) Math.min(length, windowFill + (long) count);
+        totalSymbols += count;
+    }
+
+    /**
+     * Gets the number of symbols measured since the last reset.
+     * @return The symbol count.
+     */
+    public synchronized long getSymbolCount() {
+        return totalSymbols;
+    }
+
+    /**
+     * Gets the number of symbols in the windowed average.
+     * @return The symbol count, at most the window length.
+     */
+    public synchronized int getWindowSymbols() {
+        return windowFill;
+    }
+
+    /**
+     * Gets the RMS EVM since the last reset, relative to the average constellation power.
+     * @return The EVM in percent, or NaN if no symbols were measured.
+     */
+    public synchronized double getEvm() {
+        return evm(totalError, totalReference);
+    }
+
+    /**
+     * Gets the RMS EVM over the most recent window of symbols.
+     * @return The EVM in percent, or NaN if no symbols were measured.
+     */
+    public synchronized double getWindowEvm() {
+        return evm(windowErrorSum, windowReferenceSum);
+    }
+
+    /**
+     * Gets the MER since the last reset.
+     * @return The MER in dB, at most {@link #MAX_MER_DB}, or NaN if no symbols were measured.
+     */
+    public synchronized double getMer() {
+        return mer(totalError, totalReference);
+    }
+
+    /**
+     * Gets the MER over the most recent window of symbols.
+     * @return The MER in dB, at most {@link #MAX_MER_DB}, or NaN if no symbols were measured.
+     */
+    public synchronized double getWindowMer() {
+        return mer(windowErrorSum, windowReferenceSum);
+    }
+
+    /**
+     * Gets the number of constellation points being measured.
+     * @return The class count.
+     */
+    public synchronized int getClassCount() {
+        return classCount;
+    }
+
+    /**
+     * Gets the number of symbols decided as one constellation point since the last reset.
+     * @param c The constellation point index.
+     * @return The symbol count.
+     */
+    public synchronized long getClassSymbols(int c) {
+        return classSymbols[c];
+    }
+
+    /**
+     * Gets the RMS EVM of the symbols decided as one constellation point, relative to the average power
+     * of the whole constellation so that the classes can be compared directly.
+     * @param c The constellation point index.
+     * @return The EVM in percent, or NaN if no symbols were decided as that point.
+     */
+    public synchronized double getClassEvm(int c) {
+        if (classSymbols[c] == 0 || totalSymbols == 0) return Double.NaN;
+        return evm(classError[c] / classSymbols[c], totalReference / totalSymbols);
+    }
+
+    /**
+     * Finds the constellation point with the largest EVM.
+     * @return The constellation point index, or -1 if no symbols were measured.
+     */
+    public synchronized int getWorstClass() {
+        int worst = -1;
+        double worstEvm = -1;
+        for (int c = 0; c < classCount; c++) {
+            double evm = getClassEvm(c);
+            if (evm > worstEvm) {
+                worstEvm = evm;
+                worst = c;
+            }
+        }
+        return worst;
+    }
+
+    /**
+     * Computes the RMS EVM from error and reference power.
+     * @param error The error power.
+     * @param reference The reference power.
+     * @return The EVM in percent, or NaN if the reference power is zero.
+     */
+    private static double evm(double error, double reference) {
+        return reference > 0 ? 100 * Math.sqrt(error / reference) : Double.NaN;
+    }
+
+    /**
+     * Computes the MER from error and reference power.
+     * @param error The error power.
+     * @param reference The reference power.
+     * @return The MER in dB, clamped to {@link #MAX_MER_DB} when the error power is zero or negligible, or NaN
+     *         if the reference power is zero.
+     */
+    private static double mer(double error, double reference) {
+        return reference > 0 ? Math.min(MAX_MER_DB, 10 * Math.log10(reference / error)) : Double.NaN;
+    }
+}
@@ -0,0 +1,192 @@
+package spectrum.analyzer.software;
+
+/**
+ * Streaming per-bin noise floor estimate based on a low percentile of each bin across frames.
+ * <p>
+ * Every bin runs the P-square quantile estimator (Jain and Chlamtac), which tracks a percentile with five
+ * markers and no stored history. The marker heights and positions of all bins live in flat primitive
+ * arrays, so memory is constant per bin and each frame is an O(n) in-place update. Because every bin
+ * sees one observation per frame, the desired marker positions are shared by all bins.
+ */
+public class NoiseFloorEstimator {
+    private static final int MARKERS = 5;
+
+    private final double percentile;
+    private final double[] increments;
+    private final double[] desired = new double[MARKERS];
+    private double[] heights = new double[0];
+    private int[] positions = new int[0];
+    private int binCount;
+    private long count;
+
+    /**
+     * Constructs a NoiseFloorEstimator tracking the 10th percentile.
+     */
+    public NoiseFloorEstimator() {
+        this(0.1);
+    }
+
+    /**
+     * Constructs a NoiseFloorEstimator.
+     * @param percentile The tracked percentile, between 0 and 1.
+     */
+    public NoiseFloorEstimator(double percentile) {
+        if (percentile <= 0 || percentile >= 1) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 1");
+        }
+        this.percentile = percentile;
+        this.increments = new double[] {0, percentile / 2, percentile, (1 + percentile) / 2, 1};
+    }
+
+    /**
+     * Forgets all observations, for example after the span changed.
+     */
+    public synchronized void reset() {
+        count = 0;
+    }
+
+    /**
+     * Gets the number of frames observed since the last reset.
+     * @return The frame count.
+     */
+    public long getFrameCount() {
+        return count;
+    }
+
+    /**
+     * Gets the number of bins of the tracked frames.
+     * @return The bin count.
+     */
+    public synchronized int getBinCount() {
+        return binCount;
+    }
+
+    /**
+     * Adds a frame to the estimate.
+     * @param amplitudes The amplitudes in dBm.
+     */
+    public synchronized void update(double[] amplitudes) {
+        int n = amplitudes.length;
+        if (n != binCount) {
+            binCount = n;
+            heights = new double[MARKERS * n];
+            positions = new int[MARKERS * n];
+            count = 0;
+        }
+        if (count < MARKERS) {
+            insertInitial(amplitudes);
+        } else {
+            for (int m = 0; m < MARKERS; m++) {
+                desired[m] += increments[m];
+            }
+            for (int bin = 0; bin < n; bin++) {
+                updateBin(bin * MARKERS, amplitudes[bin]);
+            }
+        }
+        count++;
+        if (count == MARKERS) {
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i % MARKERS;
+            }
+            for (int m = 0; m < MARKERS; m++) {
+                desired[m] = 4 * increments[m];
+            }
+        }
+    }
+
+    /**
+     * Gets the noise floor estimate of a bin.
+     * @param bin The bin index.
+     * @return The estimate in dBm, or NaN before the first frame.
+     */
+    public synchronized double getNoiseFloor(int bin) {
+        long observed = Math.min(count, MARKERS);
+        if (observed == 0 || bin < 0 || bin >= binCount) return Double.NaN;
+        int marker = observed < MARKERS ? (int) Math.round(percentile * (observed - 1)) : 2;
+        return heights[bin * MARKERS + marker];
+    }
+
+    /**
+     * Copies the noise floor estimate of every bin into a trace.
+     * @param trace Receives the estimates in dBm; must hold the bin count.
+     * @return True if an estimate of matching size is available.
+     */
+    public synchronized boolean copyTrace(double[] trace) {
+        if (count == 0 || trace.length != binCount) return false;
+        for (int bin = 0; bin < binCount; bin++) {
+            trace[bin] = getNoiseFloor(bin);
+        }
+        return true;
+    }
+
+    /**
+     * Inserts one of the first five observations of every bin into its sorted marker heights.
+     * @param amplitudes The amplitudes in dBm.
+     */
+    private void insertInitial(double[] amplitudes) {
+        int filled = (int) count;
+        for (int bin = 0; bin < binCount; bin++) {
+            int base = bin * MARKERS;
+            double x = amplitudes[bin];
+            int i = filled;
+            while (i > 0 && heights[base + i - 1] > x) {
+                heights[base + i] = heights[base + i - 1];
+                i--;
+            }
+            heights[base + i] = x;
+        }
+    }
+
+    /**
+     * Applies the P-square update for one observation of one bin.
+     * @param base The offset of the bin's markers.
+     * @param x The observation.
+     */
+    private void updateBin(int base, double x) {
+        double[] q = heights;
+        int[] pos = positions;
+        int k;
+        if (x < q[base]) {
+            q[base] = x;
+            k = 0;
+        } else if (x >= q[base + 4]) {
+            q[base + 4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (k < 3 && x >= q[base + k + 1]) k++;
+        }
+        for (int m = k + 1; m < MARKERS; m++) {
+            pos[base + m]++;
+        }
+        for (int m = 1; m < MARKERS - 1; m++) {
+            int i = base + m;
+            double d = desired[m] - pos[i];
+            if ((d >= 1 && pos[i + 1] - pos[i] > 1) || (d <= -1 && pos[i - 1] - pos[i] < -1)) {
+                int sign = d > 0 ? 1 : -1;
+                double candidate = parabolic(q, pos, i, sign);
+                if (q[i - 1] < candidate && candidate < q[i + 1]) {
+                    q[i] = candidate;
+                } else {
+                    q[i] += sign * (q[i + sign] - q[i]) / (pos[i + sign] - pos[i]);
+                }
+                pos[i] += sign;
+            }
+        }
+    }
+
+    /**
+     * Computes the piecewise-parabolic marker height prediction.
+     * @param q The marker heights.
+     * @param pos The marker positions.
+     * @param i The marker offset.
+     * @param sign The direction of the marker move.
+     * @return The predicted height.
+     */
+    private static double parabolic(double[] q, int[] pos, int i, int sign) {
+        double nPrev = pos[i - 1], n = pos[i], nNext = pos[i + 1];
+        return q[i] + sign / (nNext - nPrev)
+                * ((n - nPrev + sign) * (q[i + 1] - q[i]) / (nNext - n)
+                + (nNext - n - sign) * (q[i] - q[i - 1]) / (n - nPrev));
+    }
+}
@@ -0,0 +1,213 @@
+package spectrum.analyzer.software;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how busy each channel of a raster across the span is, over the last minute, hour and day.
+ * <p>
+ * The span is divided into equal channels. Every frame the linear power of each channel's own bins is
+ * summed directly, so a frame costs O(bins + channels); differences of one running total over the span
+ * would lose weak channels to rounding next to strong ones. A channel counts as busy in a frame when
+ * its mean power exceeds the threshold. Busy and frame counts are kept in primitive rings of time
+ * buckets (60 one-second buckets, 60 one-minute buckets and 24 one-hour buckets) with running totals,
+ * so expiring a bucket and querying a window are both O(channels).
+ */
+public class OccupancyEngine {
+    private static final long[] BUCKET_MS = {1000L, 60_000L, 3_600_000L};
+    private static final int[] BUCKETS = {60, 60, 24};
+    private static final double DB_TO_LN = Math.log(10) / 10;
+
+    private int channelCount = 64;
+    private double threshold = -100.0;
+    private double[] channelPower = new double[0];
+    private boolean[] busy = new boolean[0];
+    private final Ring[] rings = new Ring[BUCKETS.length];
+    private long totalFrames;
+    private long[] totalBusy = new long[0];
+    private double minFreq;
+    private double maxFreq;
+
+    /**
+     * Constructs an OccupancyEngine with 64 channels and a -100 dBm threshold.
+     */
+    public OccupancyEngine() {
+        allocate();
+    }
+
+    /**
+     * Sets the number of channels across the span and clears the statistics.
+     * @param channelCount The number of channels.
+     */
+    public synchronized void setChannelCount(int channelCount) {
+        this.channelCount = Math.max(1, channelCount);
+        allocate();
+    }
+
+    /**
+     * Sets the mean channel power above which a channel counts as busy.
+     * @param threshold The threshold in dBm.
+     */
+    public synchronized void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Clears the statistics, for example after the span changed.
+     */
+    public synchronized void reset() {
+        allocate();
+    }
+
+    /**
+     * Adds a frame to the statistics.
+     * @param timestamp The frame timestamp in milliseconds since the epoch.
+     * @param amplitudes The amplitudes in dBm.
+     * @param frameMinFreq The minimum frequency of the frame in Hz.
+     * @param frameMaxFreq The maximum frequency of the frame in Hz.
+     */
+    public synchronized void update(long timestamp, double[] amplitudes, double frameMinFreq, double frameMaxFreq) {
+        int n = amplitudes.length;
+        if (n == 0) return;
+        minFreq = frameMinFreq;
+        maxFreq = frameMaxFreq;
+        double thresholdPower = Math.exp(threshold * DB_TO_LN);
+        for (int c = 0; c < channelCount; c++) {
+            int from = (int) ((long) c * n / channelCount);
+            int to = Math.max(from + 1, (int) ((long) (c + 1) * n / channelCount));
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += Math.exp(amplitudes[i] * DB_TO_LN);
+            }
+            double mean = sum / (to - from);
+            channelPower[c] = mean;
+            busy[c] = mean > thresholdPower;
+            if (busy[c]) totalBusy[c]++;
+        }
+        totalFrames++;
+        for (Ring ring : rings) {
+            ring.add(timestamp, busy);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the statistics of every channel.
+     * @return One row per channel, ordered by frequency.
+     */
+    public synchronized List<ChannelOccupancy> snapshot() {
+        List<ChannelOccupancy> rows = new ArrayList<>(channelCount);
+        if (totalFrames == 0) return rows;
+        double width = (maxFreq - minFreq) / channelCount;
+        for (int c = 0; c < channelCount; c++) {
+            rows.add(new ChannelOccupancy(c + 1, minFreq + (c + 0.5) * width, width,
+                    powerDb(channelPower[c]), rings[0].occupancy(c), rings[1].occupancy(c),
+                    rings[2].occupancy(c), (double) totalBusy[c] / totalFrames));
+        }
+        return rows;
+    }
+
+    /**
+     * Converts a linear mean power to dBm.
+     * @param power The power in milliwatts.
+     * @return The power in dBm, or NaN if it underflowed to zero.
+     */
+    private static double powerDb(double power) {
+        return power > 0 ? Math.log(power) / DB_TO_LN : Double.NaN;
+    }
+
+    /**
+     * Allocates the counters for the current channel count.
+     */
+    private void allocate() {
+        channelPower = new double[channelCount];
+        busy = new boolean[channelCount];
+        totalBusy = new long[channelCount];
+        totalFrames = 0;
+        for (int w = 0; w < rings.length; w++) {
+            rings[w] = new Ring(BUCKET_MS[w], BUCKETS[w], channelCount);
+        }
+    }
+
+    /**
+     * Ring of time buckets with running totals over the whole ring.
+     */
+    private static final class Ring {
+        private final long bucketMs;
+        private final int buckets;
+        private final int channels;
+        private final int[] busyCounts;
+        private final int[] frameCounts;
+        private final long[] busyTotals;
+        private long frameTotal;
+        private long currentBucket = -1;
+
+        Ring(long bucketMs, int buckets, int channels) {
+            this.bucketMs = bucketMs;
+            this.buckets = buckets;
+            this.channels = channels;
+            this.busyCounts = new int[buckets * channels];
+            this.frameCounts = new int[buckets];
+            this.busyTotals = new long[channels];
+        }
+
+        /**
+         * Adds a frame, first expiring the buckets that fell out of the window.
+         * @param timestamp The frame timestamp in milliseconds since the epoch.
+         * @param busy The busy flag of every channel.
+         */
+        void add(long timestamp, boolean[] busy) {
+            long bucket = timestamp / bucketMs;
+            if (currentBucket < 0 || bucket < currentBucket) {
+                clearAll();
+            } else {
+                long steps = Math.min(buckets, bucket - currentBucket);
+                for (long s = 1; s <= steps; s++) {
+                    expire((int) ((currentBucket + s) % buckets));
+                }
+            }
+            currentBucket = bucket;
+            int slot = (int) (bucket % buckets);
+            int base = slot * channels;
+            for (int c = 0; c < channels; c++) {
+                if (busy[c]) {
+                    busyCounts[base + c]++;
+                    busyTotals[c]++;
+                }
+            }
+            frameCounts[slot]++;
+            frameTotal++;
+        }
+
+        /**
+         * Gets the fraction of frames in the window during which a channel was busy.
+         * @param channel The channel index.
+         * @return The occupancy between 0 and 1, or NaN before the first frame.
+         */
+        double occupancy(int channel) {
+            return frameTotal == 0 ? Double.NaN : (double) busyTotals[channel] / frameTotal;
+        }
+
+        /**
+         * Removes a bucket's counts from the totals and empties it.
+         * @param slot The bucket index.
+         */
+        private void expire(int slot) {
+            int base = slot * channels;
+            for (int c = 0; c < channels; c++) {
+                busyTotals[c] -= busyCounts[base + c];
+                busyCounts[base + c] = 0;
+            }
+            frameTotal -= frameCounts[slot];
+            frameCounts[slot] = 0;
+        }
+
+        /**
+         * Empties every bucket.
+         */
+        private void clearAll() {
+            for (int slot = 0; slot < buckets; slot++) {
+                expire(slot);
+            }
+        }
+    }
+}
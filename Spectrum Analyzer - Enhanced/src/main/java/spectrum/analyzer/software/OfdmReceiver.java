@@ -0,0 +1,463 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Receives a stream of OFDM symbols with a cyclic prefix and QPSK subcarriers.
+ * <p>
+ * Timing and carrier frequency offset come from the cyclic prefix: the correlation of each sample with
+ * the sample one FFT length later is summed over a prefix-long window, and the sum is slid along the
+ * stream by adding the newest product and subtracting the oldest, so every input sample costs O(1).
+ * The normalised correlation is averaged per position within the symbol period; its peak marks the
+ * start of the prefix and its angle gives the frequency offset as a fraction of the subcarrier spacing.
+ * <p>
+ * All complete symbols of a block are derotated into one flat batch and transformed together. Pilot
+ * subcarriers, every {@value #PILOT_SPACING}th bin, give a common phase error per symbol and a
+ * time-smoothed channel estimate that is interpolated in magnitude and phase to the data subcarriers,
+ * which are then equalised one by one.
+ */
+public class OfdmReceiver {
+    public static final int SUBCARRIERS = 64;
+    public static final int CYCLIC_PREFIX = 16;
+    public static final int PILOT_SPACING = 8;
+    public static final double PILOT_VALUE = 1.0;
+
+    private static final int SYMBOL_LENGTH = SUBCARRIERS + CYCLIC_PREFIX;
+    private static final int BACKOFF = 4;
+    private static final double TIMING_SMOOTHING = 0.05;
+    private static final double CHANNEL_SMOOTHING = 0.1;
+    private static final double EVM_SMOOTHING = 0.02;
+    private static final double QPSK_LEVEL = 1 / Math.sqrt(2);
+
+    private final Fft fft = new Fft(SUBCARRIERS);
+    private final int[] pilotBins;
+    private final int[] dataBins;
+    private final int[] segment = new int[SUBCARRIERS];
+    private final double[] fraction = new double[SUBCARRIERS];
+    private final double[] backoffI = new double[SUBCARRIERS];
+    private final double[] backoffQ = new double[SUBCARRIERS];
+    private final double[] accumulatedI = new double[SYMBOL_LENGTH];
+    private final double[] accumulatedQ = new double[SYMBOL_LENGTH];
+    private final double[] accumulatedEnergy = new double[SYMBOL_LENGTH];
+    private final double[] channelI = new double[SUBCARRIERS];
+    private final double[] channelQ = new double[SUBCARRIERS];
+    private final double[] pilotMagnitude;
+    private final double[] pilotPhase;
+    private final double[] errorPower = new double[SUBCARRIERS];
+    private final double[] rotationI = new double[SUBCARRIERS];
+    private final double[] rotationQ = new double[SUBCARRIERS];
+
+    private double[] bufferI = new double[0];
+    private double[] bufferQ = new double[0];
+    private int carry;
+    private long bufferStart;
+    private long nextSymbol;
+    private double[] batchI = new double[0];
+    private double[] batchQ = new double[0];
+    private int[] starts = new int[0];
+    private double[] symbolI = new double[0];
+    private double[] symbolQ = new double[0];
+    private double[] decisionI = new double[0];
+    private double[] decisionQ = new double[0];
+    private int[] classes = new int[0];
+    private int symbolCount;
+    private int timing;
+    private double frequencyOffset;
+    private boolean channelValid;
+
+    /**
+     * Constructs an OfdmReceiver.
+     */
+    public OfdmReceiver() {
+        int pilots = 0;
+        for (int k = 0; k < SUBCARRIERS; k++) {
+            if (isPilot(k)) pilots++;
+        }
+        pilotBins = new int[pilots];
+        dataBins = new int[SUBCARRIERS - 1 - pilots];
+        pilotMagnitude = new double[pilots];
+        pilotPhase = new double[pilots];
+        // Pilots in natural frequency order, from the most negative subcarrier
+        int p = 0, d = 0;
+        for (int n = -SUBCARRIERS / 2; n < SUBCARRIERS / 2; n++) {
+            int k = Math.floorMod(n, SUBCARRIERS);
+            if (isPilot(k)) {
+                pilotBins[p++] = k;
+            } else if (k != 0) {
+                dataBins[d++] = k;
+            }
+        }
+        for (int k = 0; k < SUBCARRIERS; k++) {
+            int n = natural(k);
+            int j = Math.floorDiv(n - natural(pilotBins[0]), PILOT_SPACING);
+            j = Math.max(0, Math.min(pilots - 2, j));
+            segment[k] = j;
+            fraction[k] = (double) (n - natural(pilotBins[j])) / PILOT_SPACING;
+            // Starting the FFT window inside the prefix delays every subcarrier by a known linear phase
+            double angle = 2 * Math.PI * n * BACKOFF / SUBCARRIERS;
+            backoffI[k] = Math.cos(angle);
+            backoffQ[k] = Math.sin(angle);
+        }
+        reset();
+    }
+
+    /**
+     * Tells whether an FFT bin carries a pilot.
+     * @param bin The FFT bin, 0 to {@value #SUBCARRIERS} - 1.
+     * @return True for a pilot subcarrier.
+     */
+    public static boolean isPilot(int bin) {
+        return bin % PILOT_SPACING == PILOT_SPACING / 2;
+    }
+
+    /**
+     * Clears the synchronisation, channel estimate and statistics.
+     */
+    public synchronized void reset() {
+        carry = SYMBOL_LENGTH - 1;
+        bufferStart = -carry;
+        nextSymbol = 0;
+        if (bufferI.length < carry) {
+            bufferI = new double[carry];
+            bufferQ = new double[carry];
+        }
+        Arrays.fill(bufferI, 0);
+        Arrays.fill(bufferQ, 0);
+        Arrays.fill(accumulatedI, 0);
+        Arrays.fill(accumulatedQ, 0);
+        Arrays.fill(accumulatedEnergy, 0);
+        Arrays.fill(errorPower, 0);
+        channelValid = false;
+        symbolCount = 0;
+        timing = 0;
+        frequencyOffset = 0;
+    }
+
+    /**
+     * Processes a block of IQ samples.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @param out Receives the normalised cyclic prefix correlation of the window ending at each sample,
+     *            between 0 and 1; it peaks once per OFDM symbol.
+     * @return The number of equalised data subcarrier values recovered from the block.
+     */
+    public synchronized int process(double[] i, double[] q, int count, double[] out) {
+        int length = carry + count;
+        if (bufferI.length < length) {
+            bufferI = Arrays.copyOf(bufferI, length);
+            bufferQ = Arrays.copyOf(bufferQ, length);
+        }
+        System.arraycopy(i, 0, bufferI, carry, count);
+        System.arraycopy(q, 0, bufferQ, carry, count);
+        correlate(length, out);
+        int symbols = extractSymbols(length);
+        transformBatch(symbols);
+        allocateOutputs(symbols);
+        symbolCount = 0;
+        for (int s = 0; s < symbols; s++) {
+            equalise(s * SUBCARRIERS);
+        }
+
+        long oldest = Math.max(nextSymbol - bufferStart, length - SUBCARRIERS - SYMBOL_LENGTH);
+        int keepFrom = (int) Math.max(0, Math.min(length - (SYMBOL_LENGTH - 1), oldest));
+        System.arraycopy(bufferI, keepFrom, bufferI, 0, length - keepFrom);
+        System.arraycopy(bufferQ, keepFrom, bufferQ, 0, length - keepFrom);
+        carry = length - keepFrom;
+        bufferStart += keepFrom;
+        return symbolCount;
+    }
+
+    /**
+     * Gets the equalised in-phase components of the data subcarriers of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getSymbolI() {
+        return symbolI;
+    }
+
+    /**
+     * Gets the equalised quadrature components of the data subcarriers of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getSymbolQ() {
+        return symbolQ;
+    }
+
+    /**
+     * Gets the in-phase components of the QPSK decisions of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getDecisionI() {
+        return decisionI;
+    }
+
+    /**
+     * Gets the quadrature components of the QPSK decisions of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getDecisionQ() {
+        return decisionQ;
+    }
+
+    /**
+     * Gets the constellation point index of each decision of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public int[] getDecisionClasses() {
+        return classes;
+    }
+
+    /**
+     * Gets the number of equalised data subcarrier values recovered by the latest block.
+     * @return The count.
+     */
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    /**
+     * Gets the estimated carrier frequency offset.
+     * @return The offset in subcarrier spacings, within +/-0.5.
+     */
+    public synchronized double getFrequencyOffset() {
+        return frequencyOffset;
+    }
+
+    /**
+     * Copies the smoothed EVM of each subcarrier in natural frequency order, from subcarrier
+     * -{@value #SUBCARRIERS}/2 upwards. The DC subcarrier is unused and reported as NaN.
+     * @param out Receives {@value #SUBCARRIERS} values in percent.
+     */
+    public synchronized void copySubcarrierEvm(double[] out) {
+        for (int n = 0; n < SUBCARRIERS; n++) {
+            int k = Math.floorMod(n - SUBCARRIERS / 2, SUBCARRIERS);
+            out[n] = k == 0 ? Double.NaN : 100 * Math.sqrt(errorPower[k]);
+        }
+    }
+
+    /**
+     * Converts an FFT bin to a signed subcarrier number.
+     * @param bin The FFT bin.
+     * @return The subcarrier number, negative for the upper half of the bins.
+     */
+    private static int natural(int bin) {
+        return bin < SUBCARRIERS / 2 ? bin : bin - SUBCARRIERS;
+    }
+
+    /**
+     * Slides the cyclic prefix correlation over the new samples and picks the symbol timing and the
+     * frequency offset from the per-position averages.
+     * @param length The number of valid samples in the buffer.
+     * @param out Receives the normalised correlation for each new sample.
+     */
+    private void correlate(int length, double[] out) {
+        int window = SYMBOL_LENGTH - 1;
+        // Sums for the window ending at the first new sample, computed directly so no drift carries over
+        int d = carry - window;
+        double sumI = 0, sumQ = 0, energy = 0;
+        for (int m = d; m < d + CYCLIC_PREFIX; m++) {
+            sumI += productI(m);
+            sumQ += productQ(m);
+            energy += energy(m);
+        }
+        for (int b = carry; b < length; b++, d++) {
+            if (b > carry) {
+                int newest = d + CYCLIC_PREFIX - 1, oldest = d - 1;
+                sumI += productI(newest) - productI(oldest);
+                sumQ += productQ(newest) - productQ(oldest);
+                energy += energy(newest) - energy(oldest);
+            }
+            out[b - carry] = energy > 0 ? Math.min(1, Math.sqrt(sumI * sumI + sumQ * sumQ) / energy) : 0;
+            int position = (int) Math.floorMod(bufferStart + d, (long) SYMBOL_LENGTH);
+            accumulatedI[position] += TIMING_SMOOTHING * (sumI - accumulatedI[position]);
+            accumulatedQ[position] += TIMING_SMOOTHING * (sumQ - accumulatedQ[position]);
+            accumulatedEnergy[position] += TIMING_SMOOTHING * (energy - accumulatedEnergy[position]);
+        }
+        double best = -1;
+        for (int position = 0; position < SYMBOL_LENGTH; position++) {
+            double e = accumulatedEnergy[position];
+            if (e <= 0) continue;
+            double metric = Math.hypot(accumulatedI[position], accumulatedQ[position]) / e;
+            if (metric > best) {
+                best = metric;
+                timing = position;
+            }
+        }
+        // x[t] conj(x[t + N]) turns by -2 pi epsilon for an offset of epsilon subcarrier spacings
+        frequencyOffset = -Math.atan2(accumulatedQ[timing], accumulatedI[timing]) / (2 * Math.PI);
+    }
+
+    /**
+     * Computes the real part of x[t] conj(x[t + N]).
+     * @param t The buffer index.
+     * @return The real part.
+     */
+    private double productI(int t) {
+        return bufferI[t] * bufferI[t + SUBCARRIERS] + bufferQ[t] * bufferQ[t + SUBCARRIERS];
+    }
+
+    /**
+     * Computes the imaginary part of x[t] conj(x[t + N]).
+     * @param t The buffer index.
+     * @return The imaginary part.
+     */
+    private double productQ(int t) {
+        return bufferQ[t] * bufferI[t + SUBCARRIERS] - bufferI[t] * bufferQ[t + SUBCARRIERS];
+    }
+
+    /**
+     * Computes the mean power of x[t] and x[t + N].
+     * @param t The buffer index.
+     * @return The power.
+     */
+    private double energy(int t) {
+        double a = bufferI[t] * bufferI[t] + bufferQ[t] * bufferQ[t];
+        double b = bufferI[t + SUBCARRIERS] * bufferI[t + SUBCARRIERS] + bufferQ[t + SUBCARRIERS] * bufferQ[t + SUBCARRIERS];
+        return 0.5 * (a + b);
+    }
+
+    /**
+     * Copies every complete symbol in the buffer into the batch, removing the frequency offset.
+     * @param length The number of valid samples in the buffer.
+     * @return The number of symbols in the batch.
+     */
+    private int extractSymbols(int length) {
+        long windowPosition = Math.floorMod(timing + CYCLIC_PREFIX - BACKOFF, SYMBOL_LENGTH);
+        long start = Math.max(nextSymbol, bufferStart);
+        start += Math.floorMod(windowPosition - start, (long) SYMBOL_LENGTH);
+        int symbols = 0;
+        int capacity = (int) ((bufferStart + length - start) / SYMBOL_LENGTH) + 1;
+        if (starts.length < capacity) {
+            starts = new int[capacity];
+        }
+        for (; start + SUBCARRIERS <= bufferStart + length; start += SYMBOL_LENGTH) {
+            starts[symbols++] = (int) (start - bufferStart);
+        }
+        if (symbols == 0) return 0;
+        // Allow the next symbol to start up to half a symbol early in case the timing moves
+        nextSymbol = bufferStart + starts[symbols - 1] + SYMBOL_LENGTH / 2;
+
+        if (batchI.length < symbols * SUBCARRIERS) {
+            batchI = new double[symbols * SUBCARRIERS];
+            batchQ = new double[symbols * SUBCARRIERS];
+        }
+        for (int n = 0; n < SUBCARRIERS; n++) {
+            double angle = -2 * Math.PI * frequencyOffset * n / SUBCARRIERS;
+            rotationI[n] = Math.cos(angle);
+            rotationQ[n] = Math.sin(angle);
+        }
+        for (int s = 0; s < symbols; s++) {
+            int from = starts[s], to = s * SUBCARRIERS;
+            for (int n = 0; n < SUBCARRIERS; n++) {
+                double x = bufferI[from + n], y = bufferQ[from + n];
+                batchI[to + n] = x * rotationI[n] - y * rotationQ[n];
+                batchQ[to + n] = x * rotationQ[n] + y * rotationI[n];
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * Transforms every symbol of the batch.
+     * @param symbols The number of symbols in the batch.
+     */
+    private void transformBatch(int symbols) {
+        for (int s = 0; s < symbols; s++) {
+            fft.transform(batchI, batchQ, s * SUBCARRIERS);
+        }
+    }
+
+    /**
+     * Grows the output arrays for a batch.
+     * @param symbols The number of symbols in the batch.
+     */
+    private void allocateOutputs(int symbols) {
+        int points = symbols * dataBins.length;
+        if (symbolI.length < points) {
+            symbolI = new double[points];
+            symbolQ = new double[points];
+            decisionI = new double[points];
+            decisionQ = new double[points];
+            classes = new int[points];
+        }
+    }
+
+    /**
+     * Updates the channel estimate from the pilots of one transformed symbol and equalises its data
+     * subcarriers into the outputs.
+     * @param base The offset of the symbol in the batch.
+     */
+    private void equalise(int base) {
+        for (int k = 0; k < SUBCARRIERS; k++) {
+            double x = batchI[base + k], y = batchQ[base + k];
+            batchI[base + k] = x * backoffI[k] - y * backoffQ[k];
+            batchQ[base + k] = x * backoffQ[k] + y * backoffI[k];
+        }
+
+        // Common phase error: the rotation of the pilots against the smoothed channel estimate
+        double cpeI = 1, cpeQ = 0;
+        if (channelValid) {
+            double sumI = 0, sumQ = 0;
+            for (int k : pilotBins) {
+                double yi = batchI[base + k], yq = batchQ[base + k];
+                sumI += yi * channelI[k] + yq * channelQ[k];
+                sumQ += yq * channelI[k] - yi * channelQ[k];
+            }
+            double magnitude = Math.hypot(sumI, sumQ);
+            if (magnitude > 0) {
+                cpeI = sumI / magnitude;
+                cpeQ = sumQ / magnitude;
+            }
+        }
+        double smoothing = channelValid ? CHANNEL_SMOOTHING : 1;
+        for (int k : pilotBins) {
+            double yi = batchI[base + k] / PILOT_VALUE, yq = batchQ[base + k] / PILOT_VALUE;
+            double hi = yi * cpeI + yq * cpeQ, hq = yq * cpeI - yi * cpeQ;
+            channelI[k] += smoothing * (hi - channelI[k]);
+            channelQ[k] += smoothing * (hq - channelQ[k]);
+        }
+        channelValid = true;
+
+        // Interpolate magnitude and unwrapped phase between pilots, then restore the common phase error
+        for (int j = 0; j < pilotBins.length; j++) {
+            int k = pilotBins[j];
+            pilotMagnitude[j] = Math.hypot(channelI[k], channelQ[k]);
+            double phase = Math.atan2(channelQ[k], channelI[k]);
+            if (j > 0) {
+                double step = phase - pilotPhase[j - 1];
+                step -= 2 * Math.PI * Math.rint(step / (2 * Math.PI));
+                phase = pilotPhase[j - 1] + step;
+            }
+            pilotPhase[j] = phase;
+        }
+        double cpePhase = Math.atan2(cpeQ, cpeI);
+        for (int k = 0; k < SUBCARRIERS; k++) {
+            if (k == 0) continue;
+            int j = segment[k];
+            double t = fraction[k];
+            double magnitude = Math.max(1e-12, pilotMagnitude[j] + t * (pilotMagnitude[j + 1] - pilotMagnitude[j]));
+            double phase = pilotPhase[j] + t * (pilotPhase[j + 1] - pilotPhase[j]) + cpePhase;
+            // Divide by H: scale by 1/|H| and rotate by -arg(H)
+            double c = Math.cos(phase) / magnitude, s = -Math.sin(phase) / magnitude;
+            double yi = batchI[base + k], yq = batchQ[base + k];
+            double zi = yi * c - yq * s, zq = yi * s + yq * c;
+            double di, dq;
+            if (isPilot(k)) {
+                di = PILOT_VALUE;
+                dq = 0;
+            } else {
+                di = zi >= 0 ? QPSK_LEVEL : -QPSK_LEVEL;
+                dq = zq >= 0 ? QPSK_LEVEL : -QPSK_LEVEL;
+                symbolI[symbolCount] = zi;
+                symbolQ[symbolCount] = zq;
+                decisionI[symbolCount] = di;
+                decisionQ[symbolCount] = dq;
+                classes[symbolCount] = (dq > 0 ? 2 : 0) + (di > 0 ? 1 : 0);
+                symbolCount++;
+            }
+            double ei = zi - di, eq = zq - dq;
+            errorPower[k] += EVM_SMOOTHING * (ei * ei + eq * eq - errorPower[k]);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package spectrum.analyzer.software;
+
+import java.io.IOException;
+
+/**
+ * Destination for a stream of 16-bit mono PCM audio.
+ */
+public interface PcmSink {
+    /**
+     * Prepares the sink for a stream.
+     * @param sampleRate The sample rate in Hz.
+     * @throws IOException If the sink cannot be opened.
+     */
+    void open(int sampleRate) throws IOException;
+
+    /**
+     * Appends samples to the stream.
+     * @param samples The samples.
+     * @param count The number of samples to append.
+     * @throws IOException If writing fails.
+     */
+    void write(short[] samples, int count) throws IOException;
+
+    /**
+     * Finishes the stream.
+     * @throws IOException If the stream cannot be completed.
+     */
+    void close() throws IOException;
+}
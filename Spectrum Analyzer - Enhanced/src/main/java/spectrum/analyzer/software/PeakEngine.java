@@ -0,0 +1,341 @@
+package spectrum.analyzer.software;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.DoubleFunction;
+
+/**
+ * Finds the strongest peaks of each frame by prominence and tracks them across frames.
+ * <p>
+ * Prominence is computed in linear time with two monotonic-stack passes, and candidates are kept in a
+ * bounded min-heap of size {@code maxPeaks}, so the cost per frame is O(n log K) with no per-bin
+ * allocation. Peak positions are refined with parabolic interpolation. A peak becomes a tracked peak
+ * once its prominence reaches the enter level, and stays tracked until its prominence drops below the
+ * lower release level or it is missing for several frames, which keeps identities stable on noisy
+ * spectra. Only additions, visible changes and removals are reported to the listener.
+ */
+public class PeakEngine {
+    /**
+     * Receives changes to the set of tracked peaks.
+     */
+    public interface Listener {
+        void peakAdded(Peak peak);
+
+        void peakUpdated(Peak peak);
+
+        void peakRemoved(Peak peak);
+    }
+
+    private final DoubleFunction<String> classifier;
+    private final Listener listener;
+    private int maxPeaks = 10;
+    private double enterProminence = 10.0;
+    private double releaseProminence = 6.0;
+    private double minAmplitude = -100.0;
+    private double[] threshold;
+    private int matchTolerance = 16;
+    private int maxMisses = 5;
+    private double amplitudeResolution = 0.5;
+
+    private double[] leftBase = new double[0];
+    private int[] stack = new int[0];
+    private double[] stackMin = new double[0];
+    private int[] heapIndex = new int[0];
+    private double[] heapProminence = new double[0];
+    private int heapSize;
+    private boolean[] matched = new boolean[0];
+    private double lastMinFreq;
+    private double lastMaxFreq;
+    private final List<Peak> tracks = new ArrayList<>();
+    private final List<Peak> unmodifiableTracks = Collections.unmodifiableList(tracks);
+    private int nextId = 1;
+
+    /**
+     * Constructs a PeakEngine.
+     * @param classifier Maps a frequency in Hz to a signal type; called only for new or moved peaks.
+     * @param listener Receives peak changes.
+     */
+    public PeakEngine(DoubleFunction<String> classifier, Listener listener) {
+        this.classifier = classifier;
+        this.listener = listener;
+        setMaxPeaks(maxPeaks);
+    }
+
+    /**
+     * Sets the maximum number of tracked peaks.
+     * @param maxPeaks The number of peaks K.
+     */
+    public void setMaxPeaks(int maxPeaks) {
+        this.maxPeaks = Math.max(1, maxPeaks);
+        heapIndex = new int[this.maxPeaks];
+        heapProminence = new double[this.maxPeaks];
+        matched = new boolean[this.maxPeaks];
+        while (tracks.size() > this.maxPeaks) {
+            listener.peakRemoved(tracks.remove(tracks.size() - 1));
+        }
+    }
+
+    /**
+     * Sets the prominence hysteresis.
+     * @param enter The prominence in dB a new peak needs to be tracked.
+     * @param release The prominence in dB below which a tracked peak counts as missing.
+     */
+    public void setProminence(double enter, double release) {
+        this.enterProminence = enter;
+        this.releaseProminence = Math.min(enter, release);
+    }
+
+    /**
+     * Sets the fixed minimum amplitude used when no threshold trace is set.
+     * @param minAmplitude The minimum peak amplitude in dBm.
+     */
+    public void setMinAmplitude(double minAmplitude) {
+        this.minAmplitude = minAmplitude;
+    }
+
+    /**
+     * Sets a per-bin threshold trace that peaks must exceed, replacing the fixed minimum amplitude.
+     * @param threshold The threshold per bin in dBm, or null to use the fixed minimum amplitude.
+     */
+    public void setThreshold(double[] threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Gets the tracked peaks.
+     * @return An unmodifiable view of the tracked peaks.
+     */
+    public List<Peak> getPeaks() {
+        return unmodifiableTracks;
+    }
+
+    /**
+     * Removes all tracked peaks, reporting each removal.
+     */
+    public void clear() {
+        for (Peak peak : tracks) {
+            listener.peakRemoved(peak);
+        }
+        tracks.clear();
+    }
+
+    /**
+     * Processes a frame.
+     * @param amplitudes The amplitudes in dBm.
+     * @param minFreq The minimum frequency of the frame in Hz.
+     * @param maxFreq The maximum frequency of the frame in Hz.
+     */
+    public void update(double[] amplitudes, double minFreq, double maxFreq) {
+        int n = amplitudes.length;
+        if (n < 3) return;
+        if (minFreq != lastMinFreq || maxFreq != lastMaxFreq) {
+            clear();
+            lastMinFreq = minFreq;
+            lastMaxFreq = maxFreq;
+        }
+        ensureCapacity(n);
+        computeLeftBases(amplitudes);
+        selectCandidates(amplitudes);
+        associate(amplitudes, minFreq, (maxFreq - minFreq) / n);
+    }
+
+    /**
+     * Computes for every bin the minimum between it and the nearest higher bin to its left.
+     * @param x The amplitudes.
+     */
+    private void computeLeftBases(double[] x) {
+        int top = -1;
+        for (int i = 0; i < x.length; i++) {
+            double min = x[i];
+            while (top >= 0 && x[stack[top]] <= x[i]) {
+                min = Math.min(min, stackMin[top--]);
+            }
+            stack[++top] = i;
+            stackMin[top] = min;
+            leftBase[i] = min;
+        }
+    }
+
+    /**
+     * Walks the frame backwards computing right bases and keeps the K most prominent local maxima.
+     * @param x The amplitudes.
+     */
+    private void selectCandidates(double[] x) {
+        heapSize = 0;
+        int top = -1;
+        for (int i = x.length - 1; i >= 0; i--) {
+            double min = x[i];
+            while (top >= 0 && x[stack[top]] <= x[i]) {
+                min = Math.min(min, stackMin[top--]);
+            }
+            stack[++top] = i;
+            stackMin[top] = min;
+            if (i == 0 || i == x.length - 1 || !(x[i] > x[i - 1] && x[i] >= x[i + 1])) continue;
+            if (x[i] <= (threshold != null && threshold.length == x.length ? threshold[i] : minAmplitude)) continue;
+            double prominence = x[i] - Math.max(leftBase[i], min);
+            if (prominence >= releaseProminence) {
+                offer(i, prominence);
+            }
+        }
+    }
+
+    /**
+     * Offers a candidate to the bounded min-heap.
+     * @param index The bin index.
+     * @param prominence The prominence in dB.
+     */
+    private void offer(int index, double prominence) {
+        if (heapSize < maxPeaks) {
+            int i = heapSize++;
+            while (i > 0 && heapProminence[(i - 1) / 2] > prominence) {
+                heapIndex[i] = heapIndex[(i - 1) / 2];
+                heapProminence[i] = heapProminence[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            heapIndex[i] = index;
+            heapProminence[i] = prominence;
+        } else if (prominence > heapProminence[0]) {
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= heapSize) break;
+                if (child + 1 < heapSize && heapProminence[child + 1] < heapProminence[child]) child++;
+                if (heapProminence[child] >= prominence) break;
+                heapIndex[i] = heapIndex[child];
+                heapProminence[i] = heapProminence[child];
+                i = child;
+            }
+            heapIndex[i] = index;
+            heapProminence[i] = prominence;
+        }
+    }
+
+    /**
+     * Matches candidates to tracked peaks, applying hysteresis and reporting changes.
+     * @param x The amplitudes.
+     * @param minFreq The minimum frequency in Hz.
+     * @param freqStep The bin width in Hz.
+     */
+    private void associate(double[] x, double minFreq, double freqStep) {
+        boolean[] used = matched;
+        Arrays.fill(used, false);
+        for (int t = tracks.size() - 1; t >= 0; t--) {
+            Peak peak = tracks.get(t);
+            int best = -1;
+            double bestDistance = matchTolerance + 1;
+            for (int c = 0; c < heapSize; c++) {
+                double distance = Math.abs(heapIndex[c] - peak.bin);
+                if (!used[c] && distance < bestDistance) {
+                    best = c;
+                    bestDistance = distance;
+                }
+            }
+            if (best < 0) {
+                if (++peak.misses > maxMisses) {
+                    tracks.remove(t);
+                    listener.peakRemoved(peak);
+                }
+                continue;
+            }
+            used[best] = true;
+            peak.misses = 0;
+            if (refine(peak, x, heapIndex[best], heapProminence[best], minFreq, freqStep)) {
+                listener.peakUpdated(peak);
+            }
+        }
+        for (int c = 0; c < heapSize && tracks.size() < maxPeaks; c++) {
+            if (used[c] || heapProminence[c] < enterProminence) continue;
+            Peak peak = new Peak(nextId++);
+            refine(peak, x, heapIndex[c], heapProminence[c], minFreq, freqStep);
+            tracks.add(peak);
+            listener.peakAdded(peak);
+        }
+    }
+
+    /**
+     * Moves a peak to a new bin with sub-bin interpolation.
+     * @param peak The peak.
+     * @param x The amplitudes.
+     * @param bin The bin of the local maximum.
+     * @param prominence The prominence in dB.
+     * @param minFreq The minimum frequency in Hz.
+     * @param freqStep The bin width in Hz.
+     * @return True if the change is visible at the reporting resolution.
+     */
+    private boolean refine(Peak peak, double[] x, int bin, double prominence, double minFreq, double freqStep) {
+        double a = x[bin - 1], b = x[bin], c = x[bin + 1];
+        double denominator = a - 2 * b + c;
+        double delta = denominator == 0 ? 0 : 0.5 * (a - c) / denominator;
+        double frequency = minFreq + (bin + delta) * freqStep;
+        double amplitude = b - 0.25 * (a - c) * delta;
+        boolean moved = peak.signalType == null || Math.abs(bin - peak.classifiedBin) > matchTolerance;
+        boolean changed = moved || Math.abs(frequency - peak.frequency) >= 0.5 * freqStep
+                || Math.abs(amplitude - peak.amplitude) >= amplitudeResolution;
+        peak.bin = bin;
+        peak.prominence = prominence;
+        if (!changed) return false;
+        peak.frequency = frequency;
+        peak.amplitude = amplitude;
+        if (moved) {
+            peak.signalType = classifier.apply(frequency);
+            peak.classifiedBin = bin;
+        }
+        return true;
+    }
+
+    /**
+     * Allocates the scratch arrays for a frame size.
+     * @param n The number of bins.
+     */
+    private void ensureCapacity(int n) {
+        if (leftBase.length != n) {
+            leftBase = new double[n];
+            stack = new int[n];
+            stackMin = new double[n];
+        }
+    }
+
+    /**
+     * A tracked peak with a stable identity.
+     */
+    public static final class Peak {
+        private final int id;
+        private int bin;
+        private int classifiedBin;
+        private int misses;
+        private double frequency;
+        private double amplitude;
+        private double prominence;
+        private String signalType;
+
+        Peak(int id) {
+            this.id = id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getBin() {
+            return bin;
+        }
+
+        public double getFrequency() {
+            return frequency;
+        }
+
+        public double getAmplitude() {
+            return amplitude;
+        }
+
+        public double getProminence() {
+            return prominence;
+        }
+
+        public String getSignalType() {
+            return signalType;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Streaming rational sample rate converter built as a polyphase FIR filter.
+ * <p>
+ * Conceptually the input is upsampled by L, low-pass filtered and downsampled by M. The Kaiser-windowed
+ * sinc prototype is split into L phases stored contiguously, so each output sample is one dot product of
+ * {@code tapsPerPhase} coefficients with the most recent input samples and the zero-stuffed samples are
+ * never computed. The last {@code tapsPerPhase - 1} inputs and the fractional output position are carried
+ * over between blocks, so a stream split into blocks produces exactly the output of the whole stream.
+ */
+public class PolyphaseResampler {
+    private static final double STOPBAND_ATTENUATION = 70.0;
+    private static final double PASSBAND_FRACTION = 0.8;
+
+    private final int interpolation;
+    private final int decimation;
+    private final int tapsPerPhase;
+    private final double[] coefficients;
+    private double[] buffer;
+    private long position;
+
+    /**
+     * Constructs a resampler between two integer sample rates, reducing the ratio to lowest terms.
+     * @param inputRate The input sample rate in Hz.
+     * @param outputRate The output sample rate in Hz.
+     */
+    public PolyphaseResampler(int inputRate, int outputRate) {
+        if (inputRate <= 0 || outputRate <= 0) {
+            throw new IllegalArgumentException("Sample rates must be positive");
+        }
+        int divisor = gcd(inputRate, outputRate);
+        this.interpolation = outputRate / divisor;
+        this.decimation = inputRate / divisor;
+
+        // The cutoff sits at the lower of the two Nyquist frequencies, in cycles per upsampled sample
+        double stopband = 0.5 / Math.max(interpolation, decimation);
+        double passband = PASSBAND_FRACTION * stopband;
+        int length = FirDesign.kaiserLength(STOPBAND_ATTENUATION, stopband - passband);
+        this.tapsPerPhase = Math.max(1, (length + interpolation - 1) / interpolation);
+        int taps = tapsPerPhase * interpolation;
+        double[] prototype = FirDesign.lowpass(taps, (passband + stopband) / 2, STOPBAND_ATTENUATION);
+        this.coefficients = new double[taps];
+        for (int p = 0; p < interpolation; p++) {
+            for (int j = 0; j < tapsPerPhase; j++) {
+                // Gain L makes up for the energy lost by zero-stuffing
+                coefficients[p * tapsPerPhase + j] = prototype[p + j * interpolation] * interpolation;
+            }
+        }
+        this.buffer = new double[tapsPerPhase - 1];
+    }
+
+    /**
+     * Gets the interpolation factor L of the reduced ratio.
+     * @return The interpolation factor.
+     */
+    public int getInterpolation() {
+        return interpolation;
+    }
+
+    /**
+     * Gets the decimation factor M of the reduced ratio.
+     * @return The decimation factor.
+     */
+    public int getDecimation() {
+        return decimation;
+    }
+
+    /**
+     * Gets the number of filter taps evaluated per output sample.
+     * @return The taps per phase.
+     */
+    public int getTapsPerPhase() {
+        return tapsPerPhase;
+    }
+
+    /**
+     * Gets the largest number of output samples a block of input can produce.
+     * @param inputCount The number of input samples.
+     * @return The output buffer size needed.
+     */
+    public int getMaxOutput(int inputCount) {
+        return (int) (((long) inputCount * interpolation) / decimation) + 1;
+    }
+
+    /**
+     * Clears the filter history and the output position.
+     */
+    public void reset() {
+        Arrays.fill(buffer, 0, tapsPerPhase - 1, 0);
+        position = 0;
+    }
+
+    /**
+     * Resamples a block, continuing from the state left by the previous block.
+     * @param in The input samples.
+     * @param count The number of input samples.
+     * @param out Receives the output samples; needs {@link #getMaxOutput(int)} elements.
+     * @return The number of output samples written.
+     */
+    public int process(double[] in, int count, double[] out) {
+        int history = tapsPerPhase - 1;
+        if (buffer.length < history + count) {
+            double[] grown = new double[history + count];
+            System.arraycopy(buffer, 0, grown, 0, history);
+            buffer = grown;
+        }
+        System.arraycopy(in, 0, buffer, history, count);
+        long end = (long) count * interpolation;
+        int produced = 0;
+        // position counts upsampled samples from the first input of this block
+        while (position < end) {
+            int base = (int) (position / interpolation) + history;
+            int phase = (int) (position % interpolation);
+            int offset = phase * tapsPerPhase;
+            double sum = 0;
+            for (int j = 0; j < tapsPerPhase; j++) {
+                sum += coefficients[offset + j] * buffer[base - j];
+            }
+            out[produced++] = sum;
+            position += decimation;
+        }
+        position -= end;
+        System.arraycopy(buffer, count, buffer, 0, history);
+        return produced;
+    }
+
+    /**
+     * Computes the greatest common divisor.
+     * @param a The first value.
+     * @param b The second value.
+     * @return The greatest common divisor.
+     */
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
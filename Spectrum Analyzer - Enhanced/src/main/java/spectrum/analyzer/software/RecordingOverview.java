@@ -0,0 +1,329 @@
+package spectrum.analyzer.software;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical time/frequency summary of a recording, used to draw a whole session as a waterfall.
+ * <p>
+ * Level 0 summarises {@link #FRAMES_PER_ROW} frames per row and every further level merges
+ * {@link #FANOUT} rows of the level below. Each row reduces the frame to {@link #COLUMNS} frequency
+ * buckets and stores the maximum and the mean of the dB values per bucket, quantised like
+ * {@link SpectrumFrameCodec}. Level {@code k} lives in {@code overview-Lk.ovr} next to the segments
+ * as a header ({@code int magic, int columns}) followed by fixed-size rows: {@code long startTime,
+ * long endTime, double minFreq, double maxFreq, short[COLUMNS] max, short[COLUMNS] mean}.
+ */
+public class RecordingOverview implements AutoCloseable {
+    public static final int COLUMNS = 256;
+    public static final int FRAMES_PER_ROW = 16;
+    public static final int FANOUT = 8;
+    public static final int LEVELS = 6;
+
+    static final int FILE_MAGIC = 0x53504F56; // "SPOV"
+    static final int FILE_HEADER_SIZE = 8;
+    static final int ROW_HEADER_SIZE = 8 + 8 + 8 + 8;
+    static final int ROW_SIZE = ROW_HEADER_SIZE + 2 * COLUMNS * 2;
+
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final MappedByteBuffer[] levels = new MappedByteBuffer[LEVELS];
+
+    /**
+     * Opens the overview files of a recording.
+     * @param directory The recording directory.
+     * @throws IOException If an overview file exists but cannot be read.
+     */
+    public RecordingOverview(Path directory) throws IOException {
+        for (int level = 0; level < LEVELS; level++) {
+            Path file = directory.resolve(fileName(level));
+            if (!Files.exists(file)) continue;
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            channels.add(channel);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.limit() >= FILE_HEADER_SIZE && buffer.getInt(0) == FILE_MAGIC && buffer.getInt(4) == COLUMNS) {
+                levels[level] = buffer;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of rows stored for a level.
+     * @param level The level.
+     * @return The row count, zero if the level is missing.
+     */
+    public int getRowCount(int level) {
+        MappedByteBuffer buffer = levels[level];
+        return buffer == null ? 0 : (buffer.limit() - FILE_HEADER_SIZE) / ROW_SIZE;
+    }
+
+    /**
+     * Chooses the finest level that fits into the requested number of rows.
+     * @param maxRows The number of rows that can be displayed.
+     * @return The level, or -1 if there is no overview data.
+     */
+    public int chooseLevel(int maxRows) {
+        int coarsest = -1;
+        for (int level = 0; level < LEVELS; level++) {
+            int rows = getRowCount(level);
+            if (rows == 0) continue;
+            if (rows <= maxRows) return level;
+            coarsest = level;
+        }
+        return coarsest;
+    }
+
+    /**
+     * Gets the timestamp of the first frame in a row.
+     * @param level The level.
+     * @param row The row.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public long getStartTime(int level, int row) {
+        return levels[level].getLong(rowOffset(row));
+    }
+
+    /**
+     * Gets the timestamp of the last frame in a row.
+     * @param level The level.
+     * @param row The row.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public long getEndTime(int level, int row) {
+        return levels[level].getLong(rowOffset(row) + 8);
+    }
+
+    /**
+     * Finds the row that contains a timestamp.
+     * @param level The level.
+     * @param timestamp The timestamp in milliseconds since the epoch.
+     * @return The last row starting at or before the timestamp, or 0.
+     */
+    public int findRow(int level, long timestamp) {
+        int low = 0, high = getRowCount(level) - 1, result = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (getStartTime(level, mid) <= timestamp) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the maximum amplitude of a bucket.
+     * @param level The level.
+     * @param row The row.
+     * @param column The frequency bucket.
+     * @return The amplitude in dBm.
+     */
+    public double getMax(int level, int row, int column) {
+        return levels[level].getShort(rowOffset(row) + ROW_HEADER_SIZE + 2 * column) * SpectrumFrameCodec.STEP_DB;
+    }
+
+    /**
+     * Gets the mean amplitude of a bucket.
+     * @param level The level.
+     * @param row The row.
+     * @param column The frequency bucket.
+     * @return The mean of the dB values.
+     */
+    public double getMean(int level, int row, int column) {
+        return levels[level].getShort(rowOffset(row) + ROW_HEADER_SIZE + 2 * (COLUMNS + column)) * SpectrumFrameCodec.STEP_DB;
+    }
+
+    /**
+     * Releases the mapped overview files.
+     */
+    @Override
+    public void close() {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing useful to do when closing a read-only channel fails
+            }
+        }
+        channels.clear();
+    }
+
+    /**
+     * Builds the file name of a level.
+     * @param level The level.
+     * @return The file name.
+     */
+    static String fileName(int level) {
+        return "overview-L" + level + ".ovr";
+    }
+
+    /**
+     * Gets the byte offset of a row.
+     * @param row The row.
+     * @return The offset.
+     */
+    private static int rowOffset(int row) {
+        return FILE_HEADER_SIZE + row * ROW_SIZE;
+    }
+
+    /**
+     * Builds the overview files incrementally while frames are recorded.
+     */
+    public static final class Builder implements AutoCloseable {
+        private final FileChannel[] files = new FileChannel[LEVELS];
+        private final double[][] max = new double[LEVELS][COLUMNS];
+        private final double[][] meanSum = new double[LEVELS][COLUMNS];
+        private final int[] count = new int[LEVELS];
+        private final long[] startTime = new long[LEVELS];
+        private final long[] endTime = new long[LEVELS];
+        private final double[] frameMax = new double[COLUMNS];
+        private final double[] frameMean = new double[COLUMNS];
+        private final ByteBuffer row = ByteBuffer.allocateDirect(ROW_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private double minFreq;
+        private double maxFreq;
+
+        /**
+         * Creates the overview files in a recording directory.
+         * @param directory The recording directory.
+         * @throws IOException If the files cannot be created.
+         */
+        public Builder(Path directory) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            for (int level = 0; level < LEVELS; level++) {
+                files[level] = FileChannel.open(directory.resolve(fileName(level)),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                header.clear();
+                header.putInt(FILE_MAGIC).putInt(COLUMNS).flip();
+                write(files[level], header);
+            }
+        }
+
+        /**
+         * Adds a frame to the level 0 accumulator, cascading completed rows upwards.
+         * @param timestamp The frame timestamp in milliseconds since the epoch.
+         * @param frameMinFreq The minimum frequency of the frame in Hz.
+         * @param frameMaxFreq The maximum frequency of the frame in Hz.
+         * @param amplitudes The amplitudes in dBm.
+         * @throws IOException If a row cannot be written.
+         */
+        public void add(long timestamp, double frameMinFreq, double frameMaxFreq, double[] amplitudes) throws IOException {
+            int n = amplitudes.length;
+            if (n == 0) return;
+            minFreq = frameMinFreq;
+            maxFreq = frameMaxFreq;
+            for (int column = 0; column < COLUMNS; column++) {
+                int from = (int) ((long) column * n / COLUMNS);
+                int to = Math.max(from + 1, (int) ((long) (column + 1) * n / COLUMNS));
+                double peak = Double.NEGATIVE_INFINITY, sum = 0;
+                for (int i = from; i < to; i++) {
+                    peak = Math.max(peak, amplitudes[i]);
+                    sum += amplitudes[i];
+                }
+                frameMax[column] = peak;
+                frameMean[column] = sum / (to - from);
+            }
+            accumulate(0, timestamp, timestamp, frameMax, frameMean, FRAMES_PER_ROW);
+        }
+
+        /**
+         * Writes the partially filled rows of every level and closes the files.
+         * @throws IOException If a row cannot be written.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                for (int level = 0; level < LEVELS; level++) {
+                    if (count[level] == 0) continue;
+                    writeRow(level);
+                    if (level + 1 < LEVELS) {
+                        for (int column = 0; column < COLUMNS; column++) {
+                            meanSum[level][column] /= count[level];
+                        }
+                        accumulate(level + 1, startTime[level], endTime[level], max[level], meanSum[level], FANOUT);
+                    }
+                    count[level] = 0;
+                }
+            } finally {
+                for (FileChannel file : files) {
+                    file.close();
+                }
+            }
+        }
+
+        /**
+         * Merges values into a level and emits the row when it is complete.
+         * @param level The level.
+         * @param from The start timestamp of the values.
+         * @param to The end timestamp of the values.
+         * @param maxValues The bucket maxima.
+         * @param meanValues The bucket means.
+         * @param capacity The number of inputs per row at this level.
+         * @throws IOException If the row cannot be written.
+         */
+        private void accumulate(int level, long from, long to, double[] maxValues, double[] meanValues, int capacity)
+                throws IOException {
+            double[] levelMax = max[level];
+            double[] levelSum = meanSum[level];
+            if (count[level] == 0) {
+                startTime[level] = from;
+                System.arraycopy(maxValues, 0, levelMax, 0, COLUMNS);
+                System.arraycopy(meanValues, 0, levelSum, 0, COLUMNS);
+            } else {
+                for (int column = 0; column < COLUMNS; column++) {
+                    levelMax[column] = Math.max(levelMax[column], maxValues[column]);
+                    levelSum[column] += meanValues[column];
+                }
+            }
+            endTime[level] = to;
+            if (++count[level] == capacity) {
+                writeRow(level);
+                if (level + 1 < LEVELS) {
+                    for (int column = 0; column < COLUMNS; column++) {
+                        levelSum[column] /= capacity;
+                    }
+                    accumulate(level + 1, startTime[level], endTime[level], levelMax, levelSum, FANOUT);
+                }
+                count[level] = 0;
+            }
+        }
+
+        /**
+         * Writes the current row of a level.
+         * @param level The level.
+         * @throws IOException If the row cannot be written.
+         */
+        private void writeRow(int level) throws IOException {
+            row.clear();
+            row.putLong(startTime[level]).putLong(endTime[level]).putDouble(minFreq).putDouble(maxFreq);
+            for (int column = 0; column < COLUMNS; column++) {
+                row.putShort(SpectrumFrameCodec.quantise(max[level][column]));
+            }
+            for (int column = 0; column < COLUMNS; column++) {
+                row.putShort(SpectrumFrameCodec.quantise(meanSum[level][column] / count[level]));
+            }
+            row.flip();
+            write(files[level], row);
+        }
+
+        /**
+         * Writes the remaining bytes of a buffer to a channel.
+         * @param channel The target channel.
+         * @param buffer The buffer to write.
+         * @throws IOException If writing fails.
+         */
+        private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
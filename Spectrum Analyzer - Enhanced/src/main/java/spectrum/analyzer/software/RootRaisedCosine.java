@@ -0,0 +1,46 @@
+package spectrum.analyzer.software;
+
+/**
+ * Designs root-raised-cosine pulse-shaping and matched filters.
+ */
+public final class RootRaisedCosine {
+    private RootRaisedCosine() {
+    }
+
+    /**
+     * Computes the taps of a root-raised-cosine filter, normalised to unit energy so that the cascade of
+     * a shaping filter and a matched filter has a peak gain of 1 at the symbol instant.
+     * @param samplesPerSymbol The number of samples per symbol.
+     * @param rolloff The excess bandwidth, between 0 and 1.
+     * @param spanSymbols The filter length in symbols.
+     * @return The {@code spanSymbols * samplesPerSymbol + 1} taps.
+     */
+    public static double[] design(int samplesPerSymbol, double rolloff, int spanSymbols) {
+        int taps = spanSymbols * samplesPerSymbol + 1;
+        double[] h = new double[taps];
+        double center = (taps - 1) / 2.0;
+        double energy = 0;
+        for (int k = 0; k < taps; k++) {
+            double t = (k - center) / samplesPerSymbol;
+            double value;
+            if (t == 0) {
+                value = 1 - rolloff + 4 * rolloff / Math.PI;
+            } else if (rolloff > 0 && Math.abs(Math.abs(t) - 1 / (4 * rolloff)) < 1e-9) {
+                double angle = Math.PI / (4 * rolloff);
+                value = rolloff / Math.sqrt(2)
+                        * ((1 + 2 / Math.PI) * Math.sin(angle) + (1 - 2 / Math.PI) * Math.cos(angle));
+            } else {
+                double x = 4 * rolloff * t;
+                value = (Math.sin(Math.PI * t * (1 - rolloff)) + 4 * rolloff * t * Math.cos(Math.PI * t * (1 + rolloff)))
+                        / (Math.PI * t * (1 - x * x));
+            }
+            h[k] = value;
+            energy += value * value;
+        }
+        double scale = 1 / Math.sqrt(energy);
+        for (int k = 0; k < taps; k++) {
+            h[k] *= scale;
+        }
+        return h;
+    }
+}
@@ -1,37 +1,46 @@
 package spectrum.analyzer.software;
 
+/**
+ * Classifies signals by looking up their frequency in the band plan.
+ */
 public class SignalClassifier {
+    private volatile BandPlan bandPlan;
 
-    public String classify(SpectrumData data) {
-        double[] amplitudes = data.getAmplitudes();
-        double minFreq = data.getMinFreq();
-        double maxFreq = data.getMaxFreq();
-        double freqStep = (maxFreq - minFreq) / amplitudes.length;
-        double maxAmplitude = -160;
-        double peakFreq = minFreq;
-        int peakCount = 0;
-        for (int i = 0; i < amplitudes.length; i++) {
-            if (amplitudes[i] > maxAmplitude) {
-                maxAmplitude = amplitudes[i];
-                peakFreq = minFreq + i * freqStep;
-                peakCount = 1;
-            } else if (amplitudes[i] == maxAmplitude) {
-                peakCount++;
-            }
-        }
-        double confidence = peakCount < 5 ? 0.9 : 0.7;
+    /**
+     * Constructs a SignalClassifier.
+     * @param bandPlan The band plan used for lookups.
+     */
+    public SignalClassifier(BandPlan bandPlan) {
+        this.bandPlan = bandPlan;
+    }
+
+    /**
+     * Replaces the band plan.
+     * @param bandPlan The new band plan.
+     */
+    public void setBandPlan(BandPlan bandPlan) {
+        this.bandPlan = bandPlan;
+    }
+
+    /**
+     * Gets the band plan.
+     * @return The band plan.
+     */
+    public BandPlan getBandPlan() {
+        return bandPlan;
+    }
 
-        if (peakFreq >= 2400e6 && peakFreq <= 2480e6 && maxAmplitude > -100) {
-            return String.format("Bluetooth (%.0f%%)", confidence * 100);
-        } else if (peakFreq >= 100 && peakFreq <= 200 && maxAmplitude > -80) {
-            return String.format("Wi-Fi (%.0f%%)", confidence * 100);
-        } else if (peakFreq >= 700e6 && peakFreq <= 2700e6 && maxAmplitude > -90) {
-            return String.format("LTE (%.0f%%)", confidence * 100);
-        } else if (peakFreq >= 3500e6 && peakFreq <= 3700e6 && maxAmplitude > -95) {
-            return String.format("5G NR (%.0f%%)", confidence * 100);
-        } else if (peakFreq >= 2400e6 && peakFreq <= 2450e6 && maxAmplitude > -105) {
-            return String.format("Zigbee (%.0f%%)", confidence * 100);
+    /**
+     * Classifies a single frequency with the confidence of its band.
+     * @param frequency The frequency in Hz.
+     * @return The signal type with confidence, or "Unknown".
+     */
+    public String classify(double frequency) {
+        BandPlan plan = bandPlan;
+        int band = plan.find(frequency);
+        if (band < 0) {
+            return "Unknown";
         }
-        return String.format("Unknown (%.0f%%)", 50.0);
+        return String.format("%s (%.0f%%)", plan.getLabel(band), plan.getConfidence(band));
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package spectrum.analyzer.software;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Objects;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -19,16 +23,48 @@ public class SignalProcessor {
     private String demodulationType = "None";
     private double sweepSpeed = 1.0;
     private final SignalClassifier classifier;
-    private final Demodulator demodulator;
+    private final CfarDetector detector = new CfarDetector();
+    private volatile double[] detectionThreshold = new double[0];
+    private volatile List<Emission> emissions = List.of();
+    private final EmissionClassifier emissionClassifier = new EmissionClassifier();
+    private volatile List<Classification> classifications = List.of();
+    private static final double IQ_SAMPLE_RATE = 256_000.0;
+    private static final int IQ_BLOCK_SIZE = 4096;
+    private final IqSimulator iqSimulator = new IqSimulator(IQ_SAMPLE_RATE);
+    private final Demodulator demodulator = new Demodulator(IQ_SAMPLE_RATE);
+    private final ChannelFilter channelFilter = new ChannelFilter(IQ_SAMPLE_RATE);
+    private volatile ChannelBank channelBank;
+    private final ZeroSpan zeroSpan = new ZeroSpan(IQ_SAMPLE_RATE);
+    private volatile boolean zeroSpanActive;
+    private final double[] iqI = new double[IQ_BLOCK_SIZE];
+    private final double[] iqQ = new double[IQ_BLOCK_SIZE];
+    private final double[] demodOutput = new double[IQ_BLOCK_SIZE];
+    private int demodCount;
+    private final Object demodLock = new Object();
+    private volatile AudioOutput audioOutput;
     private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private volatile SpectrumRecorder recorder;
+    private volatile SpectrumPlayback playback;
+    private long playbackPosition = -1;
+    private final FrameHistory history = new FrameHistory(64L * 1024 * 1024);
+    private double historyMinFreq;
+    private double historyMaxFreq;
+    private final NoiseFloorEstimator floorEstimator = new NoiseFloorEstimator();
+    private final TraceStore traces = new TraceStore();
+    private final OccupancyEngine occupancy = new OccupancyEngine();
+    private final BurstTracker burstTracker = new BurstTracker();
+    private final SpectralKurtosis kurtosis = new SpectralKurtosis();
 
     /**
      * Constructs a SignalProcessor with default settings.
      */
     public SignalProcessor() {
         spectrumData = new SpectrumData(fftSize);
-        classifier = new SignalClassifier();
-        demodulator = new Demodulator();
+        try {
+            classifier = new SignalClassifier(BandPlan.loadDefault());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         generateSimulatedData();
     }
 
@@ -67,9 +103,78 @@ public class SignalProcessor {
      */
     public void setDemodulationType(String type) {
         this.demodulationType = type;
+        synchronized (demodLock) {
+            iqSimulator.setModulation(type);
+            demodulator.setType(type);
+            if (channelBank != null) channelBank.setType(type);
+            demodCount = 0;
+        }
         generateSimulatedData();
     }
 
+    /**
+     * Sets the FM de-emphasis time constant.
+     * @param deemphasis The time constant in seconds, or 0 for none.
+     */
+    public void setDeemphasis(double deemphasis) {
+        synchronized (demodLock) {
+            demodulator.setDeemphasis(deemphasis);
+            if (channelBank != null) channelBank.setDeemphasis(deemphasis);
+        }
+    }
+
+    /**
+     * Sets the bandwidth of the channel filter in front of the demodulators.
+     * @param bandwidth The two-sided bandwidth in Hz, or 0 for no filtering.
+     */
+    public void setChannelFilter(double bandwidth) {
+        synchronized (demodLock) {
+            channelFilter.setBandwidth(bandwidth);
+        }
+    }
+
+    /**
+     * Sets the raster of channels demodulated side by side through the channelizer.
+     * @param spacing The channel spacing in Hz.
+     * @param count The number of channels; below 2 the channelizer is switched off.
+     */
+    public void setChannelRaster(double spacing, int count) {
+        synchronized (demodLock) {
+            if (count < 2 || spacing <= 0) {
+                channelBank = null;
+                return;
+            }
+            ChannelBank bank = new ChannelBank(IQ_SAMPLE_RATE, spacing, count);
+            bank.setDeemphasis(demodulator.getDeemphasis());
+            bank.setType(demodulationType);
+            channelBank = bank;
+        }
+    }
+
+    /**
+     * Gets the channels demodulated through the channelizer.
+     * @return The channel bank, or null if the channelizer is off.
+     */
+    public ChannelBank getChannelBank() {
+        return channelBank;
+    }
+
+    /**
+     * Switches the zero-span measurement on the IQ stream on or off.
+     * @param active True to feed every IQ block to the zero-span measurement.
+     */
+    public void setZeroSpanActive(boolean active) {
+        this.zeroSpanActive = active;
+    }
+
+    /**
+     * Gets the zero-span measurement.
+     * @return The zero-span measurement.
+     */
+    public ZeroSpan getZeroSpan() {
+        return zeroSpan;
+    }
+
     /**
      * Sets the sweep speed.
      * @param speed The sweep speed factor.
@@ -89,38 +194,169 @@ public class SignalProcessor {
     }
 
     /**
-     * Classifies the signal type.
+     * Sets the recorder that receives every published frame.
+     * @param recorder The recorder, or null to stop recording.
+     */
+    public void setRecorder(SpectrumRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Sets the playback source that replaces simulated data.
+     * @param playback The playback source, or null to return to live data.
+     */
+    public void setPlayback(SpectrumPlayback playback) {
+        this.playback = playback;
+        playbackPosition = -1;
+        generateSimulatedData();
+    }
+
+    /**
+     * Gets the active playback source.
+     * @return The playback source, or null for live data.
+     */
+    public SpectrumPlayback getPlayback() {
+        return playback;
+    }
+
+    /**
+     * Gets the off-heap history of recently published frames.
+     * @return The frame history.
+     */
+    public FrameHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Gets the running per-bin noise floor estimate of the current span.
+     * @return The noise floor estimator.
+     */
+    public NoiseFloorEstimator getNoiseFloor() {
+        return floorEstimator;
+    }
+
+    /**
+     * Gets the display traces that are updated from every published frame.
+     * @return The trace store.
+     */
+    public TraceStore getTraces() {
+        return traces;
+    }
+
+    /**
+     * Gets the per-channel occupancy statistics of the current span.
+     * @return The occupancy engine.
+     */
+    public OccupancyEngine getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Gets the tracker of bursty and frequency-hopping emitters in the current span.
+     * @return The burst tracker.
+     */
+    public BurstTracker getBurstTracker() {
+        return burstTracker;
+    }
+
+    /**
+     * Gets the per-bin spectral kurtosis estimate of the current span.
+     * @return The spectral kurtosis estimator.
+     */
+    public SpectralKurtosis getKurtosis() {
+        return kurtosis;
+    }
+
+    /**
+     * Computes a hash of the acquisition settings that shape a frame.
+     * @return The settings hash.
+     */
+    public int getSettingsHash() {
+        return Objects.hash(analysisMode, windowFunction, demodulationType, sweepSpeed);
+    }
+
+    /**
+     * Gets the classification of the strongest emission of the latest frame.
      * @return The classified signal type with confidence.
      */
     public String getSignalType() {
-        return classifier.classify(spectrumData);
+        List<Emission> frameEmissions = emissions;
+        List<Classification> frameClassifications = classifications;
+        int strongest = -1;
+        for (int i = 0; i < frameEmissions.size() && i < frameClassifications.size(); i++) {
+            if (strongest < 0 || frameEmissions.get(i).getPeakAmplitude() > frameEmissions.get(strongest).getPeakAmplitude()) {
+                strongest = i;
+            }
+        }
+        return strongest < 0 ? String.format("Unknown (%.0f%%)", 50.0) : frameClassifications.get(strongest).toString();
+    }
+
+    /**
+     * Gets the classifications of the emissions detected in the latest frame.
+     * @return The classifications, parallel to {@link #getEmissions()}.
+     */
+    public List<Classification> getClassifications() {
+        return classifications;
+    }
+
+    /**
+     * Gets the adaptive detection threshold of the latest frame.
+     * @return The threshold per bin in dBm.
+     */
+    public double[] getDetectionThreshold() {
+        return detectionThreshold;
+    }
+
+    /**
+     * Gets the emissions detected in the latest frame.
+     * @return The emissions, ordered by frequency.
+     */
+    public List<Emission> getEmissions() {
+        return emissions;
     }
 
     /**
-     * Classifies the signal type at a specific frequency.
+     * Sets the CFAR detector mode (CA, GO or SO).
+     * @param mode The detector mode.
+     */
+    public synchronized void setDetectorMode(String mode) {
+        detector.setMode(mode);
+    }
+
+    /**
+     * Classifies the signal type at a specific frequency using the band plan.
      * @param frequency The frequency to classify.
      * @return The classified signal type.
      */
     public String getSignalTypeAtFrequency(double frequency) {
-        // Simplified classification based on frequency ranges
-        if (frequency > 100 && frequency < 200) {
-            return "Wi-Fi (90%)";
-        } else if (frequency > 2400e6 && frequency < 2480e6) {
-            return "Bluetooth (85%)";
-        } else if (frequency > 700e6 && frequency < 2700e6) {
-            return "LTE (80%)";
-        } else if (frequency > 3500e6 && frequency < 3700e6) {
-            return "5G NR (75%)";
-        } else if (frequency > 2400e6 && frequency < 2450e6) {
-            return "Zigbee (70%)";
-        }
-        return "Unknown";
+        return classifier.classify(frequency);
+    }
+
+    /**
+     * Replaces the band plan used for classification and band overlays.
+     * @param bandPlan The band plan.
+     */
+    public void setBandPlan(BandPlan bandPlan) {
+        classifier.setBandPlan(bandPlan);
+    }
+
+    /**
+     * Gets the band plan used for classification and band overlays.
+     * @return The band plan.
+     */
+    public BandPlan getBandPlan() {
+        return classifier.getBandPlan();
     }
 
     /**
      * Generates simulated spectrum data asynchronously.
      */
     private void generateSimulatedData() {
+        SpectrumPlayback activePlayback = playback;
+        if (activePlayback != null) {
+            executor.submit(() -> publishPlayback(activePlayback));
+            return;
+        }
         executor.submit(() -> {
             double[] amplitudes = new double[fftSize];
             double[] phases = new double[fftSize];
@@ -146,11 +382,6 @@ public class SignalProcessor {
                 phases[i] = random.nextDouble() * 2 * Math.PI;
             }
 
-            if (!demodulationType.equals("None")) {
-                double[] demodulated = demodulator.demodulate(amplitudes, phases, demodulationType);
-                System.arraycopy(demodulated, 0, amplitudes, 0, fftSize);
-            }
-
             if (analysisMode.equals("Swept-Tuned")) {
                 double attenuation = 0.8 / sweepSpeed;
                 for (int i = 0; i < fftSize; i++) {
@@ -158,10 +389,160 @@ public class SignalProcessor {
                 }
             }
 
-            spectrumData.update(amplitudes, phases, minFreq, maxFreq);
+            publish(amplitudes, phases, minFreq, maxFreq);
+            demodulateBlock();
         });
     }
 
+    /**
+     * Feeds the next block of the simulated IQ stream to the zero-span measurement, if it is on, and
+     * demodulates it, if a demodulation type is selected.
+     */
+    private void demodulateBlock() {
+        synchronized (demodLock) {
+            boolean zeroSpanning = zeroSpanActive;
+            if (!demodulator.isActive() && !zeroSpanning) return;
+            iqSimulator.generate(iqI, iqQ, IQ_BLOCK_SIZE);
+            if (zeroSpanning) zeroSpan.process(iqI, iqQ, IQ_BLOCK_SIZE);
+            if (!demodulator.isActive()) return;
+            if (channelBank != null) channelBank.process(iqI, iqQ, IQ_BLOCK_SIZE);
+            channelFilter.process(iqI, iqQ, IQ_BLOCK_SIZE, iqI, iqQ);
+            demodCount = demodulator.demodulate(iqI, iqQ, IQ_BLOCK_SIZE, demodOutput);
+            AudioOutput activeOutput = audioOutput;
+            if (activeOutput != null) {
+                activeOutput.write(demodOutput, demodCount);
+            }
+        }
+    }
+
+    /**
+     * Sets the audio output that receives every demodulated block.
+     * @param audioOutput The audio output, or null to stop sending audio.
+     */
+    public void setAudioOutput(AudioOutput audioOutput) {
+        this.audioOutput = audioOutput;
+    }
+
+    /**
+     * Copies the latest block of demodulated samples.
+     * @param out Receives up to {@code out.length} samples.
+     * @return The number of samples copied, 0 if no demodulation is selected.
+     */
+    public int copyDemodOutput(double[] out) {
+        synchronized (demodLock) {
+            int count = Math.min(out.length, demodCount);
+            System.arraycopy(demodOutput, 0, out, 0, count);
+            return count;
+        }
+    }
+
+    /**
+     * Gets the sample rate of the demodulated output.
+     * @return The sample rate in Hz.
+     */
+    public double getDemodSampleRate() {
+        return demodulator.getSampleRate();
+    }
+
+    /**
+     * Gets the density histogram of the symbols recovered by the PSK and QAM demodulators.
+     * @return The constellation density.
+     */
+    public ConstellationDensity getConstellation() {
+        return demodulator.getConstellation();
+    }
+
+    /**
+     * Gets the eye diagram of the PSK and QAM demodulators.
+     * @return The eye diagram.
+     */
+    public EyeDiagram getEyeDiagram() {
+        return demodulator.getEyeDiagram();
+    }
+
+    /**
+     * Gets the EVM and MER statistics of the symbols recovered by the PSK and QAM demodulators.
+     * @return The modulation quality.
+     */
+    public ModulationQuality getModulationQuality() {
+        return demodulator.getQuality();
+    }
+
+    /**
+     * Copies the per-subcarrier EVM of the OFDM receiver in natural frequency order.
+     * @param out Receives {@link OfdmReceiver#SUBCARRIERS} values in percent, NaN for the unused DC subcarrier.
+     * @return True if OFDM is being demodulated, false if nothing was copied.
+     */
+    public boolean copySubcarrierEvm(double[] out) {
+        OfdmReceiver receiver = demodulator.getOfdmReceiver();
+        if (receiver == null) return false;
+        receiver.copySubcarrierEvm(out);
+        return true;
+    }
+
+    /**
+     * Gets the carrier frequency offset estimated by the OFDM receiver.
+     * @return The offset in Hz, or NaN if OFDM is not being demodulated.
+     */
+    public double getOfdmFrequencyOffset() {
+        OfdmReceiver receiver = demodulator.getOfdmReceiver();
+        if (receiver == null) return Double.NaN;
+        return receiver.getFrequencyOffset() * demodulator.getSampleRate() / OfdmReceiver.SUBCARRIERS;
+    }
+
+    /**
+     * Publishes the recorded frame at the current playback position if it changed.
+     * @param activePlayback The playback source.
+     */
+    private synchronized void publishPlayback(SpectrumPlayback activePlayback) {
+        if (activePlayback != playback) return;
+        long position = activePlayback.locate(activePlayback.getCurrentTime());
+        if (position == playbackPosition) return;
+        playbackPosition = position;
+        SpectrumPlayback.Frame frame = activePlayback.read(position);
+        double[] amplitudes = frame.getAmplitudes();
+        publish(amplitudes, new double[amplitudes.length], frame.getMinFreq(), frame.getMaxFreq());
+    }
+
+    /**
+     * Runs detection on a frame and publishes it to the spectrum data, the frame history, the noise floor
+     * estimate, the display traces, the occupancy statistics, the burst tracker, the spectral
+     * kurtosis estimate and the recorder.
+     * @param amplitudes The frame amplitudes in dBm.
+     * @param phases The frame phases in radians.
+     * @param frameMinFreq The minimum frequency of the frame in Hz.
+     * @param frameMaxFreq The maximum frequency of the frame in Hz.
+     */
+    private synchronized void publish(double[] amplitudes, double[] phases, double frameMinFreq, double frameMaxFreq) {
+        double[] threshold = detector.computeThreshold(amplitudes);
+        List<Emission> detected = detector.detect(amplitudes, threshold, frameMinFreq, frameMaxFreq);
+        classifications = emissionClassifier.update(detected, amplitudes, frameMinFreq, frameMaxFreq, getBandPlan());
+        emissions = detected;
+        detectionThreshold = threshold;
+        spectrumData.update(amplitudes, phases, frameMinFreq, frameMaxFreq);
+        long timestamp = System.currentTimeMillis();
+        if (frameMinFreq != historyMinFreq || frameMaxFreq != historyMaxFreq) {
+            history.clear();
+            floorEstimator.reset();
+            traces.resetAll();
+            occupancy.reset();
+            burstTracker.reset();
+            kurtosis.reset();
+            historyMinFreq = frameMinFreq;
+            historyMaxFreq = frameMaxFreq;
+        }
+        history.append(timestamp, amplitudes);
+        floorEstimator.update(amplitudes);
+        traces.update(amplitudes);
+        occupancy.update(timestamp, amplitudes, frameMinFreq, frameMaxFreq);
+        burstTracker.update(timestamp, amplitudes, threshold, frameMinFreq, frameMaxFreq);
+        kurtosis.update(amplitudes);
+        SpectrumRecorder activeRecorder = recorder;
+        if (activeRecorder != null) {
+            activeRecorder.record(timestamp, frameMinFreq, frameMaxFreq, getSettingsHash(), amplitudes);
+        }
+    }
+
     /**
      * Generates the window function array in parallel.
      * @return The window function values.
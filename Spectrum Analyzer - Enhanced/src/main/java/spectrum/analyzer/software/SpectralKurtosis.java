@@ -0,0 +1,269 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Streaming per-bin spectral kurtosis estimate that flags bins whose power does not behave like noise.
+ * <p>
+ * For every bin the running sums S1 = sum |X|^2 and S2 = sum |X|^4 are accumulated over a block of M
+ * frames in primitive arrays, and no frames are kept. When a block is complete the estimate
+ * SK = (M + 1) / (M - 1) * (M * S2 / S1^2 - 1) is computed and the sums are cleared. SK is about 1 for
+ * Gaussian noise, well above 1 for impulsive interference that averages away in a power spectrum, and
+ * below 1 for constant-envelope signals.
+ * <p>
+ * The estimate is skewed, so the thresholds are not 1 +/- k * 2 / sqrt(M). They are the quantiles of the
+ * Pearson type IV curve that matches the first four moments of SK for Gaussian noise (Nita and Gary,
+ * 2010), placed so that each side flags the same fraction of noise bins as a one-sided k-sigma test on a
+ * Gaussian: 0.13% for k = 3. Below 32 frames the moments leave the type IV region, so M is at least 32.
+ * <p>
+ * The test only means something when the noise is Gaussian in I and Q, so that its power in a bin is
+ * exponentially distributed. Noise drawn as Gaussian in dB, like the built-in simulator's, has a
+ * log-normal power and an SK well above 1 in most bins. The detector therefore checks that the median SK
+ * over the span lies between the quartiles of SK for noise, as it does while about two thirds of the bins
+ * or more hold noise, and flags no bins while it does not.
+ */
+public class SpectralKurtosis {
+    private static final double DB_TO_LN = Math.log(10) / 10;
+    private static final int MIN_BLOCK_SIZE = 32;
+    private static final int INTEGRATION_STEPS = 20000;
+
+    private int blockSize = 64;
+    private double sigmas = 3.0;
+    private double[] s1 = new double[0];
+    private double[] s2 = new double[0];
+    private double[] estimate = new double[0];
+    private byte[] flags = new byte[0];
+    private double[] sorted = new double[0];
+    private double upperThreshold;
+    private double lowerThreshold;
+    private double upperQuartile;
+    private double lowerQuartile;
+    private boolean gaussian;
+    private int binCount;
+    private int frames;
+    private long blocks;
+
+    /**
+     * Creates a detector with blocks of 64 frames and 3-sigma thresholds.
+     */
+    public SpectralKurtosis() {
+        updateThresholds();
+    }
+
+    /**
+     * Sets the number of frames per estimate and clears the running sums.
+     * @param blockSize The block size M, raised to 32 if smaller.
+     */
+    public synchronized void setBlockSize(int blockSize) {
+        this.blockSize = Math.max(MIN_BLOCK_SIZE, blockSize);
+        updateThresholds();
+        reset();
+    }
+
+    /**
+     * Gets the number of frames per estimate.
+     * @return The block size M.
+     */
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Sets the false alarm rate on each side as that of a one-sided test at this many standard deviations
+     * of a Gaussian.
+     * @param sigmas The number of standard deviations.
+     */
+    public synchronized void setSigmas(double sigmas) {
+        this.sigmas = sigmas;
+        updateThresholds();
+    }
+
+    /**
+     * Gets the upper detection threshold; bins above it are impulsive.
+     * @return The threshold on SK.
+     */
+    public double getUpperThreshold() {
+        return upperThreshold;
+    }
+
+    /**
+     * Gets the lower detection threshold; bins below it are constant-envelope.
+     * @return The threshold on SK.
+     */
+    public double getLowerThreshold() {
+        return lowerThreshold;
+    }
+
+    /**
+     * Tells whether the latest block looked like Gaussian noise overall, so that its flags mean something.
+     * @return True if the median SK over the span lay between the quartiles of SK for noise.
+     */
+    public synchronized boolean isNoiseGaussian() {
+        return blocks > 0 && gaussian;
+    }
+
+    /**
+     * Places the thresholds and the quartiles at the quantiles of the Pearson type IV curve with the mean 1
+     * and the variance, skewness and kurtosis of the estimate for Gaussian noise and M frames.
+     */
+    private void updateThresholds() {
+        double m = blockSize;
+        double variance = 4 * m * m / ((m - 1) * (m + 2) * (m + 3));
+        double skewSquared = 4 * (m + 2) * (m + 3) * (5 * m - 7) * (5 * m - 7)
+                / ((m - 1) * (m + 4) * (m + 4) * (m + 5) * (m + 5));
+        double kurtosis = 3 * (m + 2) * (m + 3) * (m * m * m + 98 * m * m - 185 * m + 78)
+                / ((m - 1) * (m + 4) * (m + 5) * (m + 6) * (m + 7));
+        double r = 6 * (kurtosis - skewSquared - 1) / (2 * kurtosis - 3 * skewSquared - 6);
+        double spread = 16 * (r - 1) - skewSquared * (r - 2) * (r - 2);
+        double nu = -r * (r - 2) * Math.sqrt(skewSquared / spread);
+        double width = Math.sqrt(variance * spread) / 4;
+        double location = 1 - (r - 2) * Math.sqrt(skewSquared * variance) / 4;
+        double tail = 0.5 * erfc(sigmas / Math.sqrt(2));
+        double[] quantiles = pearsonIvQuantiles(1 + r / 2, nu, new double[]{tail, 0.25, 0.75, 1 - tail});
+        lowerThreshold = Math.max(0, location + width * quantiles[0]);
+        lowerQuartile = location + width * quantiles[1];
+        upperQuartile = location + width * quantiles[2];
+        upperThreshold = location + width * quantiles[3];
+    }
+
+    /**
+     * Clears the running sums and the latest estimate, for example after the span changed.
+     */
+    public synchronized void reset() {
+        frames = 0;
+        blocks = 0;
+        binCount = 0;
+    }
+
+    /**
+     * Gets the number of bins of the tracked frames.
+     * @return The bin count.
+     */
+    public int getBinCount() {
+        return binCount;
+    }
+
+    /**
+     * Adds a frame to the running sums and completes the estimate at the end of a block.
+     * @param amplitudes The amplitudes in dBm.
+     */
+    public synchronized void update(double[] amplitudes) {
+        int n = amplitudes.length;
+        if (n != binCount) {
+            binCount = n;
+            s1 = new double[n];
+            s2 = new double[n];
+            estimate = new double[n];
+            flags = new byte[n];
+            sorted = new double[n];
+            frames = 0;
+            blocks = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            double power = Math.exp(amplitudes[i] * DB_TO_LN);
+            s1[i] += power;
+            s2[i] += power * power;
+        }
+        if (++frames < blockSize) return;
+        double m = frames;
+        double scale = (m + 1) / (m - 1);
+        for (int i = 0; i < n; i++) {
+            estimate[i] = scale * (m * s2[i] / (s1[i] * s1[i]) - 1);
+            s1[i] = 0;
+            s2[i] = 0;
+        }
+        System.arraycopy(estimate, 0, sorted, 0, n);
+        Arrays.sort(sorted);
+        double median = n == 0 ? Double.NaN : sorted[n / 2];
+        gaussian = median >= lowerQuartile && median <= upperQuartile;
+        for (int i = 0; i < n; i++) {
+            double sk = estimate[i];
+            flags[i] = (byte) (!gaussian ? 0 : sk > upperThreshold ? 1 : sk < lowerThreshold ? -1 : 0);
+        }
+        frames = 0;
+        blocks++;
+    }
+
+    /**
+     * Copies the latest estimate into a buffer.
+     * @param out Receives one SK value per bin; must have {@link #getBinCount()} elements.
+     * @return False if no block has been completed yet.
+     */
+    public synchronized boolean copyTrace(double[] out) {
+        if (blocks == 0 || out.length != binCount) return false;
+        System.arraycopy(estimate, 0, out, 0, binCount);
+        return true;
+    }
+
+    /**
+     * Gets the detector decision for a bin from the latest estimate.
+     * @param bin The bin index.
+     * @return 1 for impulsive, -1 for constant-envelope, 0 for Gaussian, before the first block or while
+     *         the input is not Gaussian noise.
+     */
+    public synchronized int getFlag(int bin) {
+        return blocks == 0 || bin < 0 || bin >= binCount ? 0 : flags[bin];
+    }
+
+    /**
+     * Counts the bins flagged as impulsive in the latest estimate.
+     * @return The number of impulsive bins, 0 while the input is not Gaussian noise.
+     */
+    public synchronized int getImpulsiveCount() {
+        if (blocks == 0) return 0;
+        int count = 0;
+        for (int i = 0; i < binCount; i++) {
+            if (flags[i] > 0) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Finds quantiles of the standardized Pearson type IV distribution, whose density is proportional to
+     * (1 + t^2)^-m * exp(-nu * atan(t)). With t = tan(u) the density over u is cos(u)^(2m - 2) * exp(-nu * u)
+     * on a finite interval, which is integrated with the trapezoid rule.
+     * @param m The exponent m, above 1/2.
+     * @param nu The asymmetry nu.
+     * @param probabilities The probabilities, in ascending order.
+     * @return The quantiles t, one per probability.
+     */
+    private static double[] pearsonIvQuantiles(double m, double nu, double[] probabilities) {
+        double step = Math.PI / INTEGRATION_STEPS;
+        double[] logDensity = new double[INTEGRATION_STEPS + 1];
+        double peak = Double.NEGATIVE_INFINITY;
+        logDensity[0] = Double.NEGATIVE_INFINITY;
+        logDensity[INTEGRATION_STEPS] = Double.NEGATIVE_INFINITY;
+        for (int k = 1; k < INTEGRATION_STEPS; k++) {
+            double u = -Math.PI / 2 + k * step;
+            logDensity[k] = (2 * m - 2) * Math.log(Math.cos(u)) - nu * u;
+            peak = Math.max(peak, logDensity[k]);
+        }
+        double[] cumulative = new double[INTEGRATION_STEPS + 1];
+        for (int k = 1; k <= INTEGRATION_STEPS; k++) {
+            cumulative[k] = cumulative[k - 1]
+                    + 0.5 * (Math.exp(logDensity[k - 1] - peak) + Math.exp(logDensity[k] - peak));
+        }
+        double total = cumulative[INTEGRATION_STEPS];
+        double[] quantiles = new double[probabilities.length];
+        int k = 0;
+        for (int j = 0; j < probabilities.length; j++) {
+            double target = probabilities[j] * total;
+            while (k < INTEGRATION_STEPS - 1 && cumulative[k + 1] < target) k++;
+            double fraction = (target - cumulative[k]) / (cumulative[k + 1] - cumulative[k]);
+            quantiles[j] = Math.tan(-Math.PI / 2 + (k + fraction) * step);
+        }
+        return quantiles;
+    }
+
+    /**
+     * Computes the complementary error function with a Chebyshev fit, accurate to 1.2e-7 relative.
+     * @param x The argument, not negative.
+     * @return erfc(x).
+     */
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.5 * x);
+        return t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+    }
+}
\ No newline at end of file
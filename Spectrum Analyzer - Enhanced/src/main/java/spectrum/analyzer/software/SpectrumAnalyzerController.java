@@ -3,11 +3,21 @@ package spectrum.analyzer.software;
 import javafx.animation.AnimationTimer;
 import javafx.fxml.FXML;
 import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 /**
@@ -24,17 +34,48 @@ public class SpectrumAnalyzerController {
     @FXML private ComboBox<String> analysisModeComboBox;
     @FXML private ComboBox<String> windowComboBox;
     @FXML private ComboBox<String> demodulationComboBox;
+    @FXML private ComboBox<String> deemphasisComboBox;
+    @FXML private ComboBox<String> demodViewComboBox;
+    @FXML private ToggleButton channelFilterToggle;
+    @FXML private ComboBox<String> detectorComboBox;
+    @FXML private ToggleButton noiseFloorToggle;
+    @FXML private ComboBox<String> traceDetectorComboBox;
+    @FXML private ToggleButton bandsToggle;
+    @FXML private ToggleButton kurtosisToggle;
+    @FXML private Label impulsiveLabel;
+    @FXML private Button loadBandPlanButton;
+    @FXML private ComboBox<String> trace1ComboBox;
+    @FXML private ComboBox<String> trace2ComboBox;
+    @FXML private ComboBox<String> trace3ComboBox;
+    @FXML private Button trace1ResetButton;
+    @FXML private Button trace2ResetButton;
+    @FXML private Button trace3ResetButton;
+    @FXML private TextField averageCountField;
     @FXML private Label frequencyLabel;
     @FXML private Label dynamicRangeLabel;
     @FXML private Label channelPowerLabel;
     @FXML private Label acprLabel;
+    @FXML private Label evmLabel;
+    @FXML private Label merLabel;
     @FXML private Label signalTypeLabel;
     @FXML private Label windowInfoLabel;
     @FXML private TextField channelBandwidthField;
     @FXML private TextField channelCountField;
+    @FXML private TextField zeroSpanRbwField;
+    @FXML private TextField zeroSpanSweepField;
+    @FXML private TextField zeroSpanTriggerField;
     @FXML private ToggleButton logScaleToggle;
     @FXML private Button exportButton;
     @FXML private Button resetButton;
+    @FXML private Button exportTraceButton;
+    @FXML private ToggleButton recordToggle;
+    @FXML private ToggleButton recordAudioToggle;
+    @FXML private Button openRecordingButton;
+    @FXML private Button closeRecordingButton;
+    @FXML private ToggleButton playToggle;
+    @FXML private Slider playbackSpeedSlider;
+    @FXML private Slider playbackPositionSlider;
+    @FXML private Label playbackLabel;
     @FXML private Button resetZoomButton;
     @FXML private Button addMarkerButton;
     @FXML private Button clearMarkersButton;
@@ -47,10 +88,31 @@ public class SpectrumAnalyzerController {
     @FXML private TableColumn<Marker, Double> frequencyColumn;
     @FXML private TableColumn<Marker, Double> amplitudeColumn;
     @FXML private TableColumn<Marker, String> signalTypeColumn;
+    @FXML private TextField occupancyChannelsField;
+    @FXML private TextField occupancyThresholdField;
+    @FXML private TableView<ChannelOccupancy> occupancyTable;
+    @FXML private TableColumn<ChannelOccupancy, Double> occupancyFrequencyColumn;
+    @FXML private TableColumn<ChannelOccupancy, Double> occupancyPowerColumn;
+    @FXML private TableColumn<ChannelOccupancy, Double> occupancyMinuteColumn;
+    @FXML private TableColumn<ChannelOccupancy, Double> occupancyHourColumn;
+    @FXML private TableColumn<ChannelOccupancy, Double> occupancyDayColumn;
+    @FXML private Button exportOccupancyButton;
+    @FXML private TextField burstWindowField;
+    @FXML private TableView<BurstTrack> burstTable;
+    @FXML private TableColumn<BurstTrack, Double> burstCenterColumn;
+    @FXML private TableColumn<BurstTrack, Integer> burstCountColumn;
+    @FXML private TableColumn<BurstTrack, Double> burstHopRateColumn;
+    @FXML private TableColumn<BurstTrack, Double> burstDwellColumn;
+    @FXML private TableColumn<BurstTrack, Double> burstBandwidthColumn;
     private SpectrumCanvas spectrumCanvas;
     private DemodCanvas demodCanvas;
     private SignalProcessor signalProcessor;
+    private SpectrumRecorder recorder;
+    private AudioOutput audioOutput;
+    private Path audioPath;
+    private SpectrumPlayback playback;
     private double maxFrequency = 50_000_000_000.0;
+    private long lastOccupancyRefresh;
 
     /**
      * Initializes the controller, setting up UI components and event handlers.
@@ -91,7 +153,7 @@ public class SpectrumAnalyzerController {
         });
 
         // Display Mode ComboBox
-        modeComboBox.getItems().addAll("Spectrum");  // I have remove Persistence display mode due to some issues which I'll try to fix in future
+        modeComboBox.getItems().addAll("Spectrum", "Waterfall", "Overview", "Zero Span");  // I have remove Persistence display mode due to some issues which I'll try to fix in future
         modeComboBox.setValue("Spectrum");
         modeComboBox.setOnAction(e -> spectrumCanvas.setDisplayMode(modeComboBox.getValue()));
 
@@ -113,6 +175,62 @@ public class SpectrumAnalyzerController {
         demodulationComboBox.setValue("None");
         demodulationComboBox.setOnAction(e -> signalProcessor.setDemodulationType(demodulationComboBox.getValue()));
 
+        // De-emphasis ComboBox
+        deemphasisComboBox.getItems().addAll("Off", "50 us", "75 us");
+        deemphasisComboBox.setValue("Off");
+        deemphasisComboBox.setOnAction(e -> signalProcessor.setDeemphasis(deemphasisTimeConstant(deemphasisComboBox.getValue())));
+
+        // Demodulation View ComboBox
+        demodViewComboBox.getItems().addAll("Waveform", "Constellation", "Eye Diagram", "Subcarrier EVM", "Channels");
+        demodViewComboBox.setValue("Waveform");
+        demodViewComboBox.setOnAction(e -> demodCanvas.setMode(demodViewComboBox.getValue()));
+
+        // Channel Filter Toggle
+        channelFilterToggle.setOnAction(e -> updateChannelFilter());
+
+        // CFAR Detector ComboBox
+        detectorComboBox.getItems().addAll("CA", "GO", "SO");
+        detectorComboBox.setValue("CA");
+        detectorComboBox.setOnAction(e -> signalProcessor.setDetectorMode(detectorComboBox.getValue()));
+
+        // Noise Floor Toggle
+        noiseFloorToggle.setOnAction(e -> spectrumCanvas.setNoiseFloorVisible(noiseFloorToggle.isSelected()));
+
+        // Trace Detector ComboBox
+        traceDetectorComboBox.getItems().addAll("Peak", "Sample", "Average", "RMS", "Negative Peak");
+        traceDetectorComboBox.setValue("Peak");
+        traceDetectorComboBox.setOnAction(e -> spectrumCanvas.setTraceDetector(traceDetectorComboBox.getValue()));
+
+        // Band Plan Toggle
+        bandsToggle.setOnAction(e -> spectrumCanvas.setBandsVisible(bandsToggle.isSelected()));
+
+        // Spectral Kurtosis Toggle
+        kurtosisToggle.setOnAction(e -> spectrumCanvas.setKurtosisVisible(kurtosisToggle.isSelected()));
+
+        // Trace Mode ComboBoxes and Reset Buttons
+        setupTrace(0, trace1ComboBox, trace1ResetButton);
+        setupTrace(1, trace2ComboBox, trace2ResetButton);
+        setupTrace(2, trace3ComboBox, trace3ResetButton);
+
+        // Average Count Field with Validation
+        averageCountField.setText("16");
+        averageCountField.textProperty().addListener((obs, oldVal, newVal) -> {
+            try {
+                int count = Integer.parseInt(newVal);
+                if (count < 1 || count > 10000) {
+                    averageCountField.setText(oldVal);
+                    showAlert("Invalid Input", "Average count must be between 1 and 10000.");
+                } else {
+                    signalProcessor.getTraces().setAverageCount(count);
+                }
+            } catch (NumberFormatException e) {
+                if (!newVal.isEmpty()) {
+                    averageCountField.setText(oldVal);
+                    showAlert("Invalid Input", "Average count must be an integer.");
+                }
+            }
+        });
+
         // Channel Bandwidth Field with Validation
         channelBandwidthField.setText("1000");
         channelBandwidthField.textProperty().addListener((obs, oldVal, newVal) -> {
@@ -123,6 +241,10 @@ public class SpectrumAnalyzerController {
                     showAlert("Invalid Input", "Channel bandwidth must be positive.");
                 } else {
                     spectrumCanvas.setChannelBandwidth(bandwidth);
+                    if (channelFilterToggle.isSelected()) {
+                        signalProcessor.setChannelFilter(bandwidth);
+                    }
+                    updateChannelRaster();
                 }
             } catch (NumberFormatException e) {
                 if (!newVal.isEmpty()) {
@@ -142,6 +264,7 @@ public class SpectrumAnalyzerController {
                     showAlert("Invalid Input", "Channel count must be between 1 and 5.");
                 } else {
                     spectrumCanvas.setChannelCount(count);
+                    updateChannelRaster();
                 }
             } catch (NumberFormatException e) {
                 if (!newVal.isEmpty()) {
@@ -151,6 +274,56 @@ public class SpectrumAnalyzerController {
             }
         });
 
+        // Zero-Span Fields with Validation
+        zeroSpanRbwField.setText("10000");
+        zeroSpanRbwField.textProperty().addListener((obs, oldVal, newVal) -> {
+            try {
+                double rbw = Double.parseDouble(newVal);
+                if (rbw <= 0) {
+                    zeroSpanRbwField.setText(oldVal);
+                    showAlert("Invalid Input", "Zero-span RBW must be positive.");
+                } else {
+                    signalProcessor.getZeroSpan().setResolutionBandwidth(rbw);
+                }
+            } catch (NumberFormatException e) {
+                if (!newVal.isEmpty()) {
+                    zeroSpanRbwField.setText(oldVal);
+                    showAlert("Invalid Input", "Zero-span RBW must be a number.");
+                }
+            }
+        });
+        zeroSpanSweepField.setText("20");
+        zeroSpanSweepField.textProperty().addListener((obs, oldVal, newVal) -> {
+            try {
+                double sweep = Double.parseDouble(newVal);
+                if (sweep <= 0) {
+                    zeroSpanSweepField.setText(oldVal);
+                    showAlert("Invalid Input", "Zero-span sweep time must be positive.");
+                } else {
+                    signalProcessor.getZeroSpan().setSweepTime(sweep / 1000);
+                }
+            } catch (NumberFormatException e) {
+                if (!newVal.isEmpty()) {
+                    zeroSpanSweepField.setText(oldVal);
+                    showAlert("Invalid Input", "Zero-span sweep time must be a number.");
+                }
+            }
+        });
+        zeroSpanTriggerField.textProperty().addListener((obs, oldVal, newVal) -> {
+            if (newVal.isEmpty()) {
+                signalProcessor.getZeroSpan().setTriggerLevel(Double.NaN);
+                return;
+            }
+            try {
+                signalProcessor.getZeroSpan().setTriggerLevel(Double.parseDouble(newVal));
+            } catch (NumberFormatException e) {
+                if (!newVal.equals("-")) {
+                    zeroSpanTriggerField.setText(oldVal);
+                    showAlert("Invalid Input", "Trigger level must be a number, or empty to free run.");
+                }
+            }
+        });
+
         // Log Scale Toggle
         logScaleToggle.setOnAction(e -> spectrumCanvas.setLogScale(logScaleToggle.isSelected()));
 
@@ -160,6 +333,31 @@ public class SpectrumAnalyzerController {
         // Reset Button
         resetButton.setOnAction(e -> resetSettings());
 
+        // Record Toggle
+        recordToggle.setOnAction(e -> toggleRecording());
+        recordAudioToggle.setOnAction(e -> toggleAudioRecording());
+
+        // Playback Controls
+        openRecordingButton.setOnAction(e -> openRecording());
+        closeRecordingButton.setOnAction(e -> closeRecording());
+        playToggle.setOnAction(e -> {
+            if (playback != null) playback.setPlaying(playToggle.isSelected());
+        });
+        playbackSpeedSlider.setMin(-10.0);
+        playbackSpeedSlider.setMax(10.0);
+        playbackSpeedSlider.setValue(1.0);
+        playbackSpeedSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (playback != null) playback.setSpeed(newVal.doubleValue());
+        });
+        playbackPositionSlider.setMin(0.0);
+        playbackPositionSlider.setMax(1.0);
+        playbackPositionSlider.valueProperty().addListener((obs, oldVal, newVal) -> {
+            if (playback != null && (playbackPositionSlider.isValueChanging() || playbackPositionSlider.isPressed())) {
+                playback.seek(playback.getStartTime()
+                        + (long) (newVal.doubleValue() * (playback.getEndTime() - playback.getStartTime())));
+            }
+        });
+
         // Zoom/Pan Reset Button
         resetZoomButton.setOnAction(e -> resetZoomPan());
 
@@ -185,6 +383,69 @@ public class SpectrumAnalyzerController {
         signalTypeColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getSignalType()));
         metricsTable.setItems(spectrumCanvas.getMetricsData());
 
+        // Occupancy Fields with Validation
+        occupancyChannelsField.setText("64");
+        occupancyChannelsField.textProperty().addListener((obs, oldVal, newVal) -> {
+            try {
+                int count = Integer.parseInt(newVal);
+                if (count < 1 || count > 1024) {
+                    occupancyChannelsField.setText(oldVal);
+                    showAlert("Invalid Input", "Occupancy channels must be between 1 and 1024.");
+                } else {
+                    signalProcessor.getOccupancy().setChannelCount(count);
+                }
+            } catch (NumberFormatException e) {
+                if (!newVal.isEmpty()) {
+                    occupancyChannelsField.setText(oldVal);
+                    showAlert("Invalid Input", "Occupancy channels must be an integer.");
+                }
+            }
+        });
+        occupancyThresholdField.setText("-100");
+        occupancyThresholdField.textProperty().addListener((obs, oldVal, newVal) -> {
+            try {
+                signalProcessor.getOccupancy().setThreshold(Double.parseDouble(newVal));
+            } catch (NumberFormatException e) {
+                if (!newVal.isEmpty() && !newVal.equals("-")) {
+                    occupancyThresholdField.setText(oldVal);
+                    showAlert("Invalid Input", "Occupancy threshold must be a number.");
+                }
+            }
+        });
+
+        // Occupancy Table
+        occupancyFrequencyColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(cellData.getValue().getCenterFrequency()).asObject());
+        occupancyPowerColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(round(cellData.getValue().getPower())).asObject());
+        occupancyMinuteColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(round(100 * cellData.getValue().getMinuteOccupancy())).asObject());
+        occupancyHourColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(round(100 * cellData.getValue().getHourOccupancy())).asObject());
+        occupancyDayColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(round(100 * cellData.getValue().getDayOccupancy())).asObject());
+
+        // Burst Window Field with Validation
+        burstWindowField.setText("64");
+        burstWindowField.textProperty().addListener((obs, oldVal, newVal) -> {
+            try {
+                int rows = Integer.parseInt(newVal);
+                if (rows < 1 || rows > 1024) {
+                    burstWindowField.setText(oldVal);
+                    showAlert("Invalid Input", "Burst window must be between 1 and 1024 frames.");
+                } else {
+                    signalProcessor.getBurstTracker().setWindowRows(rows);
+                }
+            } catch (NumberFormatException e) {
+                if (!newVal.isEmpty()) {
+                    burstWindowField.setText(oldVal);
+                    showAlert("Invalid Input", "Burst window must be an integer.");
+                }
+            }
+        });
+
+        // Burst Table
+        burstCenterColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty((cellData.getValue().getLowFrequency() + cellData.getValue().getHighFrequency()) / 2).asObject());
+        burstCountColumn.setCellValueFactory(cellData -> new SimpleIntegerProperty(cellData.getValue().getBurstCount()).asObject());
+        burstHopRateColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(round(cellData.getValue().getHopRate())).asObject());
+        burstDwellColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(round(cellData.getValue().getDwellTime())).asObject());
+        burstBandwidthColumn.setCellValueFactory(cellData -> new SimpleDoubleProperty(cellData.getValue().getBandwidth()).asObject());
+
         // Animation Timer for Updates
         AnimationTimer timer = new AnimationTimer() {
             @Override
@@ -192,6 +453,8 @@ public class SpectrumAnalyzerController {
                 spectrumCanvas.update();
                 demodCanvas.update();
                 updateMetrics();
+                updatePlaybackStatus();
+                updateOccupancy(now);
             }
         };
         timer.start();
@@ -199,7 +462,30 @@ public class SpectrumAnalyzerController {
     }
 
     /**
-     * Updates channel power, ACPR, and signal type labels.
+     * Fills a trace mode ComboBox and connects it and its reset button to the trace store.
+     * @param trace The trace index.
+     * @param comboBox The trace mode ComboBox.
+     * @param resetButton The trace reset button.
+     */
+    private void setupTrace(int trace, ComboBox<String> comboBox, Button resetButton) {
+        comboBox.getItems().addAll("Off", "Clear/Write", "Max Hold", "Min Hold", "Average", "Log Average", "Video Average");
+        comboBox.setValue("Off");
+        comboBox.setOnAction(e -> signalProcessor.getTraces().setMode(trace, comboBox.getValue()));
+        resetButton.setOnAction(e -> signalProcessor.getTraces().reset(trace));
+    }
+
+    /**
+     * Formats a MER reading, showing the ceiling as a lower bound.
+     * @param mer The MER in dB.
+     * @return The formatted MER.
+     */
+    private static String formatMer(double mer) {
+        return mer >= ModulationQuality.MAX_MER_DB ? String.format("> %.0f dB", ModulationQuality.MAX_MER_DB)
+                : String.format("%.2f dB", mer);
+    }
+
+    /**
+     * Updates channel power, ACPR, EVM, MER, signal type and impulsive bin labels.
      */
     private void updateMetrics() {
         double channelPower = spectrumCanvas.getChannelPower();
@@ -207,8 +493,72 @@ public class SpectrumAnalyzerController {
         String signalType = signalProcessor.getSignalType();
         channelPowerLabel.setText(String.format("Channel Power: %.2f dBm", channelPower));
         acprLabel.setText(String.format("ACPR: %.2f dB", acpr));
+        ModulationQuality quality = signalProcessor.getModulationQuality();
+        if (quality.getSymbolCount() > 0) {
+            int worst = quality.getWorstClass();
+            evmLabel.setText(String.format("EVM: %.2f %% (avg %.2f %%, worst point %d: %.2f %%)",
+                    quality.getWindowEvm(), quality.getEvm(), worst, quality.getClassEvm(worst)));
+            merLabel.setText("MER: " + formatMer(quality.getWindowMer())
+                    + " (avg " + formatMer(quality.getMer()) + ")");
+        } else {
+            evmLabel.setText("EVM: --");
+            merLabel.setText("MER: --");
+        }
         signalTypeLabel.setText("Signal Type: " + signalType);
-        metricsTable.refresh();
+        SpectralKurtosis kurtosis = signalProcessor.getKurtosis();
+        impulsiveLabel.setText(kurtosis.isNoiseGaussian()
+                ? "Impulsive Bins: " + kurtosis.getImpulsiveCount() : "Impulsive Bins: --");
+    }
+
+    /**
+     * Refreshes the occupancy and burst tables about once per second.
+     * @param now The pulse timestamp in nanoseconds.
+     */
+    private void updateOccupancy(long now) {
+        if (now - lastOccupancyRefresh < 1_000_000_000L) return;
+        lastOccupancyRefresh = now;
+        occupancyTable.getItems().setAll(signalProcessor.getOccupancy().snapshot());
+        burstTable.getItems().setAll(signalProcessor.getBurstTracker().getTracks());
+    }
+
+    /**
+     * Converts a de-emphasis selection to its time constant.
+     * @param selection The selection ("Off", "50 us" or "75 us").
+     * @return The time constant in seconds, 0 for Off.
+     */
+    private static double deemphasisTimeConstant(String selection) {
+        switch (selection) {
+            case "50 us":
+                return 50e-6;
+            case "75 us":
+                return 75e-6;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Rounds a value to one decimal place for table display.
+     * @param value The value.
+     * @return The rounded value.
+     */
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /**
+     * Updates the playback position slider and label.
+     */
+    private void updatePlaybackStatus() {
+        if (playback == null) return;
+        long position = playback.getCurrentTime();
+        long duration = Math.max(1, playback.getEndTime() - playback.getStartTime());
+        if (!playbackPositionSlider.isValueChanging() && !playbackPositionSlider.isPressed()) {
+            playbackPositionSlider.setValue((double) (position - playback.getStartTime()) / duration);
+        }
+        playToggle.setSelected(playback.isPlaying());
+        playbackLabel.setText("Position: " + DateTimeFormatter.ofPattern("HH:mm:ss.SSS")
+                .format(Instant.ofEpochMilli(position).atZone(ZoneId.systemDefault())));
     }
 
     /**
@@ -243,6 +593,196 @@ public class SpectrumAnalyzerController {
         }
     }
 
+    /**
+     * Exports the visible part of the current trace to a CSV file, reduced by the display detector.
+     */
+    @FXML
+    private void exportTrace() {
+        SpectrumData data = signalProcessor.getSpectrumData();
+        double[] points = spectrumCanvas.getTracePoints(1001);
+        double visibleMin = spectrumCanvas.getVisibleMinFreq(data);
+        double pointWidth = (spectrumCanvas.getVisibleMaxFreq(data) - visibleMin) / points.length;
+        try (FileWriter writer = new FileWriter("trace.csv")) {
+            writer.write("Frequency (Hz),Amplitude (dBm)\n");
+            for (int i = 0; i < points.length; i++) {
+                if (Double.isNaN(points[i])) continue;
+                writer.write(String.format("%.2f,%.2f\n", visibleMin + (i + 0.5) * pointWidth, points[i]));
+            }
+            showAlert("Success", "Trace exported to trace.csv");
+        } catch (IOException e) {
+            showAlert("Error", "Failed to export trace: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a band plan CSV file and uses it for classification and band overlays.
+     */
+    @FXML
+    private void loadBandPlan() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Load Band Plan");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File selected = chooser.showOpenDialog(canvasContainer.getScene().getWindow());
+        if (selected == null) return;
+        try {
+            BandPlan plan = BandPlan.load(selected.toPath());
+            signalProcessor.setBandPlan(plan);
+            spectrumCanvas.update();
+            showAlert("Success", "Loaded " + plan.size() + " bands from " + selected.getName());
+        } catch (IOException e) {
+            showAlert("Error", "Failed to load band plan: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Exports the occupancy statistics of every channel to a CSV file.
+     */
+    @FXML
+    private void exportOccupancy() {
+        List<ChannelOccupancy> rows = signalProcessor.getOccupancy().snapshot();
+        try (FileWriter writer = new FileWriter("occupancy.csv")) {
+            writer.write("Channel,Center (Hz),Bandwidth (Hz),Power (dBm),Minute (%),Hour (%),Day (%),Total (%)\n");
+            for (ChannelOccupancy row : rows) {
+                writer.write(String.format("%d,%.2f,%.2f,%.2f,%.1f,%.1f,%.1f,%.1f\n", row.getChannel(),
+                        row.getCenterFrequency(), row.getBandwidth(), row.getPower(), 100 * row.getMinuteOccupancy(),
+                        100 * row.getHourOccupancy(), 100 * row.getDayOccupancy(), 100 * row.getTotalOccupancy()));
+            }
+            showAlert("Success", "Occupancy exported to occupancy.csv");
+        } catch (IOException e) {
+            showAlert("Error", "Failed to export occupancy: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Starts or stops recording of published spectrum frames.
+     */
+    @FXML
+    private void toggleRecording() {
+        if (recordToggle.isSelected()) {
+            String name = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            recorder = new SpectrumRecorder(Path.of("recordings", name));
+            try {
+                recorder.start();
+                signalProcessor.setRecorder(recorder);
+            } catch (IOException e) {
+                recorder = null;
+                recordToggle.setSelected(false);
+                showAlert("Error", "Failed to start recording: " + e.getMessage());
+            }
+        } else if (recorder != null) {
+            signalProcessor.setRecorder(null);
+            recorder.stop();
+            if (recorder.getLastError() != null) {
+                showAlert("Error", "Recording failed: " + recorder.getLastError().getMessage());
+            } else {
+                showAlert("Success", String.format("Recorded %d frames (%d dropped) to %s",
+                        recorder.getRecordedFrames(), recorder.getDroppedFrames(), recorder.getDirectory()));
+            }
+            recorder = null;
+        }
+    }
+
+    /**
+     * Starts or stops recording of the demodulated audio to a WAV file.
+     */
+    @FXML
+    private void toggleAudioRecording() {
+        if (recordAudioToggle.isSelected()) {
+            String name = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            audioPath = Path.of("recordings", "audio-" + name + ".wav");
+            audioOutput = new AudioOutput(new WavFileSink(audioPath), (int) signalProcessor.getDemodSampleRate());
+            try {
+                Files.createDirectories(audioPath.getParent());
+                audioOutput.start();
+                signalProcessor.setAudioOutput(audioOutput);
+            } catch (IOException e) {
+                audioOutput = null;
+                recordAudioToggle.setSelected(false);
+                showAlert("Error", "Failed to start audio recording: " + e.getMessage());
+            }
+        } else if (audioOutput != null) {
+            signalProcessor.setAudioOutput(null);
+            audioOutput.stop();
+            if (audioOutput.getLastError() != null) {
+                showAlert("Error", "Audio recording failed: " + audioOutput.getLastError().getMessage());
+            } else {
+                showAlert("Success", String.format("Recorded %.1f s of audio (%d blocks dropped) to %s",
+                        (double) audioOutput.getWrittenSamples() / AudioOutput.OUTPUT_RATE,
+                        audioOutput.getDroppedBlocks(), audioPath));
+            }
+            audioOutput = null;
+        }
+    }
+
+    /**
+     * Opens a recording directory and switches the display to playback.
+     */
+    @FXML
+    private void openRecording() {
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Open Recording");
+        File recordingsDir = new File("recordings");
+        if (recordingsDir.isDirectory()) {
+            chooser.setInitialDirectory(recordingsDir);
+        }
+        File selected = chooser.showDialog(canvasContainer.getScene().getWindow());
+        if (selected == null) return;
+        try {
+            SpectrumPlayback opened = new SpectrumPlayback(selected.toPath());
+            closeRecording();
+            playback = opened;
+            playback.setSpeed(playbackSpeedSlider.getValue());
+            signalProcessor.setPlayback(playback);
+            spectrumCanvas.resetZoomPan();
+        } catch (IOException e) {
+            showAlert("Error", "Failed to open recording: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes the open recording and returns to live data.
+     */
+    @FXML
+    private void closeRecording() {
+        if (playback == null) return;
+        signalProcessor.setPlayback(null);
+        playback.close();
+        playback = null;
+        playToggle.setSelected(false);
+        playbackPositionSlider.setValue(0.0);
+        playbackLabel.setText("Position: Live");
+    }
+
+    /**
+     * Applies the channel bandwidth to the demodulation channel filter if the filter is switched on.
+     */
+    private void updateChannelFilter() {
+        double bandwidth = 0;
+        if (channelFilterToggle.isSelected()) {
+            try {
+                bandwidth = Double.parseDouble(channelBandwidthField.getText());
+            } catch (NumberFormatException e) {
+                showAlert("Invalid Input", "Channel bandwidth must be a number.");
+                channelFilterToggle.setSelected(false);
+            }
+        }
+        signalProcessor.setChannelFilter(bandwidth);
+    }
+
+    /**
+     * Applies the channel bandwidth and count to the channelizer, which demodulates the channels side by
+     * side when there are at least two.
+     */
+    private void updateChannelRaster() {
+        try {
+            double bandwidth = Double.parseDouble(channelBandwidthField.getText());
+            int count = Integer.parseInt(channelCountField.getText());
+            signalProcessor.setChannelRaster(bandwidth, count);
+        } catch (NumberFormatException e) {
+            // The field listeners report the invalid value
+        }
+    }
+
     /**
      * Resets all settings to default values.
      */
@@ -255,10 +795,28 @@ public class SpectrumAnalyzerController {
         analysisModeComboBox.setValue("FFT");
         windowComboBox.setValue("Hanning");
         demodulationComboBox.setValue("None");
+        deemphasisComboBox.setValue("Off");
+        demodViewComboBox.setValue("Waveform");
+        channelFilterToggle.setSelected(false);
+        detectorComboBox.setValue("CA");
         channelBandwidthField.setText("1000");
         channelCountField.setText("1");
+        zeroSpanRbwField.setText("10000");
+        zeroSpanSweepField.setText("20");
+        zeroSpanTriggerField.setText("");
         logScaleToggle.setSelected(false);
         gridToggle.setSelected(true);
+        noiseFloorToggle.setSelected(false);
+        traceDetectorComboBox.setValue("Peak");
+        bandsToggle.setSelected(false);
+        kurtosisToggle.setSelected(false);
+        trace1ComboBox.setValue("Off");
+        trace2ComboBox.setValue("Off");
+        trace3ComboBox.setValue("Off");
+        averageCountField.setText("16");
+        occupancyChannelsField.setText("64");
+        occupancyThresholdField.setText("-100");
+        burstWindowField.setText("64");
         gridSpacingSlider.setValue(10);
         annotationTextField.setText("");
         signalProcessor.setFrequencyRange(20, 1000);
@@ -266,11 +824,27 @@ public class SpectrumAnalyzerController {
         signalProcessor.setAnalysisMode("FFT");
         signalProcessor.setWindowFunction("Hanning");
         signalProcessor.setDemodulationType("None");
+        signalProcessor.setDeemphasis(0);
+        demodCanvas.setMode("Waveform");
+        signalProcessor.setChannelFilter(0);
+        signalProcessor.setChannelRaster(1000, 1);
+        signalProcessor.getZeroSpan().setResolutionBandwidth(10000);
+        signalProcessor.getZeroSpan().setSweepTime(0.02);
+        signalProcessor.getZeroSpan().setTriggerLevel(Double.NaN);
+        signalProcessor.setDetectorMode("CA");
+        for (int trace = 0; trace < TraceStore.TRACE_COUNT; trace++) {
+            signalProcessor.getTraces().setMode(trace, "Off");
+        }
+        signalProcessor.getTraces().setAverageCount(16);
         spectrumCanvas.setChannelBandwidth(1000);
         spectrumCanvas.setChannelCount(1);
         spectrumCanvas.setDynamicRange(160);
         spectrumCanvas.setLogScale(false);
         spectrumCanvas.setGridVisible(true);
+        spectrumCanvas.setNoiseFloorVisible(false);
+        spectrumCanvas.setTraceDetector("Peak");
+        spectrumCanvas.setBandsVisible(false);
+        spectrumCanvas.setKurtosisVisible(false);
         spectrumCanvas.setGridSpacing(10);
         spectrumCanvas.resetZoomPan();
         spectrumCanvas.clearMarkers();
@@ -4,14 +4,18 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.paint.Color;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Canvas for rendering the signal spectrum with zoom, pan, markers, peaks, grid, and annotations.
  */
 public class SpectrumCanvas extends Canvas {
+    private static final Color[] TRACE_COLORS = {Color.ORANGE, Color.MAGENTA, Color.DEEPSKYBLUE};
     private final SignalProcessor signalProcessor;
     private double dynamicRange = 160.0;
     private double channelBandwidth = 1000.0;
@@ -20,14 +24,25 @@ public class SpectrumCanvas extends Canvas {
     private String displayMode = "Spectrum";
     private final double[][] persistenceBuffer;
     private int persistenceIndex = 0;
-    private final double[] lastAmplitudes;
     private double zoomFactor = 1.0;
     private double offsetX = 0.0;
     private boolean gridVisible = true;
+    private boolean noiseFloorVisible = false;
+    private boolean bandsVisible = false;
+    private boolean kurtosisVisible = false;
+    private final TraceDetector kurtosisDetector = new TraceDetector();
+    private double[] traceBuffer = new double[0];
+    private final TraceDetector traceDetector = new TraceDetector();
+    private double[] displayPoints = new double[0];
+    private double[] tracePoints = new double[0];
+    private double[] zeroSpanPoints = new double[0];
     private int gridSpacing = 10;
     private final List<Marker> markers = new ArrayList<>();
     private final List<Annotation> annotations = new ArrayList<>();
     private final ObservableList<Marker> metricsData = FXCollections.observableArrayList();
+    private int[] imagePixels = new int[0];
+    private final Map<Integer, Marker> peakMarkers = new HashMap<>();
+    private final PeakEngine peakEngine;
 
     /**
      * Constructs a SpectrumCanvas with specified dimensions and processor.
@@ -39,7 +54,28 @@ public class SpectrumCanvas extends Canvas {
         super(width, height);
         this.signalProcessor = processor;
         this.persistenceBuffer = new double[400][16384];
-        this.lastAmplitudes = new double[16384];
+        this.peakEngine = new PeakEngine(processor::getSignalTypeAtFrequency, new PeakEngine.Listener() {
+            @Override
+            public void peakAdded(PeakEngine.Peak peak) {
+                Marker marker = toMarker(peak);
+                peakMarkers.put(peak.getId(), marker);
+                metricsData.add(marker);
+            }
+
+            @Override
+            public void peakUpdated(PeakEngine.Peak peak) {
+                Marker marker = toMarker(peak);
+                int index = metricsData.indexOf(peakMarkers.put(peak.getId(), marker));
+                if (index >= 0) {
+                    metricsData.set(index, marker);
+                }
+            }
+
+            @Override
+            public void peakRemoved(PeakEngine.Peak peak) {
+                metricsData.remove(peakMarkers.remove(peak.getId()));
+            }
+        });
         // Zoom and Pan event handlers
         setOnScroll(event -> {
             double delta = event.getDeltaY() > 0 ? 1.1 : 0.9;
@@ -53,7 +89,9 @@ public class SpectrumCanvas extends Canvas {
             update();
         });
         setOnMouseClicked(event -> {
-            if (event.getClickCount() == 2) {
+            if (displayMode.equals("Overview")) {
+                seekOverview(event.getY());
+            } else if (event.getClickCount() == 2) {
                 double freq = pixelToFrequency(event.getX());
                 addMarker(freq);
             }
@@ -97,11 +135,12 @@ public class SpectrumCanvas extends Canvas {
     }
 
     /**
-     * Sets the display mode (Spectrum or Persistence).
+     * Sets the display mode (Spectrum, Persistence, Waterfall, Overview or Zero Span).
      * @param mode The display mode.
      */
     public void setDisplayMode(String mode) {
         this.displayMode = mode;
+        signalProcessor.setZeroSpanActive(mode.equals("Zero Span"));
         update();
     }
 
@@ -114,6 +153,42 @@ public class SpectrumCanvas extends Canvas {
         update();
     }
 
+    /**
+     * Sets the visibility of the noise floor trace.
+     * @param visible True to show the noise floor, false to hide.
+     */
+    public void setNoiseFloorVisible(boolean visible) {
+        this.noiseFloorVisible = visible;
+        update();
+    }
+
+    /**
+     * Sets the visibility of the spectral kurtosis trace.
+     * @param visible True to show the kurtosis strip and impulsive bins, false to hide.
+     */
+    public void setKurtosisVisible(boolean visible) {
+        this.kurtosisVisible = visible;
+        update();
+    }
+
+    /**
+     * Sets the visibility of the band plan overlay.
+     * @param visible True to show the bands of the visible span, false to hide.
+     */
+    public void setBandsVisible(boolean visible) {
+        this.bandsVisible = visible;
+        update();
+    }
+
+    /**
+     * Sets the display detector that reduces bins to trace points (Peak, Sample, Average, RMS or Negative Peak).
+     * @param mode The detector mode.
+     */
+    public void setTraceDetector(String mode) {
+        traceDetector.setMode(mode);
+        update();
+    }
+
     /**
      * Sets the grid spacing (number of lines).
      * @param spacing The number of grid lines.
@@ -193,13 +268,29 @@ public class SpectrumCanvas extends Canvas {
         GraphicsContext gc = getGraphicsContext2D();
         gc.setFill(Color.BLACK);
         gc.fillRect(0, 0, getWidth(), getHeight());
+        if (displayMode.equals("Overview")) {
+            drawOverview(gc);
+            drawAnnotations(gc);
+            return;
+        }
+        if (displayMode.equals("Zero Span")) {
+            drawZeroSpan(gc);
+            drawAnnotations(gc);
+            return;
+        }
         SpectrumData data = signalProcessor.getSpectrumData();
 
         if (displayMode.equals("Persistence")) {
             drawPersistence(gc, data);
+        } else if (displayMode.equals("Waterfall")) {
+            drawWaterfall(gc, data);
         } else {
             drawSpectrum(gc, data);
+            drawTraces(gc, data);
+            drawNoiseFloor(gc, data);
+            drawKurtosis(gc, data);
         }
+        drawBands(gc, data);
         drawGrid(gc, data);
         drawChannels(gc, data);
         drawMarkers(gc, data);
@@ -212,26 +303,201 @@ public class SpectrumCanvas extends Canvas {
      * @param data The spectrum data.
      */
     private void drawSpectrum(GraphicsContext gc, SpectrumData data) {
-        double[] amplitudes = data.getAmplitudes();
-        System.arraycopy(amplitudes, 0, lastAmplitudes, 0, amplitudes.length);
-        gc.setStroke(Color.YELLOW);
+        int width = (int) getWidth();
+        if (displayPoints.length != width) {
+            displayPoints = new double[width];
+        }
+        reduceVisible(data.getAmplitudes(), data, displayPoints);
+        strokePoints(gc, displayPoints, Color.YELLOW);
+        detectPeaks(data);
+    }
+
+    /**
+     * Draws every active trace of the trace store.
+     * @param gc The graphics context.
+     * @param data The spectrum data.
+     */
+    private void drawTraces(GraphicsContext gc, SpectrumData data) {
+        TraceStore traces = signalProcessor.getTraces();
+        for (int t = 0; t < TraceStore.TRACE_COUNT; t++) {
+            double[] trace = traceBuffer(traces.getBinCount());
+            if (trace.length > 0 && traces.copyTrace(t, trace)) {
+                strokeTrace(gc, trace, data, TRACE_COLORS[t]);
+            }
+        }
+    }
+
+    /**
+     * Draws the running noise floor estimate as a trace.
+     * @param gc The graphics context.
+     * @param data The spectrum data.
+     */
+    private void drawNoiseFloor(GraphicsContext gc, SpectrumData data) {
+        if (!noiseFloorVisible) return;
+        NoiseFloorEstimator estimator = signalProcessor.getNoiseFloor();
+        double[] trace = traceBuffer(estimator.getBinCount());
+        if (trace.length > 0 && estimator.copyTrace(trace)) {
+            strokeTrace(gc, trace, data, Color.LIMEGREEN);
+        }
+    }
+
+    /**
+     * Draws the spectral kurtosis as a trace in a strip along the bottom of the plot, with its detection
+     * thresholds, and marks the impulsive pixel columns in red while the input looks like Gaussian noise. The
+     * strip spans SK from 0 to 4.
+     * @param gc The graphics context.
+     * @param data The spectrum data.
+     */
+    private void drawKurtosis(GraphicsContext gc, SpectrumData data) {
+        if (!kurtosisVisible) return;
+        SpectralKurtosis kurtosis = signalProcessor.getKurtosis();
+        double[] trace = traceBuffer(kurtosis.getBinCount());
+        if (trace.length == 0 || !kurtosis.copyTrace(trace)) return;
+        int width = (int) getWidth();
+        if (tracePoints.length != width) {
+            tracePoints = new double[width];
+        }
+        kurtosisDetector.reduce(trace, data.getMinFreq(), data.getMaxFreq(),
+                getVisibleMinFreq(data), getVisibleMaxFreq(data), tracePoints);
+        double height = getHeight();
+        double stripHeight = height / 4;
+        double yScale = stripHeight / 4;
+        double upper = kurtosis.getUpperThreshold();
+        gc.setStroke(Color.GRAY);
+        gc.setLineWidth(1.0);
+        gc.setLineDashes(4);
+        gc.strokeLine(0, height - upper * yScale, width, height - upper * yScale);
+        gc.strokeLine(0, height - kurtosis.getLowerThreshold() * yScale, width,
+                height - kurtosis.getLowerThreshold() * yScale);
+        gc.setLineDashes(null);
+        gc.setFill(Color.GRAY);
+        boolean gaussian = kurtosis.isNoiseGaussian();
+        gc.fillText(gaussian ? "SK" : "SK (noise not Gaussian)", 5, height - stripHeight + 12);
+        gc.setStroke(Color.CYAN);
+        gc.beginPath();
+        boolean drawing = false;
+        for (int i = 0; i < width; i++) {
+            double sk = tracePoints[i];
+            if (Double.isNaN(sk)) {
+                drawing = false;
+                continue;
+            }
+            double y = height - Math.min(sk, 4) * yScale;
+            if (drawing) {
+                gc.lineTo(i + 0.5, y);
+            } else {
+                gc.moveTo(i + 0.5, y);
+                drawing = true;
+            }
+        }
+        gc.stroke();
+        if (!gaussian) return;
+        gc.setStroke(Color.RED);
+        for (int i = 0; i < width; i++) {
+            if (tracePoints[i] > upper) {
+                gc.strokeLine(i + 0.5, 0, i + 0.5, 6);
+            }
+        }
+    }
+
+    /**
+     * Reduces a full-span trace to display points and strokes it.
+     * @param gc The graphics context.
+     * @param trace The values per bin in dBm.
+     * @param data The spectrum data the trace belongs to.
+     * @param color The trace color.
+     */
+    private void strokeTrace(GraphicsContext gc, double[] trace, SpectrumData data, Color color) {
+        int width = (int) getWidth();
+        if (tracePoints.length != width) {
+            tracePoints = new double[width];
+        }
+        reduceVisible(trace, data, tracePoints);
+        strokePoints(gc, tracePoints, color);
+    }
+
+    /**
+     * Strokes one value per pixel column, leaving gaps where a value is NaN.
+     * @param gc The graphics context.
+     * @param points The values in dBm.
+     * @param color The trace color.
+     */
+    private void strokePoints(GraphicsContext gc, double[] points, Color color) {
+        gc.setStroke(color);
         gc.setLineWidth(1.0);
-        double width = getWidth();
         double height = getHeight();
-        double xScale = width / amplitudes.length;
+        double xScale = getWidth() / points.length;
         double yScale = height / dynamicRange;
         gc.beginPath();
-        for (int i = 0; i < amplitudes.length; i++) {
-            double x = i * xScale;
-            double y = height - (amplitudes[i] + dynamicRange) * yScale;
-            if (i == 0) {
-                gc.moveTo(x, y);
-            } else {
+        boolean drawing = false;
+        for (int i = 0; i < points.length; i++) {
+            if (Double.isNaN(points[i])) {
+                drawing = false;
+                continue;
+            }
+            double x = (i + 0.5) * xScale;
+            double y = height - (points[i] + dynamicRange) * yScale;
+            if (drawing) {
                 gc.lineTo(x, y);
+            } else {
+                gc.moveTo(x, y);
+                drawing = true;
             }
         }
         gc.stroke();
-        detectPeaks(data);
+    }
+
+    /**
+     * Reduces the visible frequency range of a trace to points with the display detector.
+     * @param values The values per bin in dBm.
+     * @param data The spectrum data the values belong to.
+     * @param points Receives the point values in dBm.
+     */
+    private void reduceVisible(double[] values, SpectrumData data, double[] points) {
+        traceDetector.reduce(values, data.getMinFreq(), data.getMaxFreq(),
+                getVisibleMinFreq(data), getVisibleMaxFreq(data), points);
+    }
+
+    /**
+     * Reduces the visible part of the current frame to trace points with the display detector.
+     * @param count The number of points.
+     * @return The point values in dBm; NaN where a point lies outside the frame.
+     */
+    public double[] getTracePoints(int count) {
+        SpectrumData data = signalProcessor.getSpectrumData();
+        double[] points = new double[count];
+        reduceVisible(data.getAmplitudes(), data, points);
+        return points;
+    }
+
+    /**
+     * Gets the frequency at the left edge of the plot, taking zoom and pan into account.
+     * @param data The spectrum data.
+     * @return The frequency in Hz.
+     */
+    public double getVisibleMinFreq(SpectrumData data) {
+        return data.getMinFreq() + offsetX * (data.getMaxFreq() - data.getMinFreq());
+    }
+
+    /**
+     * Gets the frequency at the right edge of the plot, taking zoom and pan into account.
+     * @param data The spectrum data.
+     * @return The frequency in Hz.
+     */
+    public double getVisibleMaxFreq(SpectrumData data) {
+        return getVisibleMinFreq(data) + (data.getMaxFreq() - data.getMinFreq()) / zoomFactor;
+    }
+
+    /**
+     * Gets the reusable trace buffer.
+     * @param size The number of bins.
+     * @return The trace buffer.
+     */
+    private double[] traceBuffer(int size) {
+        if (traceBuffer.length != size) {
+            traceBuffer = new double[size];
+        }
+        return traceBuffer;
     }
 
     /**
@@ -261,6 +527,189 @@ public class SpectrumCanvas extends Canvas {
         }
     }
 
+    /**
+     * Draws the frame history as a waterfall, newest frame at the top, reading rows off-heap. The columns
+     * cover the same visible frequency range as the spectrum trace.
+     * @param gc The graphics context.
+     * @param data The spectrum data; the history is cleared whenever the span changes, so it shares its span.
+     */
+    private void drawWaterfall(GraphicsContext gc, SpectrumData data) {
+        FrameHistory history = signalProcessor.getHistory();
+        int width = (int) getWidth();
+        int rows = Math.min((int) getHeight(), history.size());
+        int bins = history.getBinCount();
+        if (rows == 0) return;
+        int[] columnFrom = new int[width];
+        int[] columnTo = new int[width];
+        double span = data.getMaxFreq() - data.getMinFreq();
+        double visibleMin = getVisibleMinFreq(data);
+        double columnWidth = (getVisibleMaxFreq(data) - visibleMin) / width;
+        for (int x = 0; x < width; x++) {
+            double left = visibleMin + x * columnWidth - data.getMinFreq();
+            int from = (int) Math.floor(left * bins / span);
+            int to = Math.max(from + 1, (int) Math.floor((left + columnWidth) * bins / span));
+            columnFrom[x] = Math.max(0, from);
+            columnTo[x] = Math.min(bins, to);
+        }
+        int[] pixels = imagePixels(width * rows);
+        for (int y = 0; y < rows; y++) {
+            for (int x = 0; x < width; x++) {
+                // Columns panned beyond either end of the span stay black
+                if (columnFrom[x] >= columnTo[x]) {
+                    pixels[y * width + x] = 0xFF000000;
+                    continue;
+                }
+                double amplitude = history.getMax(y, columnFrom[x], columnTo[x]);
+                pixels[y * width + x] = heatColor((amplitude + dynamicRange) / dynamicRange);
+            }
+        }
+        gc.getPixelWriter().setPixels(0, 0, width, rows, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    }
+
+    /**
+     * Draws the overview of the open recording as a waterfall, oldest rows at the top.
+     * @param gc The graphics context.
+     */
+    private void drawOverview(GraphicsContext gc) {
+        SpectrumPlayback playback = signalProcessor.getPlayback();
+        RecordingOverview overview = playback == null ? null : playback.getOverview();
+        int width = (int) getWidth();
+        int height = (int) getHeight();
+        int level = overview == null ? -1 : overview.chooseLevel(height);
+        if (level < 0) {
+            gc.setFill(Color.YELLOW);
+            gc.fillText("No recording overview available", 10, 20);
+            return;
+        }
+        int rows = overview.getRowCount(level);
+        int pixelRows = Math.min(height, rows);
+        int[] pixels = imagePixels(width * pixelRows);
+        for (int y = 0; y < pixelRows; y++) {
+            int row = (int) ((long) y * rows / pixelRows);
+            for (int x = 0; x < width; x++) {
+                int column = x * RecordingOverview.COLUMNS / width;
+                double amplitude = overview.getMax(level, row, column);
+                pixels[y * width + x] = heatColor((amplitude + dynamicRange) / dynamicRange);
+            }
+        }
+        gc.getPixelWriter().setPixels(0, 0, width, pixelRows, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        int currentRow = overview.findRow(level, playback.getCurrentTime());
+        double y = (double) currentRow * pixelRows / rows;
+        gc.setStroke(Color.CYAN);
+        gc.setLineWidth(1.0);
+        gc.strokeLine(0, y, width, y);
+    }
+
+    /**
+     * Tunes the zero-span measurement to the most recent marker, or to the span centre without markers.
+     * The span centre is the IQ centre, so the marker is tuned as an offset from it.
+     * @param centerFreq The frequency at the centre of the span in Hz.
+     */
+    private void tuneZeroSpan(double centerFreq) {
+        double frequency = markers.isEmpty() ? centerFreq : markers.get(markers.size() - 1).getFrequency();
+        signalProcessor.getZeroSpan().setFrequency(frequency - centerFreq);
+    }
+
+    /**
+     * Draws the zero-span power against time, one column per pixel, with the sweep position and the
+     * trigger level.
+     * @param gc The graphics context.
+     */
+    private void drawZeroSpan(GraphicsContext gc) {
+        // Fetching a frame is what advances the simulated IQ stream by one block
+        SpectrumData data = signalProcessor.getSpectrumData();
+        double centerFreq = (data.getMinFreq() + data.getMaxFreq()) / 2;
+        tuneZeroSpan(centerFreq);
+        ZeroSpan zeroSpan = signalProcessor.getZeroSpan();
+        int width = (int) getWidth();
+        double height = getHeight();
+        if (zeroSpanPoints.length != width) {
+            zeroSpanPoints = new double[width];
+        }
+        zeroSpan.setColumns(width);
+        int position = zeroSpan.copyTrace(zeroSpanPoints);
+        if (gridVisible) {
+            gc.setStroke(Color.DARKGRAY);
+            gc.setLineWidth(0.5);
+            double sweepTime = zeroSpan.getSweepTime();
+            for (int i = 0; i <= gridSpacing; i++) {
+                double x = i * width / (double) gridSpacing;
+                gc.strokeLine(x, 0, x, height);
+                gc.setFill(Color.YELLOW);
+                gc.fillText(String.format("%.2f ms", i * sweepTime * 1000 / gridSpacing), x, height - 10);
+            }
+            for (int i = 0; i <= gridSpacing / 2; i++) {
+                double amp = -dynamicRange + i * dynamicRange / (gridSpacing / 2);
+                double y = height - i * height / (gridSpacing / 2);
+                gc.strokeLine(0, y, width, y);
+                gc.setFill(Color.YELLOW);
+                gc.fillText(String.format("%.0f dB", amp), 10, y - 5);
+            }
+        }
+        strokePoints(gc, zeroSpanPoints, Color.YELLOW);
+        gc.setLineWidth(1.0);
+        if (zeroSpan.isWaitingForTrigger()) {
+            double level = zeroSpan.getTriggerLevel();
+            double y = height - (level + dynamicRange) * height / dynamicRange;
+            gc.setStroke(Color.ORANGE);
+            gc.strokeLine(0, y, width, y);
+        } else {
+            gc.setStroke(Color.CYAN);
+            gc.strokeLine(position + 0.5, 0, position + 0.5, height);
+        }
+        gc.setFill(Color.CYAN);
+        gc.fillText(String.format("Zero span at %.2f Hz, RBW %.0f Hz%s", centerFreq + zeroSpan.getFrequency(),
+                zeroSpan.getResolutionBandwidth(), zeroSpan.isWaitingForTrigger() ? ", waiting for trigger" : ""), 10, 20);
+    }
+
+    /**
+     * Seeks the playback to the overview row under a pixel y-coordinate.
+     * @param y The y-coordinate.
+     */
+    private void seekOverview(double y) {
+        SpectrumPlayback playback = signalProcessor.getPlayback();
+        RecordingOverview overview = playback == null ? null : playback.getOverview();
+        int level = overview == null ? -1 : overview.chooseLevel((int) getHeight());
+        if (level < 0) return;
+        int rows = overview.getRowCount(level);
+        int pixelRows = Math.min((int) getHeight(), rows);
+        int row = Math.max(0, Math.min(rows - 1, (int) (y * rows / pixelRows)));
+        playback.seek(overview.getStartTime(level, row));
+        update();
+    }
+
+    /**
+     * Gets a reusable ARGB pixel buffer of at least the specified size.
+     * @param size The number of pixels.
+     * @return The pixel buffer.
+     */
+    private int[] imagePixels(int size) {
+        if (imagePixels.length < size) {
+            imagePixels = new int[size];
+        }
+        return imagePixels;
+    }
+
+    /**
+     * Maps a normalized level to an ARGB heat-map color (black, blue, green, yellow, red).
+     * @param level The level in the range 0 to 1; values outside are clamped.
+     * @return The ARGB color.
+     */
+    static int heatColor(double level) {
+        double v = Math.max(0.0, Math.min(level, 1.0)) * 4.0;
+        int r, g, b;
+        if (v < 1.0) {
+            r = 0; g = 0; b = (int) (255 * v);
+        } else if (v < 2.0) {
+            r = 0; g = (int) (255 * (v - 1.0)); b = (int) (255 * (2.0 - v));
+        } else if (v < 3.0) {
+            r = (int) (255 * (v - 2.0)); g = 255; b = 0;
+        } else {
+            r = 255; g = (int) (255 * (4.0 - v)); b = 0;
+        }
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
     /**
      * Draws the grid and labels.
      * @param gc The graphics context.
@@ -290,6 +739,32 @@ public class SpectrumCanvas extends Canvas {
         }
     }
 
+    /**
+     * Draws the band plan entries that overlap the visible span as shaded regions with labels.
+     * @param gc The graphics context.
+     * @param data The spectrum data.
+     */
+    private void drawBands(GraphicsContext gc, SpectrumData data) {
+        if (!bandsVisible) return;
+        BandPlan plan = signalProcessor.getBandPlan();
+        double visibleMin = getVisibleMinFreq(data);
+        double visibleMax = getVisibleMaxFreq(data);
+        double width = getWidth();
+        double height = getHeight();
+        double xScale = width / (visibleMax - visibleMin);
+        int[] drawn = {0};
+        plan.query(visibleMin, visibleMax, band -> {
+            double x1 = Math.max(0, (plan.getStart(band) - visibleMin) * xScale);
+            double x2 = Math.min(width, (plan.getStop(band) - visibleMin) * xScale);
+            gc.setFill(Color.rgb(80, 140, 255, 0.12));
+            gc.fillRect(x1, 0, Math.max(1, x2 - x1), height);
+            if (x2 - x1 > 40) {
+                gc.setFill(Color.LIGHTSKYBLUE);
+                gc.fillText(plan.getLabel(band), x1 + 3, 35 + 14 * (drawn[0]++ % 4));
+            }
+        });
+    }
+
     /**
      * Draws channel markers.
      * @param gc The graphics context.
@@ -302,7 +777,7 @@ public class SpectrumCanvas extends Canvas {
         double freqRange = (data.getMaxFreq() - data.getMinFreq()) / zoomFactor;
         double centerFreq = data.getMinFreq() + offsetX * (data.getMaxFreq() - data.getMinFreq()) + freqRange / 2;
         for (int i = 0; i < channelCount; i++) {
-            double channelCenter = centerFreq + (i - channelCount / 2.0) * channelBandwidth;
+            double channelCenter = centerFreq + ChannelBank.rasterOffset(i, channelCount) * channelBandwidth;
             double x1 = ((channelCenter - channelBandwidth / 2 - data.getMinFreq()) / freqRange) * width;
             double x2 = ((channelCenter + channelBandwidth / 2 - data.getMinFreq()) / freqRange) * width;
             gc.strokeLine(x1, 0, x1, getHeight());
@@ -320,11 +795,26 @@ public class SpectrumCanvas extends Canvas {
         gc.setFill(Color.CYAN);
         gc.setLineWidth(1.0);
         double width = getWidth();
-        double freqRange = (data.getMaxFreq() - data.getMinFreq()) / zoomFactor;
+        double visibleMin = getVisibleMinFreq(data);
+        double freqRange = getVisibleMaxFreq(data) - visibleMin;
+        NoiseFloorEstimator estimator = signalProcessor.getNoiseFloor();
+        double freqStep = (data.getMaxFreq() - data.getMinFreq()) / data.getSize();
         for (Marker marker : markers) {
-            double x = ((marker.getFrequency() - data.getMinFreq()) / freqRange) * width;
+            double x = ((marker.getFrequency() - visibleMin) / freqRange) * width;
             gc.strokeLine(x, 0, x, getHeight());
-            gc.fillText(String.format("%.2f Hz, %.2f dBm", marker.getFrequency(), marker.getAmplitude()), x + 5, 20);
+            // Read the marker from the displayed trace point so it agrees with the plot and the export
+            int point = (int) Math.floor(x * displayPoints.length / width);
+            double amplitude = marker.getAmplitude();
+            if (displayMode.equals("Spectrum") && point >= 0 && point < displayPoints.length
+                    && !Double.isNaN(displayPoints[point])) {
+                amplitude = displayPoints[point];
+            }
+            String label = String.format("%.2f Hz, %.2f dBm", marker.getFrequency(), amplitude);
+            double floor = estimator.getNoiseFloor((int) ((marker.getFrequency() - data.getMinFreq()) / freqStep));
+            if (!Double.isNaN(floor)) {
+                label += String.format(", SNR %.1f dB", amplitude - floor);
+            }
+            gc.fillText(label, x + 5, 20);
         }
     }
 
@@ -341,22 +831,21 @@ public class SpectrumCanvas extends Canvas {
     }
 
     /**
-     * Detects peaks in the spectrum data and updates metrics table.
+     * Detects peaks in the spectrum data and publishes changes to the metrics table.
      * @param data The spectrum data.
      */
     private void detectPeaks(SpectrumData data) {
-        double[] amplitudes = data.getAmplitudes();
-        double freqStep = (data.getMaxFreq() - data.getMinFreq()) / amplitudes.length;
-        List<Marker> peaks = new ArrayList<>();
-        for (int i = 1; i < amplitudes.length - 1; i++) {
-            if (amplitudes[i] > amplitudes[i - 1] && amplitudes[i] > amplitudes[i + 1] && amplitudes[i] > -100) {
-                double frequency = data.getMinFreq() + i * freqStep;
-                String signalType = signalProcessor.getSignalTypeAtFrequency(frequency);
-                peaks.add(new Marker("Peak", frequency, amplitudes[i], signalType));
-            }
-        }
-        metricsData.removeIf(m -> m.getType().equals("Peak"));
-        metricsData.addAll(peaks);
+        peakEngine.setThreshold(signalProcessor.getDetectionThreshold());
+        peakEngine.update(data.getAmplitudes(), data.getMinFreq(), data.getMaxFreq());
+    }
+
+    /**
+     * Creates the table row for a tracked peak.
+     * @param peak The tracked peak.
+     * @return The marker shown in the metrics table.
+     */
+    private static Marker toMarker(PeakEngine.Peak peak) {
+        return new Marker("Peak", peak.getFrequency(), peak.getAmplitude(), peak.getSignalType());
     }
 
     /**
@@ -366,9 +855,8 @@ public class SpectrumCanvas extends Canvas {
      */
     private double pixelToFrequency(double x) {
         SpectrumData data = signalProcessor.getSpectrumData();
-        double freqRange = (data.getMaxFreq() - data.getMinFreq()) / zoomFactor;
-        double minFreq = data.getMinFreq() + offsetX * (data.getMaxFreq() - data.getMinFreq());
-        return minFreq + (x / getWidth()) * freqRange;
+        double minFreq = getVisibleMinFreq(data);
+        return minFreq + (x / getWidth()) * (getVisibleMaxFreq(data) - minFreq);
     }
 
     /**
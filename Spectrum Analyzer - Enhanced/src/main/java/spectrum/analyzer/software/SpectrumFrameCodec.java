@@ -0,0 +1,175 @@
+package spectrum.analyzer.software;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact codec for spectrum frames, shared by file recording and network streaming.
+ * <p>
+ * Amplitudes are quantised to 0.01 dB steps in 16-bit integers. Key frames are delta-coded along
+ * frequency, other frames against the previous frame. The deltas are split into a high-byte plane and a
+ * low-byte plane, which makes the mostly-constant high bytes easy to compress, and then deflated.
+ * An encoded block is one flag byte followed by the deflate stream.
+ */
+public final class SpectrumFrameCodec {
+    /** Amplitude quantisation step in dB. */
+    public static final double STEP_DB = 0.01;
+
+    static final byte FLAG_KEYFRAME = 1;
+
+    private SpectrumFrameCodec() {
+    }
+
+    /**
+     * Quantises an amplitude to 0.01 dB steps, saturating at the 16-bit range.
+     * @param amplitude The amplitude in dBm.
+     * @return The quantised amplitude.
+     */
+    static short quantise(double amplitude) {
+        long q = Math.round(amplitude / STEP_DB);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, q));
+    }
+
+    /**
+     * Stateful encoder; frames must be decoded in the order they were encoded, starting at a key frame.
+     */
+    public static final class Encoder {
+        private final Deflater deflater;
+        private short[] previous = new short[0];
+        private byte[] planes = new byte[0];
+        private byte[] output = new byte[1024];
+
+        /**
+         * Constructs an Encoder using the fastest deflate level.
+         */
+        public Encoder() {
+            this(Deflater.BEST_SPEED);
+        }
+
+        /**
+         * Constructs an Encoder.
+         * @param level The deflate compression level.
+         */
+        public Encoder(int level) {
+            deflater = new Deflater(level, true);
+        }
+
+        /**
+         * Encodes a frame into the internal output buffer.
+         * A key frame is forced when the bin count changes.
+         * @param amplitudes The amplitudes in dBm.
+         * @param keyframe True to encode without reference to the previous frame.
+         * @return The length of the encoded block in {@link #getOutput()}.
+         */
+        public int encode(double[] amplitudes, boolean keyframe) {
+            int n = amplitudes.length;
+            if (previous.length != n) {
+                previous = new short[n];
+                planes = new byte[2 * n];
+                keyframe = true;
+            }
+            short last = 0;
+            for (int i = 0; i < n; i++) {
+                short q = quantise(amplitudes[i]);
+                int delta = q - (keyframe ? last : previous[i]);
+                planes[i] = (byte) (delta >> 8);
+                planes[n + i] = (byte) delta;
+                previous[i] = q;
+                last = q;
+            }
+            deflater.reset();
+            deflater.setInput(planes, 0, 2 * n);
+            deflater.finish();
+            output[0] = keyframe ? FLAG_KEYFRAME : 0;
+            int length = 1;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return length;
+        }
+
+        /**
+         * Gets the buffer holding the last encoded block.
+         * @return The output buffer; only the length returned by {@link #encode} is valid.
+         */
+        public byte[] getOutput() {
+            return output;
+        }
+
+        /**
+         * Releases the native deflate resources.
+         */
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Stateful streaming decoder matching {@link Encoder}.
+     */
+    public static final class Decoder {
+        private final Inflater inflater = new Inflater(true);
+        private short[] previous = new short[0];
+        private byte[] planes = new byte[0];
+        private boolean primed;
+
+        /**
+         * Decodes one encoded block.
+         * @param block The encoded block, positioned at its flag byte and limited to its end.
+         * @param binCount The number of bins in the frame.
+         * @param amplitudes Receives the decoded amplitudes in dBm.
+         * @throws DataFormatException If the block is corrupt or a delta frame arrives before a key frame.
+         */
+        public void decode(ByteBuffer block, int binCount, double[] amplitudes) throws DataFormatException {
+            boolean keyframe = (block.get() & FLAG_KEYFRAME) != 0;
+            if (previous.length != binCount) {
+                previous = new short[binCount];
+                planes = new byte[2 * binCount];
+                primed = false;
+            }
+            if (!keyframe && !primed) {
+                throw new DataFormatException("Delta frame without preceding key frame");
+            }
+            inflater.reset();
+            inflater.setInput(block);
+            int length = 0;
+            while (length < planes.length) {
+                int read = inflater.inflate(planes, length, planes.length - length);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) break;
+                length += read;
+            }
+            if (length != planes.length) {
+                throw new DataFormatException("Truncated spectrum frame");
+            }
+            short last = 0;
+            for (int i = 0; i < binCount; i++) {
+                int delta = (planes[i] << 8) | (planes[binCount + i] & 0xFF);
+                short q = (short) ((keyframe ? last : previous[i]) + delta);
+                previous[i] = q;
+                last = q;
+                amplitudes[i] = q * STEP_DB;
+            }
+            primed = true;
+        }
+
+        /**
+         * Forgets the previous frame so the next block must be a key frame.
+         */
+        public void reset() {
+            primed = false;
+        }
+
+        /**
+         * Releases the native inflate resources.
+         */
+        public void close() {
+            inflater.end();
+        }
+    }
+}
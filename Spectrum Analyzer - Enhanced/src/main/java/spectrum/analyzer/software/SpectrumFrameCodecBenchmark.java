@@ -0,0 +1,109 @@
+package spectrum.analyzer.software;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+/**
+ * Reproduces the speed, compression and accuracy figures quoted for {@link SpectrumFrameCodec}.
+ * <p>
+ * Frames are simulated the way the signal processor simulates its default span: 16384 bins from 20 Hz to
+ * 1 kHz of log-normal noise around -160 dBm with the Wi-Fi carrier at 150 Hz, weighted by the Hanning
+ * window. The frames are encoded once as key frames only and once as one key frame followed by delta
+ * frames, then decoded in order. Every decoded amplitude is checked against half the quantisation step,
+ * and encode and decode rates are reported against the size of the frames as doubles, the form the
+ * recorder receives them in. Run it with the application classes on the class path:
+ * {@code java spectrum.analyzer.software.SpectrumFrameCodecBenchmark}.
+ */
+final class SpectrumFrameCodecBenchmark {
+    private static final int BINS = 16384;
+    private static final int FRAMES = 400;
+    private static final int ROUNDS = 5;
+    private static final double MIN_FREQ = 20.0;
+    private static final double MAX_FREQ = 1000.0;
+
+    private SpectrumFrameCodecBenchmark() {
+    }
+
+    /**
+     * Runs the round trip for key frames and delta frames and prints one line per round.
+     * @param args Ignored.
+     * @throws DataFormatException If a frame fails to decode.
+     */
+    public static void main(String[] args) throws DataFormatException {
+        Random random = new Random(4);
+        double[][] frames = new double[FRAMES][];
+        for (int f = 0; f < FRAMES; f++) {
+            frames[f] = simulateFrame(random);
+        }
+        System.out.println("frames   round  encode MB/s  decode MB/s  ratio  max error dB");
+        for (int round = 0; round < ROUNDS; round++) {
+            for (boolean keyframes : new boolean[]{true, false}) {
+                run(frames, keyframes, round);
+            }
+        }
+    }
+
+    /**
+     * Encodes and decodes all frames once, checks the error and prints the rates.
+     * @param frames The frames.
+     * @param keyframes True to encode every frame as a key frame, false for delta frames after the first.
+     * @param round The round number, for the report.
+     * @throws DataFormatException If a frame fails to decode.
+     */
+    private static void run(double[][] frames, boolean keyframes, int round) throws DataFormatException {
+        SpectrumFrameCodec.Encoder encoder = new SpectrumFrameCodec.Encoder();
+        SpectrumFrameCodec.Decoder decoder = new SpectrumFrameCodec.Decoder();
+        ByteBuffer encoded = ByteBuffer.allocate(FRAMES * 4 * BINS);
+        int[] ends = new int[FRAMES];
+        long start = System.nanoTime();
+        for (int f = 0; f < FRAMES; f++) {
+            int length = encoder.encode(frames[f], keyframes || f == 0);
+            encoded.put(encoder.getOutput(), 0, length);
+            ends[f] = encoded.position();
+        }
+        long middle = System.nanoTime();
+        double[] decoded = new double[BINS];
+        double error = 0;
+        long decodeTime = 0;
+        for (int f = 0; f < FRAMES; f++) {
+            ByteBuffer block = encoded.duplicate();
+            block.limit(ends[f]).position(f == 0 ? 0 : ends[f - 1]);
+            long before = System.nanoTime();
+            decoder.decode(block, BINS, decoded);
+            decodeTime += System.nanoTime() - before;
+            for (int i = 0; i < BINS; i++) {
+                error = Math.max(error, Math.abs(decoded[i] - frames[f][i]));
+            }
+        }
+        encoder.close();
+        decoder.close();
+        if (error > SpectrumFrameCodec.STEP_DB / 2 + 1e-9) {
+            throw new IllegalStateException("Round trip error " + error + " dB exceeds half a step");
+        }
+        double megabytes = FRAMES * 8.0 * BINS / 1e6;
+        System.out.printf("%-8s %5d %12.0f %12.0f %6.1f %13.4f%n", keyframes ? "key" : "delta", round + 1,
+                megabytes / ((middle - start) / 1e9), megabytes / (decodeTime / 1e9),
+                FRAMES * 8.0 * BINS / ends[FRAMES - 1], error);
+    }
+
+    /**
+     * Simulates one frame of the default span.
+     * @param random The noise source.
+     * @return The amplitudes in dBm.
+     */
+    private static double[] simulateFrame(Random random) {
+        double[] amplitudes = new double[BINS];
+        double freqStep = (MAX_FREQ - MIN_FREQ) / BINS;
+        double noiseFloor = -160 - 20 * Math.log10(MAX_FREQ / 1000);
+        for (int i = 0; i < BINS; i++) {
+            double freq = MIN_FREQ + i * freqStep;
+            amplitudes[i] = noiseFloor + random.nextGaussian() * 10;
+            if (freq > 100 && freq < 200) {
+                amplitudes[i] += 100 * Math.exp(-Math.pow((freq - 150) / 10, 2));
+            }
+            amplitudes[i] *= 0.5 * (1 - Math.cos(2 * Math.PI * i / (BINS - 1)));
+        }
+        return amplitudes;
+    }
+}
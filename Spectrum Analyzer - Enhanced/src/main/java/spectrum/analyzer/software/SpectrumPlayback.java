@@ -0,0 +1,421 @@
+package spectrum.analyzer.software;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+/**
+ * Plays back frames written by {@link SpectrumRecorder} from memory-mapped segment files.
+ * <p>
+ * Only the sparse index is held on the heap. Seeking binary-searches the segment start times and
+ * then the segment index, and finishes with a short forward scan of at most one index interval.
+ */
+public class SpectrumPlayback implements AutoCloseable {
+    private final Path directory;
+    private final List<FileChannel> channels = new ArrayList<>();
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<long[]> indexTimestamps = new ArrayList<>();
+    private final List<long[]> indexOffsets = new ArrayList<>();
+    private long[] segmentStartTimes = new long[0];
+    private long startTime;
+    private long endTime;
+    private RecordingOverview overview;
+
+    private double speed = 1.0;
+    private boolean playing;
+    private long anchorRecordingTime;
+    private long anchorWallTime;
+
+    private final SpectrumFrameCodec.Decoder decoder = new SpectrumFrameCodec.Decoder();
+    private long decodedPosition = -1;
+    private double[] scratch = new double[0];
+
+    /**
+     * Opens a recording directory and maps its segments.
+     * @param directory The directory written by a recorder.
+     * @throws IOException If the recording cannot be read or contains no frames.
+     */
+    public SpectrumPlayback(Path directory) throws IOException {
+        this.directory = directory;
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentFiles = files.filter(p -> p.getFileName().toString().endsWith(SpectrumRecorder.SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+        List<Long> starts = new ArrayList<>();
+        for (Path segmentFile : segmentFiles) {
+            openSegment(segmentFile, starts);
+        }
+        if (segments.isEmpty()) {
+            close();
+            throw new IOException("No recorded frames in " + directory);
+        }
+        segmentStartTimes = starts.stream().mapToLong(Long::longValue).toArray();
+        startTime = segmentStartTimes[0];
+        endTime = lastTimestamp(segments.size() - 1);
+        anchorRecordingTime = startTime;
+        overview = new RecordingOverview(directory);
+    }
+
+    /**
+     * Gets the recording directory.
+     * @return The directory path.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the overview of the recording.
+     * @return The overview, or null if the recording has none.
+     */
+    public RecordingOverview getOverview() {
+        return overview;
+    }
+
+    /**
+     * Gets the timestamp of the first frame.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Gets the timestamp of the last frame.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Sets the playback speed; negative values play in reverse.
+     * @param speed The speed factor relative to real time.
+     */
+    public synchronized void setSpeed(double speed) {
+        reanchor();
+        this.speed = speed;
+    }
+
+    /**
+     * Gets the playback speed.
+     * @return The speed factor relative to real time.
+     */
+    public synchronized double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Starts or pauses playback.
+     * @param playing True to play, false to pause.
+     */
+    public synchronized void setPlaying(boolean playing) {
+        reanchor();
+        this.playing = playing;
+    }
+
+    /**
+     * Checks whether playback is running.
+     * @return True if playing.
+     */
+    public synchronized boolean isPlaying() {
+        return playing;
+    }
+
+    /**
+     * Moves the playback position to the specified time.
+     * @param timestamp The timestamp in milliseconds since the epoch.
+     */
+    public synchronized void seek(long timestamp) {
+        anchorRecordingTime = clamp(timestamp);
+        anchorWallTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the current playback position, advanced by the playback clock.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    public synchronized long getCurrentTime() {
+        if (!playing) return anchorRecordingTime;
+        long elapsed = System.currentTimeMillis() - anchorWallTime;
+        long advance = (long) (elapsed * speed);
+        long position = clamp(anchorRecordingTime + advance);
+        // Pause only once the clock has moved the position onto the end it is heading for
+        boolean reachedEnd = speed > 0 ? position == endTime : speed < 0 && position == startTime;
+        if (advance != 0 && reachedEnd) {
+            playing = false;
+            anchorRecordingTime = position;
+        }
+        return position;
+    }
+
+    /**
+     * Locates the last frame at or before the specified time.
+     * @param timestamp The timestamp in milliseconds since the epoch.
+     * @return The frame position encoded as {@code segment << 40 | offset}.
+     */
+    public long locate(long timestamp) {
+        int segment = floorIndex(segmentStartTimes, timestamp);
+        if (segment < 0) segment = 0;
+        long[] timestamps = indexTimestamps.get(segment);
+        int entry = Math.max(0, floorIndex(timestamps, timestamp));
+        MappedByteBuffer buffer = segments.get(segment);
+        long offset = indexOffsets.get(segment)[entry];
+        while (true) {
+            long next = offset + recordSize(buffer, offset);
+            if (next >= buffer.limit() || buffer.getLong((int) next + 4) > timestamp) break;
+            offset = next;
+        }
+        return ((long) segment << 40) | offset;
+    }
+
+    /**
+     * Reads the frame at the specified position.
+     * Decoding starts at the nearest preceding key frame, or continues from the last frame read when
+     * playback moves forward within the same key frame group.
+     * @param position The frame position returned by {@link #locate(long)}.
+     * @return The decoded frame.
+     * @throws IllegalStateException If the recording is corrupt.
+     */
+    public synchronized Frame read(long position) {
+        int segment = (int) (position >>> 40);
+        MappedByteBuffer buffer = segments.get(segment);
+        long target = position & ((1L << 40) - 1);
+        long[] offsets = indexOffsets.get(segment);
+        long offset = offsets[Math.max(0, floorIndex(offsets, target))];
+        if (decodedPosition >>> 40 == segment && (decodedPosition & ((1L << 40) - 1)) >= offset
+                && decodedPosition < position) {
+            offset = (decodedPosition & ((1L << 40) - 1)) + recordSize(buffer, decodedPosition & ((1L << 40) - 1));
+        }
+        int binCount = buffer.getInt((int) target + 32);
+        double[] amplitudes = new double[binCount];
+        try {
+            for (; offset < target; offset += recordSize(buffer, offset)) {
+                decodeRecord(buffer, (int) offset, scratch(buffer.getInt((int) offset + 32)));
+            }
+            decodeRecord(buffer, (int) target, amplitudes);
+        } catch (DataFormatException e) {
+            decodedPosition = -1;
+            throw new IllegalStateException("Corrupt frame in " + directory, e);
+        }
+        decodedPosition = position;
+        return new Frame(buffer.getLong((int) target + 4), buffer.getDouble((int) target + 12),
+                buffer.getDouble((int) target + 20), buffer.getInt((int) target + 28), amplitudes);
+    }
+
+    /**
+     * Decodes the amplitudes of one frame record.
+     * @param buffer The mapped segment.
+     * @param offset The record offset.
+     * @param amplitudes Receives the amplitudes in dBm.
+     * @throws DataFormatException If the encoded block is corrupt.
+     */
+    private void decodeRecord(MappedByteBuffer buffer, int offset, double[] amplitudes) throws DataFormatException {
+        int payload = buffer.getInt(offset);
+        ByteBuffer block = buffer.duplicate()
+                .limit(offset + 4 + payload)
+                .position(offset + SpectrumRecorder.FRAME_HEADER_SIZE);
+        decoder.decode(block, buffer.getInt(offset + 32), amplitudes);
+    }
+
+    /**
+     * Gets a scratch array for frames that are decoded only to advance the decoder state.
+     * @param binCount The number of bins.
+     * @return The scratch array.
+     */
+    private double[] scratch(int binCount) {
+        if (scratch.length != binCount) {
+            scratch = new double[binCount];
+        }
+        return scratch;
+    }
+
+    /**
+     * Releases the mapped segment files.
+     */
+    @Override
+    public synchronized void close() {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing useful to do when closing a read-only channel fails
+            }
+        }
+        channels.clear();
+        decoder.close();
+        if (overview != null) overview.close();
+    }
+
+    /**
+     * Maps a segment file and loads its sparse index.
+     * @param segmentFile The segment file.
+     * @param starts Receives the timestamp of the segment's first frame.
+     * @throws IOException If the files cannot be read.
+     */
+    private void openSegment(Path segmentFile, List<Long> starts) throws IOException {
+        FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.READ);
+        channels.add(channel);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < SpectrumRecorder.SEGMENT_HEADER_SIZE + SpectrumRecorder.FRAME_HEADER_SIZE
+                || buffer.getInt(0) != SpectrumRecorder.SEGMENT_MAGIC) {
+            return;
+        }
+        if (buffer.getInt(4) != SpectrumRecorder.FORMAT_VERSION) {
+            throw new IOException("Unsupported recording version in " + segmentFile);
+        }
+        buffer.limit(completeLength(buffer));
+
+        String name = segmentFile.getFileName().toString();
+        Path indexFile = segmentFile.resolveSibling(
+                name.substring(0, name.length() - SpectrumRecorder.SEGMENT_SUFFIX.length()) + SpectrumRecorder.INDEX_SUFFIX);
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexFile)).order(ByteOrder.LITTLE_ENDIAN);
+        int entries = index.limit() / SpectrumRecorder.INDEX_ENTRY_SIZE;
+        long[] timestamps = new long[entries];
+        long[] offsets = new long[entries];
+        int valid = 0;
+        for (int i = 0; i < entries; i++) {
+            long offset = index.getLong(i * SpectrumRecorder.INDEX_ENTRY_SIZE + 8);
+            if (offset >= buffer.limit()) break;
+            timestamps[valid] = index.getLong(i * SpectrumRecorder.INDEX_ENTRY_SIZE);
+            offsets[valid++] = offset;
+        }
+        if (valid == 0) return;
+        segments.add(buffer);
+        indexTimestamps.add(Arrays.copyOf(timestamps, valid));
+        indexOffsets.add(Arrays.copyOf(offsets, valid));
+        starts.add(timestamps[0]);
+    }
+
+    /**
+     * Finds the end of the last complete frame, ignoring a frame that is still being written.
+     * @param buffer The mapped segment.
+     * @return The length of the complete part of the segment.
+     */
+    private static int completeLength(MappedByteBuffer buffer) {
+        int limit = buffer.limit();
+        int payload = buffer.getInt(limit - 4);
+        int start = limit - payload - 8;
+        if (payload > 0 && start >= SpectrumRecorder.SEGMENT_HEADER_SIZE && buffer.getInt(start) == payload) {
+            return limit;
+        }
+        int end = SpectrumRecorder.SEGMENT_HEADER_SIZE;
+        while (end + 4 <= limit) {
+            int size = buffer.getInt(end) + 8;
+            if (size <= 8 || end + size > limit) break;
+            end += size;
+        }
+        return end;
+    }
+
+    /**
+     * Gets the timestamp of the last frame in a segment.
+     * @param segment The segment number.
+     * @return The timestamp in milliseconds since the epoch.
+     */
+    private long lastTimestamp(int segment) {
+        MappedByteBuffer buffer = segments.get(segment);
+        int end = buffer.limit();
+        int start = end - buffer.getInt(end - 4) - 8;
+        return buffer.getLong(start + 4);
+    }
+
+    /**
+     * Gets the total size of the frame record at an offset.
+     * @param buffer The mapped segment.
+     * @param offset The record offset.
+     * @return The record size in bytes.
+     */
+    private static long recordSize(MappedByteBuffer buffer, long offset) {
+        return buffer.getInt((int) offset) + 8L;
+    }
+
+    /**
+     * Binary-searches for the last element that is less than or equal to a key.
+     * @param values The sorted values.
+     * @param key The key to search for.
+     * @return The element index, or -1 if every element is greater than the key.
+     */
+    static int floorIndex(long[] values, long key) {
+        int low = 0, high = values.length - 1, result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= key) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Restarts the playback clock from the current position.
+     */
+    private void reanchor() {
+        anchorRecordingTime = getCurrentTime();
+        anchorWallTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Limits a timestamp to the recorded time range.
+     * @param timestamp The timestamp.
+     * @return The clamped timestamp.
+     */
+    private long clamp(long timestamp) {
+        return Math.max(startTime, Math.min(timestamp, endTime));
+    }
+
+    /**
+     * A frame read back from a recording.
+     */
+    public static final class Frame {
+        private final long timestamp;
+        private final double minFreq;
+        private final double maxFreq;
+        private final int settingsHash;
+        private final double[] amplitudes;
+
+        Frame(long timestamp, double minFreq, double maxFreq, int settingsHash, double[] amplitudes) {
+            this.timestamp = timestamp;
+            this.minFreq = minFreq;
+            this.maxFreq = maxFreq;
+            this.settingsHash = settingsHash;
+            this.amplitudes = amplitudes;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public double getMinFreq() {
+            return minFreq;
+        }
+
+        public double getMaxFreq() {
+            return maxFreq;
+        }
+
+        public int getSettingsHash() {
+            return settingsHash;
+        }
+
+        public double[] getAmplitudes() {
+            return amplitudes;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package spectrum.analyzer.software;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends published spectrum frames to segmented binary files on a background thread.
+ * <p>
+ * Each segment {@code segment-NNNNN.spr} starts with a small header followed by frame records:
+ * {@code int length, long timestamp, double minFreq, double maxFreq, int settingsHash, int binCount,
+ * byte[] encodedAmplitudes, int length}. The amplitudes are encoded with {@link SpectrumFrameCodec}
+ * and the trailing length allows a reader to walk backwards. Every {@code indexInterval}-th frame of a
+ * segment is written as a key frame and listed in the matching {@code segment-NNNNN.idx} file as a
+ * {@code (long timestamp, long offset)} pair, giving a sparse time-to-offset index. A
+ * {@link RecordingOverview} is built alongside the segments.
+ */
+public class SpectrumRecorder {
+    static final int SEGMENT_MAGIC = 0x53504652; // "SPFR"
+    static final int FORMAT_VERSION = 2;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int FRAME_HEADER_SIZE = 4 + 8 + 8 + 8 + 4 + 4;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final String SEGMENT_SUFFIX = ".spr";
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final Frame END_OF_STREAM = new Frame(0, 0, 0, 0, new double[0]);
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int indexInterval;
+    private final BlockingQueue<Frame> queue;
+    private final AtomicLong recordedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile boolean running;
+    private volatile IOException lastError;
+    private Thread writerThread;
+
+    private FileChannel segmentChannel;
+    private FileChannel indexChannel;
+    private int segmentNumber = -1;
+    private long framesInSegment;
+    private ByteBuffer frameBuffer = ByteBuffer.allocateDirect(0);
+    private final SpectrumFrameCodec.Encoder encoder = new SpectrumFrameCodec.Encoder();
+    private RecordingOverview.Builder overview;
+    private final ByteBuffer indexBuffer = ByteBuffer.allocateDirect(INDEX_ENTRY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Constructs a SpectrumRecorder with default segment size, queue capacity and index interval.
+     * @param directory The directory that receives the segment and index files.
+     */
+    public SpectrumRecorder(Path directory) {
+        this(directory, 256L * 1024 * 1024, 64, 16);
+    }
+
+    /**
+     * Constructs a SpectrumRecorder.
+     * @param directory The directory that receives the segment and index files.
+     * @param segmentSize The maximum size of one segment file in bytes.
+     * @param queueCapacity The number of frames that may wait for the writer before frames are dropped.
+     * @param indexInterval The number of frames between two index entries.
+     */
+    public SpectrumRecorder(Path directory, long segmentSize, int queueCapacity, int indexInterval) {
+        if (segmentSize <= SEGMENT_HEADER_SIZE || queueCapacity < 1 || indexInterval < 1) {
+            throw new IllegalArgumentException("Invalid recorder configuration");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.indexInterval = indexInterval;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Starts the background writer thread.
+     * @throws IOException If the recording directory cannot be created.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        Files.createDirectories(directory);
+        overview = new RecordingOverview.Builder(directory);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "spectrum-recorder");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Stops the recorder after all queued frames have been written.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            queue.put(END_OF_STREAM);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a frame for writing without blocking the caller.
+     * The amplitude array is written as-is and must not be modified afterwards.
+     * @param timestamp The frame timestamp in milliseconds since the epoch.
+     * @param minFreq The minimum frequency of the span in Hz.
+     * @param maxFreq The maximum frequency of the span in Hz.
+     * @param settingsHash A hash of the acquisition settings that produced the frame.
+     * @param amplitudes The amplitudes in dBm.
+     * @return True if the frame was queued, false if it was dropped.
+     */
+    public boolean record(long timestamp, double minFreq, double maxFreq, int settingsHash, double[] amplitudes) {
+        if (!running) return false;
+        if (queue.offer(new Frame(timestamp, minFreq, maxFreq, settingsHash, amplitudes))) {
+            return true;
+        }
+        droppedFrames.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Checks whether the recorder is running.
+     * @return True if frames are being accepted.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the recording directory.
+     * @return The directory path.
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the number of frames written so far.
+     * @return The recorded frame count.
+     */
+    public long getRecordedFrames() {
+        return recordedFrames.get();
+    }
+
+    /**
+     * Gets the number of frames dropped because the queue was full.
+     * @return The dropped frame count.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Gets the number of bytes written to segment files so far.
+     * @return The byte count.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Gets the error that stopped the writer, if any.
+     * @return The I/O error, or null.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Builds the file name of a segment or index file.
+     * @param number The segment number.
+     * @param suffix The file suffix.
+     * @return The file name.
+     */
+    static String segmentName(int number, String suffix) {
+        return String.format("segment-%05d%s", number, suffix);
+    }
+
+    /**
+     * Drains the queue and writes frames until the end-of-stream marker arrives.
+     */
+    private void writeLoop() {
+        try {
+            while (true) {
+                Frame frame = queue.take();
+                if (frame == END_OF_STREAM) break;
+                writeFrame(frame);
+                overview.add(frame.timestamp, frame.minFreq, frame.maxFreq, frame.amplitudes);
+            }
+        } catch (IOException e) {
+            lastError = e;
+            running = false;
+            queue.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+            encoder.close();
+            try {
+                overview.close();
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+    }
+
+    /**
+     * Writes one frame record, rolling over to a new segment when the current one is full.
+     * @param frame The frame to write.
+     * @throws IOException If writing fails.
+     */
+    private void writeFrame(Frame frame) throws IOException {
+        int recordSize = FRAME_HEADER_SIZE + estimateEncodedSize(frame.amplitudes.length) + 4;
+        if (segmentChannel == null || segmentChannel.position() + recordSize > segmentSize) {
+            openNextSegment();
+        }
+        boolean keyframe = framesInSegment % indexInterval == 0;
+        int encodedLength = encoder.encode(frame.amplitudes, keyframe);
+        int payload = FRAME_HEADER_SIZE - 4 + encodedLength;
+        recordSize = payload + 8;
+        if (frameBuffer.capacity() < recordSize) {
+            frameBuffer = ByteBuffer.allocateDirect(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        frameBuffer.clear();
+        frameBuffer.putInt(payload)
+                .putLong(frame.timestamp)
+                .putDouble(frame.minFreq)
+                .putDouble(frame.maxFreq)
+                .putInt(frame.settingsHash)
+                .putInt(frame.amplitudes.length)
+                .put(encoder.getOutput(), 0, encodedLength)
+                .putInt(payload);
+        frameBuffer.flip();
+
+        long offset = segmentChannel.position();
+        if (framesInSegment % indexInterval == 0) {
+            indexBuffer.clear();
+            indexBuffer.putLong(frame.timestamp).putLong(offset).flip();
+            writeFully(indexChannel, indexBuffer);
+        }
+        writeFully(segmentChannel, frameBuffer);
+        framesInSegment++;
+        recordedFrames.incrementAndGet();
+        bytesWritten.addAndGet(recordSize);
+    }
+
+    /**
+     * Gives a worst-case encoded size used to decide when a segment is full.
+     * @param binCount The number of bins in the frame.
+     * @return The upper bound in bytes.
+     */
+    private static int estimateEncodedSize(int binCount) {
+        int raw = 2 * binCount;
+        return 1 + raw + raw / 1000 + 64;
+    }
+
+    /**
+     * Closes the current segment and opens the next one.
+     * @throws IOException If the files cannot be created.
+     */
+    private void openNextSegment() throws IOException {
+        closeSegment();
+        segmentNumber++;
+        segmentChannel = FileChannel.open(directory.resolve(segmentName(segmentNumber, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        indexChannel = FileChannel.open(directory.resolve(segmentName(segmentNumber, INDEX_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(SEGMENT_MAGIC).putInt(FORMAT_VERSION).flip();
+        writeFully(segmentChannel, header);
+        framesInSegment = 0;
+    }
+
+    /**
+     * Closes the open segment and index files, if any.
+     */
+    private void closeSegment() {
+        try {
+            if (segmentChannel != null) segmentChannel.close();
+            if (indexChannel != null) indexChannel.close();
+        } catch (IOException e) {
+            lastError = e;
+        }
+        segmentChannel = null;
+        indexChannel = null;
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer to a channel.
+     * @param channel The target channel.
+     * @param buffer The buffer to write.
+     * @throws IOException If writing fails.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * A frame waiting in the writer queue.
+     */
+    private static final class Frame {
+        final long timestamp;
+        final double minFreq;
+        final double maxFreq;
+        final int settingsHash;
+        final double[] amplitudes;
+
+        Frame(long timestamp, double minFreq, double maxFreq, int settingsHash, double[] amplitudes) {
+            this.timestamp = timestamp;
+            this.minFreq = minFreq;
+            this.maxFreq = maxFreq;
+            this.settingsHash = settingsHash;
+            this.amplitudes = amplitudes;
+        }
+    }
+}
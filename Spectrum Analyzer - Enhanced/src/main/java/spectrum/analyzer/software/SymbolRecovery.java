@@ -0,0 +1,391 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Recovers PSK and QAM symbols from a block stream of baseband IQ samples.
+ * <p>
+ * The chain is a root-raised-cosine matched filter, Gardner timing recovery and a carrier loop. The
+ * matched filter runs over the whole block with the last {@code taps - 1} inputs carried over. The
+ * Gardner detector needs no carrier lock, so it walks the filtered block, linearly interpolating the
+ * symbol strobe and the half-symbol sample between two strobes, and steers a second-order loop on the
+ * symbol period. Each strobe is normalised by a symbol-rate AGC and derotated by a carrier loop: a
+ * decision-directed phase detector (a Costas loop for QPSK) with a fourth-power frequency detector that
+ * pulls in offsets far beyond the phase loop bandwidth. The frequency detector is noisy on 16-QAM, so it
+ * only runs while the smoothed decision error says the phase loop is out of lock; together they acquire
+ * offsets of about 6% of the symbol rate. The per-sample output is the matched filter
+ * output derotated by the same loop, so it can be shown as a waveform or eye diagram.
+ */
+public class SymbolRecovery {
+    private static final double ROLLOFF = 0.35;
+    private static final int SPAN_SYMBOLS = 12;
+    private static final double QPSK_LEVEL = 1 / Math.sqrt(2);
+    private static final double QAM16_LEVEL = 1 / Math.sqrt(10);
+    // Smoothed squared decision error relative to the symbol power above which the frequency loop runs
+    private static final double LOCK_THRESHOLD = 0.03;
+    private static final double LOCK_SMOOTHING = 0.01;
+    // Slow enough that the symbol-to-symbol power variation of 16-QAM adds little gain jitter
+    private static final double AGC_RATE = 0.003;
+
+    private final double samplesPerSymbol;
+    private final boolean qam;
+    private final double[] taps;
+    private final int history;
+    private final double timingGain;
+    private final double timingIntegral;
+    private final double phaseGain;
+    private final double frequencyGain;
+    private final double fllGain;
+    private final double fllSmoothing;
+
+    private double[] filterI;
+    private double[] filterQ;
+    private double[] matchedI = new double[0];
+    private double[] matchedQ = new double[0];
+    private double[] symbolI = new double[0];
+    private double[] symbolQ = new double[0];
+    private double[] decisionI = new double[0];
+    private double[] decisionQ = new double[0];
+    private double[] strobes = new double[0];
+    private int[] classes = new int[0];
+    private int symbolCount;
+
+    private double strobe;
+    private double period;
+    private double previousI;
+    private double previousQ;
+    private double gain = 1;
+    private double phase;
+    private double frequency;
+    private double previous4I = 1;
+    private double previous4Q;
+    private double rotationI;
+    private double rotationQ;
+    private double lockError;
+
+    /**
+     * Constructs a SymbolRecovery.
+     * @param samplesPerSymbol The nominal number of samples per symbol, at least 2.
+     * @param qam True for 16-QAM decisions, false for QPSK.
+     */
+    public SymbolRecovery(int samplesPerSymbol, boolean qam) {
+        this.samplesPerSymbol = samplesPerSymbol;
+        this.qam = qam;
+        this.taps = RootRaisedCosine.design(samplesPerSymbol, ROLLOFF, SPAN_SYMBOLS);
+        this.history = samplesPerSymbol + 2;
+        // Loop bandwidths in cycles per symbol: 0.5% for timing, 1% for carrier phase
+        this.timingGain = 4 * 0.005 * 2 * Math.PI;
+        this.timingIntegral = timingGain * timingGain / 8;
+        double theta = 2 * Math.PI * 0.01;
+        this.phaseGain = 2 * Math.sqrt(0.5) * theta;
+        this.frequencyGain = theta * theta;
+        this.fllGain = 0.01;
+        this.fllSmoothing = 0.05;
+        this.filterI = new double[taps.length - 1];
+        this.filterQ = new double[taps.length - 1];
+        reset();
+    }
+
+    /**
+     * Clears the filter history and all loops.
+     */
+    public void reset() {
+        Arrays.fill(filterI, 0);
+        Arrays.fill(filterQ, 0);
+        if (matchedI.length > 0) {
+            Arrays.fill(matchedI, 0);
+            Arrays.fill(matchedQ, 0);
+        }
+        strobe = history;
+        period = samplesPerSymbol;
+        previousI = 0;
+        previousQ = 0;
+        gain = 1;
+        phase = 0;
+        frequency = 0;
+        previous4I = 1;
+        previous4Q = 0;
+        rotationI = 0;
+        rotationQ = 0;
+        lockError = 1;
+        symbolCount = 0;
+    }
+
+    /**
+     * Processes a block of IQ samples.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     * @param out Receives the derotated in-phase matched filter output, one sample per input sample.
+     * @return The number of symbols recovered from the block.
+     */
+    public int process(double[] i, double[] q, int count, double[] out) {
+        allocate(count);
+        matchedFilter(i, q, count);
+        symbolCount = 0;
+        // Derotate the per-sample output with the carrier loop. The phasor is set from the loop phase once
+        // per symbol and rotated by the per-sample step in between, so samples need no trigonometry.
+        double stepCos = 1, stepSin = 0, c = 1, s = 0;
+        boolean stale = true;
+        for (int n = 0; n < count; n++) {
+            int index = history + n;
+            while (strobe <= index && strobe + 1 < history + count) {
+                recoverSymbol();
+                stale = true;
+            }
+            if (stale) {
+                double step = frequency / samplesPerSymbol;
+                double samplePhase = phase - step * (strobe - index);
+                stepCos = Math.cos(step);
+                stepSin = Math.sin(step);
+                c = Math.cos(samplePhase);
+                s = Math.sin(samplePhase);
+                stale = false;
+            }
+            out[n] = gain * (matchedI[index] * c + matchedQ[index] * s);
+            double rotated = c * stepCos - s * stepSin;
+            s = s * stepCos + c * stepSin;
+            c = rotated;
+        }
+        System.arraycopy(matchedI, count, matchedI, 0, history);
+        System.arraycopy(matchedQ, count, matchedQ, 0, history);
+        strobe -= count;
+        return symbolCount;
+    }
+
+    /**
+     * Gets the in-phase components of the symbols recovered by the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getSymbolI() {
+        return symbolI;
+    }
+
+    /**
+     * Gets the quadrature components of the symbols recovered by the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getSymbolQ() {
+        return symbolQ;
+    }
+
+    /**
+     * Gets the in-phase components of the decisions for the symbols of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getDecisionI() {
+        return decisionI;
+    }
+
+    /**
+     * Gets the quadrature components of the decisions for the symbols of the latest block.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getDecisionQ() {
+        return decisionQ;
+    }
+
+    /**
+     * Gets the constellation point index of each decision of the latest block, numbered row by row from
+     * the most negative I and Q level.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public int[] getDecisionClasses() {
+        return classes;
+    }
+
+    /**
+     * Gets the number of constellation points.
+     * @return 16 for 16-QAM, 4 for QPSK.
+     */
+    public int getClassCount() {
+        return qam ? 16 : 4;
+    }
+
+    /**
+     * Gets the positions of the symbol strobes of the latest block, in samples from the block start.
+     * @return The array; only the first {@link #getSymbolCount()} entries are valid.
+     */
+    public double[] getStrobes() {
+        return strobes;
+    }
+
+    /**
+     * Gets the number of symbols recovered by the latest block.
+     * @return The symbol count.
+     */
+    public int getSymbolCount() {
+        return symbolCount;
+    }
+
+    /**
+     * Gets the tracked symbol period.
+     * @return The period in samples.
+     */
+    public double getSymbolPeriod() {
+        return period;
+    }
+
+    /**
+     * Gets the tracked carrier frequency offset.
+     * @return The offset in radians per symbol.
+     */
+    public double getFrequencyOffset() {
+        return frequency;
+    }
+
+    /**
+     * Grows the work buffers for a block.
+     * @param count The number of samples in the block.
+     */
+    private void allocate(int count) {
+        int filterLength = taps.length - 1 + count;
+        if (filterI.length < filterLength) {
+            double[] grownI = new double[filterLength];
+            double[] grownQ = new double[filterLength];
+            System.arraycopy(filterI, 0, grownI, 0, taps.length - 1);
+            System.arraycopy(filterQ, 0, grownQ, 0, taps.length - 1);
+            filterI = grownI;
+            filterQ = grownQ;
+        }
+        if (matchedI.length < history + count) {
+            double[] grownI = new double[history + count];
+            double[] grownQ = new double[history + count];
+            if (matchedI.length > 0) {
+                System.arraycopy(matchedI, 0, grownI, 0, history);
+                System.arraycopy(matchedQ, 0, grownQ, 0, history);
+            }
+            matchedI = grownI;
+            matchedQ = grownQ;
+        }
+        int maxSymbols = (int) (count / (samplesPerSymbol / 2)) + 2;
+        if (symbolI.length < maxSymbols) {
+            symbolI = new double[maxSymbols];
+            symbolQ = new double[maxSymbols];
+            decisionI = new double[maxSymbols];
+            decisionQ = new double[maxSymbols];
+            strobes = new double[maxSymbols];
+            classes = new int[maxSymbols];
+        }
+    }
+
+    /**
+     * Runs the matched filter over a block, appending the output after the timing history.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     */
+    private void matchedFilter(double[] i, double[] q, int count) {
+        int delay = taps.length - 1;
+        System.arraycopy(i, 0, filterI, delay, count);
+        System.arraycopy(q, 0, filterQ, delay, count);
+        int half = taps.length / 2;
+        for (int n = 0; n < count; n++) {
+            // The filter is symmetric with an odd length, so mirrored inputs share a multiply
+            double sumI = taps[half] * filterI[n + half], sumQ = taps[half] * filterQ[n + half];
+            for (int k = 0; k < half; k++) {
+                sumI += taps[k] * (filterI[n + k] + filterI[n + delay - k]);
+                sumQ += taps[k] * (filterQ[n + k] + filterQ[n + delay - k]);
+            }
+            matchedI[history + n] = sumI;
+            matchedQ[history + n] = sumQ;
+        }
+        System.arraycopy(filterI, count, filterI, 0, delay);
+        System.arraycopy(filterQ, count, filterQ, 0, delay);
+    }
+
+    /**
+     * Interpolates the strobe and mid-symbol samples, updates the timing and carrier loops and stores
+     * the symbol.
+     */
+    private void recoverSymbol() {
+        double strobeI = interpolate(matchedI, strobe);
+        double strobeQ = interpolate(matchedQ, strobe);
+        double middle = strobe - period / 2;
+        double middleI = interpolate(matchedI, middle);
+        double middleQ = interpolate(matchedQ, middle);
+
+        // Gardner: the mid-symbol sample is zero when the strobes sit on the symbol instants
+        double timingError = (previousI - strobeI) * middleI + (previousQ - strobeQ) * middleQ;
+        timingError = Math.max(-1, Math.min(1, timingError * gain * gain));
+        previousI = strobeI;
+        previousQ = strobeQ;
+        period += timingIntegral * timingError;
+        period = Math.max(0.9 * samplesPerSymbol, Math.min(1.1 * samplesPerSymbol, period));
+
+        double c = Math.cos(phase), s = Math.sin(phase);
+        double zi = gain * (strobeI * c + strobeQ * s);
+        double zq = gain * (strobeQ * c - strobeI * s);
+        double di = decide(zi), dq = decide(zq);
+        double phaseError = zq * di - zi * dq;
+        double power = zi * zi + zq * zq;
+        gain *= 1 + AGC_RATE * (1 - power);
+
+        // Fourth-power frequency detector: z^4 has a nonzero mean for QPSK and 16-QAM, so the averaged
+        // product of consecutive z^4 values rotates by four times the residual frequency per symbol
+        double si = zi * zi - zq * zq, sq = 2 * zi * zq;
+        double fi = si * si - sq * sq, fq = 2 * si * sq;
+        rotationI += fllSmoothing * (fi * previous4I + fq * previous4Q - rotationI);
+        rotationQ += fllSmoothing * (fq * previous4I - fi * previous4Q - rotationQ);
+        double rotation = FastMath.atan2(rotationQ, rotationI) / 4;
+        previous4I = fi;
+        previous4Q = fq;
+
+        double ei = zi - di, eq = zq - dq;
+        lockError += LOCK_SMOOTHING * ((ei * ei + eq * eq) / (di * di + dq * dq) - lockError);
+        frequency += frequencyGain * phaseError;
+        if (lockError > LOCK_THRESHOLD) {
+            frequency += fllGain * rotation;
+        }
+        frequency = Math.max(-Math.PI / 4, Math.min(Math.PI / 4, frequency));
+        phase += frequency + phaseGain * phaseError;
+        if (phase > Math.PI) phase -= 2 * Math.PI;
+        else if (phase < -Math.PI) phase += 2 * Math.PI;
+
+        symbolI[symbolCount] = zi;
+        symbolQ[symbolCount] = zq;
+        decisionI[symbolCount] = di;
+        decisionQ[symbolCount] = dq;
+        strobes[symbolCount] = strobe - history;
+        classes[symbolCount] = levelIndex(dq) * (qam ? 4 : 2) + levelIndex(di);
+        symbolCount++;
+        strobe += period + timingGain * timingError;
+    }
+
+    /**
+     * Slices one axis to the nearest constellation level.
+     * @param value The normalised component.
+     * @return The decided level.
+     */
+    private double decide(double value) {
+        if (!qam) {
+            return value >= 0 ? QPSK_LEVEL : -QPSK_LEVEL;
+        }
+        double level = Math.max(-3, Math.min(3, 2 * Math.floor(value / (2 * QAM16_LEVEL)) + 1));
+        return level * QAM16_LEVEL;
+    }
+
+    /**
+     * Numbers the decided level of one axis from the most negative.
+     * @param level The decided level.
+     * @return The level index, 0 to 1 for QPSK or 0 to 3 for 16-QAM.
+     */
+    private int levelIndex(double level) {
+        if (!qam) {
+            return level > 0 ? 1 : 0;
+        }
+        return (int) Math.round((level / QAM16_LEVEL + 3) / 2);
+    }
+
+    /**
+     * Linearly interpolates a buffer at a fractional position.
+     * @param buffer The samples.
+     * @param position The position in samples.
+     * @return The interpolated value.
+     */
+    private static double interpolate(double[] buffer, double position) {
+        int index = (int) Math.floor(position);
+        double mu = position - index;
+        return buffer[index] + mu * (buffer[index + 1] - buffer[index]);
+    }
+}
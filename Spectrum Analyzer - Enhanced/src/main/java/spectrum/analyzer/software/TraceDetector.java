@@ -0,0 +1,98 @@
+package spectrum.analyzer.software;
+
+/**
+ * Reduces a range of bins to a fixed number of trace points, like the display detector of an analyzer.
+ * <p>
+ * The bin range is split into equal buckets, one per point, and each bucket is reduced in a single
+ * pass: "Peak" keeps the largest value, "Negative Peak" the smallest, "Sample" the first bin of the
+ * bucket, "Average" the mean of the dB values and "RMS" the mean of the linear power. When there are
+ * fewer bins than points, every point takes the bin under its position. Drawing, marker readout and
+ * trace export all reduce through the same detector, so they report the same values.
+ */
+public class TraceDetector {
+    private static final double DB_TO_LN = Math.log(10) / 10;
+
+    private String mode = "Peak";
+
+    /**
+     * Sets the detector mode (Peak, Sample, Average, RMS or Negative Peak).
+     * @param mode The detector mode.
+     */
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Gets the detector mode.
+     * @return The detector mode.
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Reduces a frequency range of a frame to trace points.
+     * @param amplitudes The amplitudes in dBm.
+     * @param frameMinFreq The minimum frequency of the frame in Hz.
+     * @param frameMaxFreq The maximum frequency of the frame in Hz.
+     * @param fromFreq The frequency of the left edge of the first point in Hz.
+     * @param toFreq The frequency of the right edge of the last point in Hz.
+     * @param points Receives one value per point in dBm; NaN where the point lies outside the frame.
+     */
+    public void reduce(double[] amplitudes, double frameMinFreq, double frameMaxFreq,
+                       double fromFreq, double toFreq, double[] points) {
+        int n = amplitudes.length;
+        int count = points.length;
+        double binsPerHz = n / (frameMaxFreq - frameMinFreq);
+        double start = (fromFreq - frameMinFreq) * binsPerHz;
+        double binsPerPoint = (toFreq - fromFreq) * binsPerHz / count;
+        String detector = mode;
+        for (int p = 0; p < count; p++) {
+            double left = start + p * binsPerPoint;
+            int from = (int) Math.floor(left);
+            int to = Math.max(from + 1, (int) Math.floor(left + binsPerPoint));
+            if (to <= 0 || from >= n) {
+                points[p] = Double.NaN;
+                continue;
+            }
+            from = Math.max(0, from);
+            to = Math.min(n, to);
+            points[p] = reduceBucket(amplitudes, from, to, detector);
+        }
+    }
+
+    /**
+     * Reduces one bucket of bins.
+     * @param x The amplitudes in dBm.
+     * @param from The first bin, inclusive.
+     * @param to The last bin, exclusive.
+     * @param detector The detector mode.
+     * @return The point value in dBm.
+     */
+    private static double reduceBucket(double[] x, int from, int to, String detector) {
+        switch (detector) {
+            case "Sample":
+                return x[from];
+            case "Negative Peak": {
+                double min = x[from];
+                for (int i = from + 1; i < to; i++) min = Math.min(min, x[i]);
+                return min;
+            }
+            case "Average": {
+                double sum = 0;
+                for (int i = from; i < to; i++) sum += x[i];
+                return sum / (to - from);
+            }
+            case "RMS": {
+                double sum = 0;
+                for (int i = from; i < to; i++) sum += Math.exp(x[i] * DB_TO_LN);
+                return Math.log(sum / (to - from)) / DB_TO_LN;
+            }
+            default: {
+                double max = x[from];
+                for (int i = from + 1; i < to; i++) max = Math.max(max, x[i]);
+                return max;
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Holds several display traces that are updated in place from every published frame.
+ * <p>
+ * Each trace has a mode: "Off", "Clear/Write" (the latest frame), "Max Hold", "Min Hold", "Average"
+ * (running mean of linear power), "Log Average" (running mean of dB values) or "Video Average"
+ * (exponential moving average of dB values). The averages weight frame {@code k} by {@code 1/k} until
+ * the average count is reached and by {@code 1/count} afterwards, so they settle like an analyzer's
+ * averaging and then keep following slow changes. Trace values, linear power accumulators, frame
+ * counts and modes live in parallel primitive arrays, and each frame costs one O(n) loop per active
+ * trace with no allocation.
+ */
+public class TraceStore {
+    public static final int TRACE_COUNT = 3;
+    private static final double DB_TO_LN = Math.log(10) / 10;
+
+    private final String[] modes = new String[TRACE_COUNT];
+    private final long[] counts = new long[TRACE_COUNT];
+    private double[][] values = new double[TRACE_COUNT][0];
+    private double[][] power = new double[TRACE_COUNT][0];
+    private int binCount;
+    private int averageCount = 16;
+    private double videoFactor = 0.2;
+
+    /**
+     * Constructs a TraceStore with every trace switched off.
+     */
+    public TraceStore() {
+        Arrays.fill(modes, "Off");
+    }
+
+    /**
+     * Sets the mode of a trace and restarts it.
+     * @param trace The trace index.
+     * @param mode The trace mode.
+     */
+    public synchronized void setMode(int trace, String mode) {
+        modes[trace] = mode;
+        counts[trace] = 0;
+    }
+
+    /**
+     * Gets the mode of a trace.
+     * @param trace The trace index.
+     * @return The trace mode.
+     */
+    public synchronized String getMode(int trace) {
+        return modes[trace];
+    }
+
+    /**
+     * Sets the number of frames after which averages switch from cumulative to exponential weighting.
+     * @param averageCount The average count N.
+     */
+    public synchronized void setAverageCount(int averageCount) {
+        this.averageCount = Math.max(1, averageCount);
+    }
+
+    /**
+     * Sets the weight of the newest frame in the video average.
+     * @param videoFactor The weight, between 0 and 1.
+     */
+    public synchronized void setVideoFactor(double videoFactor) {
+        this.videoFactor = Math.max(0.0, Math.min(videoFactor, 1.0));
+    }
+
+    /**
+     * Restarts a trace from the next frame.
+     * @param trace The trace index.
+     */
+    public synchronized void reset(int trace) {
+        counts[trace] = 0;
+    }
+
+    /**
+     * Restarts every trace, for example after the span changed.
+     */
+    public synchronized void resetAll() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Applies a frame to every active trace.
+     * @param amplitudes The amplitudes in dBm.
+     */
+    public synchronized void update(double[] amplitudes) {
+        int n = amplitudes.length;
+        if (n != binCount) {
+            binCount = n;
+            for (int t = 0; t < TRACE_COUNT; t++) {
+                values[t] = new double[n];
+                power[t] = new double[n];
+            }
+            resetAll();
+        }
+        for (int t = 0; t < TRACE_COUNT; t++) {
+            String mode = modes[t];
+            if (mode.equals("Off")) continue;
+            double[] v = values[t];
+            long k = ++counts[t];
+            if (k == 1 || mode.equals("Clear/Write")) {
+                System.arraycopy(amplitudes, 0, v, 0, n);
+                if (mode.equals("Average")) {
+                    toPower(amplitudes, power[t]);
+                }
+                continue;
+            }
+            double weight = 1.0 / Math.min(k, averageCount);
+            switch (mode) {
+                case "Max Hold":
+                    for (int i = 0; i < n; i++) v[i] = Math.max(v[i], amplitudes[i]);
+                    break;
+                case "Min Hold":
+                    for (int i = 0; i < n; i++) v[i] = Math.min(v[i], amplitudes[i]);
+                    break;
+                case "Log Average":
+                    for (int i = 0; i < n; i++) v[i] += weight * (amplitudes[i] - v[i]);
+                    break;
+                case "Video Average":
+                    for (int i = 0; i < n; i++) v[i] += videoFactor * (amplitudes[i] - v[i]);
+                    break;
+                case "Average":
+                    double[] p = power[t];
+                    for (int i = 0; i < n; i++) p[i] += weight * (Math.exp(amplitudes[i] * DB_TO_LN) - p[i]);
+                    for (int i = 0; i < n; i++) v[i] = Math.log(p[i]) / DB_TO_LN;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Copies the values of a trace.
+     * @param trace The trace index.
+     * @param out Receives the values in dBm; must hold the bin count.
+     * @return True if the trace is active, has seen a frame and matches the size of the output.
+     */
+    public synchronized boolean copyTrace(int trace, double[] out) {
+        if (modes[trace].equals("Off") || counts[trace] == 0 || out.length != binCount) return false;
+        System.arraycopy(values[trace], 0, out, 0, binCount);
+        return true;
+    }
+
+    /**
+     * Gets the number of bins of the traces.
+     * @return The bin count.
+     */
+    public synchronized int getBinCount() {
+        return binCount;
+    }
+
+    /**
+     * Converts dB values to linear power.
+     * @param amplitudes The amplitudes in dBm.
+     * @param out Receives the power in milliwatts.
+     */
+    private static void toPower(double[] amplitudes, double[] out) {
+        for (int i = 0; i < amplitudes.length; i++) {
+            out[i] = Math.exp(amplitudes[i] * DB_TO_LN);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package spectrum.analyzer.software;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams 16-bit mono PCM audio to a WAV file.
+ * <p>
+ * The RIFF header is written with zero sizes when the file is opened, samples are appended as they
+ * arrive, and the RIFF and data chunk sizes are patched in when the sink is closed.
+ */
+public class WavFileSink implements PcmSink {
+    private static final int HEADER_SIZE = 44;
+
+    private final Path path;
+    private FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+    private long dataBytes;
+
+    /**
+     * Constructs a WavFileSink.
+     * @param path The WAV file to create or overwrite.
+     */
+    public WavFileSink(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Gets the WAV file path.
+     * @return The path.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void open(int sampleRate) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        dataBytes = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0x46464952) // "RIFF"
+                .putInt(0)
+                .putInt(0x45564157) // "WAVE"
+                .putInt(0x20746D66) // "fmt "
+                .putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) 1) // mono
+                .putInt(sampleRate)
+                .putInt(sampleRate * 2)
+                .putShort((short) 2)
+                .putShort((short) 16)
+                .putInt(0x61746164) // "data"
+                .putInt(0)
+                .flip();
+        writeFully(header, 0);
+    }
+
+    @Override
+    public void write(short[] samples, int count) throws IOException {
+        if (buffer.capacity() < 2 * count) {
+            buffer = ByteBuffer.allocateDirect(2 * count).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        buffer.clear();
+        buffer.asShortBuffer().put(samples, 0, count);
+        buffer.limit(2 * count);
+        writeFully(buffer, HEADER_SIZE + dataBytes);
+        dataBytes += 2L * count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) return;
+        try {
+            ByteBuffer size = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            size.putInt((int) Math.min(0xFFFFFFFFL, 36 + dataBytes)).flip();
+            writeFully(size, 4);
+            size.clear();
+            size.putInt((int) Math.min(0xFFFFFFFFL, dataBytes)).flip();
+            writeFully(size, 40);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Writes a buffer completely at an absolute file position.
+     * @param source The bytes to write.
+     * @param position The file position.
+     * @throws IOException If writing fails.
+     */
+    private void writeFully(ByteBuffer source, long position) throws IOException {
+        while (source.hasRemaining()) {
+            position += channel.write(source, position);
+        }
+    }
+}
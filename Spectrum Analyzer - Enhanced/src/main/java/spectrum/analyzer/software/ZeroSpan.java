@@ -0,0 +1,229 @@
+package spectrum.analyzer.software;
+
+import java.util.Arrays;
+
+/**
+ * Zero-span measurement: the power at one frequency plotted against time.
+ * <p>
+ * The IQ stream is mixed down by a numerically controlled oscillator so the tuned frequency sits at DC,
+ * filtered by the resolution bandwidth filter and envelope detected. The RBW filter is a cascade of
+ * {@value #RBW_STAGES} identical one-pole low-pass sections, which approximates the Gaussian response of
+ * an analog analyzer and costs a few multiplies per sample whatever the bandwidth. Each sweep spreads the
+ * sweep time over a fixed number of display columns and keeps the peak power of the samples that fall
+ * into each column, so the trace stays continuous at any decimation.
+ * <p>
+ * In free run a new sweep starts as soon as the previous one ends. With a trigger level, the next sweep
+ * waits until the envelope rises through the level. Sweeps overwrite the previous trace column by column,
+ * like the sweep of a real instrument.
+ */
+public class ZeroSpan {
+    private static final int RBW_STAGES = 4;
+    private static final double MIN_POWER_DB = -200;
+
+    private final double sampleRate;
+    private double frequency;
+    private double resolutionBandwidth = 10_000.0;
+    private double sweepTime = 0.02;
+    private double triggerLevel = Double.NaN;
+    private double phaseStepCos = 1;
+    private double phaseStepSin;
+    private double phasorI = 1;
+    private double phasorQ;
+    private double rbwGain;
+    private final double[] stageI = new double[RBW_STAGES];
+    private final double[] stageQ = new double[RBW_STAGES];
+    private double[] trace = new double[0];
+    private int column;
+    private long sweepSample;
+    private long sweepSamples;
+    private double columnPeak;
+    private boolean armed;
+    private double previousPower;
+
+    /**
+     * Constructs a ZeroSpan tuned to DC, free running, with no display columns yet.
+     * @param sampleRate The IQ sample rate in Hz.
+     */
+    public ZeroSpan(double sampleRate) {
+        this.sampleRate = sampleRate;
+        updateFilter();
+        updateSweep();
+    }
+
+    /**
+     * Tunes to a frequency, clamped to the band the IQ stream covers.
+     * @param frequency The frequency relative to the IQ centre in Hz.
+     */
+    public synchronized void setFrequency(double frequency) {
+        // Beyond half the sample rate the oscillator would alias back into the band
+        this.frequency = Math.max(-sampleRate / 2, Math.min(sampleRate / 2, frequency));
+        phaseStepCos = Math.cos(-2 * Math.PI * this.frequency / sampleRate);
+        phaseStepSin = Math.sin(-2 * Math.PI * this.frequency / sampleRate);
+    }
+
+    /**
+     * Gets the tuned frequency.
+     * @return The frequency relative to the IQ centre in Hz.
+     */
+    public synchronized double getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * Sets the resolution bandwidth and clears the filter.
+     * @param resolutionBandwidth The two-sided 3 dB bandwidth in Hz.
+     */
+    public synchronized void setResolutionBandwidth(double resolutionBandwidth) {
+        this.resolutionBandwidth = Math.max(1, Math.min(sampleRate / 4, resolutionBandwidth));
+        updateFilter();
+    }
+
+    /**
+     * Gets the resolution bandwidth.
+     * @return The two-sided 3 dB bandwidth in Hz.
+     */
+    public synchronized double getResolutionBandwidth() {
+        return resolutionBandwidth;
+    }
+
+    /**
+     * Sets the duration of one sweep across the display and restarts the sweep.
+     * @param sweepTime The sweep time in seconds.
+     */
+    public synchronized void setSweepTime(double sweepTime) {
+        this.sweepTime = sweepTime;
+        updateSweep();
+    }
+
+    /**
+     * Gets the duration of one sweep.
+     * @return The sweep time in seconds.
+     */
+    public synchronized double getSweepTime() {
+        return sweepTime;
+    }
+
+    /**
+     * Sets the trigger level and restarts the sweep.
+     * @param triggerLevel The level in dB relative to a unit carrier, or NaN to free run.
+     */
+    public synchronized void setTriggerLevel(double triggerLevel) {
+        this.triggerLevel = triggerLevel;
+        updateSweep();
+    }
+
+    /**
+     * Gets the trigger level.
+     * @return The level in dB relative to a unit carrier, or NaN when free running.
+     */
+    public synchronized double getTriggerLevel() {
+        return triggerLevel;
+    }
+
+    /**
+     * Tells whether the sweep is waiting for the envelope to cross the trigger level.
+     * @return True while armed and not yet triggered.
+     */
+    public synchronized boolean isWaitingForTrigger() {
+        return armed;
+    }
+
+    /**
+     * Sets the number of display columns a sweep is decimated to, clearing the trace if it changes.
+     * @param columns The number of columns.
+     */
+    public synchronized void setColumns(int columns) {
+        if (columns == trace.length || columns < 1) return;
+        trace = new double[columns];
+        updateSweep();
+    }
+
+    /**
+     * Runs a block of IQ samples through the mixer, RBW filter and envelope detector, continuing from
+     * the state left by the previous block.
+     * @param i The in-phase samples.
+     * @param q The quadrature samples.
+     * @param count The number of samples.
+     */
+    public synchronized void process(double[] i, double[] q, int count) {
+        double triggerPower = Math.pow(10, triggerLevel / 10);
+        int columns = trace.length;
+        for (int n = 0; n < count; n++) {
+            double x = i[n] * phasorI - q[n] * phasorQ;
+            double y = i[n] * phasorQ + q[n] * phasorI;
+            double t = phasorI * phaseStepCos - phasorQ * phaseStepSin;
+            phasorQ = phasorI * phaseStepSin + phasorQ * phaseStepCos;
+            phasorI = t;
+            for (int s = 0; s < RBW_STAGES; s++) {
+                stageI[s] += rbwGain * (x - stageI[s]);
+                stageQ[s] += rbwGain * (y - stageQ[s]);
+                x = stageI[s];
+                y = stageQ[s];
+            }
+            double power = x * x + y * y;
+            if (armed) {
+                // Start on a rising edge through the level, not merely on being above it
+                boolean rising = previousPower < triggerPower && power >= triggerPower;
+                previousPower = power;
+                if (!rising) continue;
+                armed = false;
+            }
+            if (columns == 0) continue;
+            columnPeak = Math.max(columnPeak, power);
+            sweepSample++;
+            int next = (int) (sweepSample * columns / sweepSamples);
+            if (next != column) {
+                // Sweeps shorter than the display spread one sample over several columns
+                double db = Math.max(MIN_POWER_DB, 10 * Math.log10(columnPeak));
+                while (column < next) {
+                    trace[column++] = db;
+                }
+                columnPeak = 0;
+                if (column >= columns) {
+                    column = 0;
+                    sweepSample = 0;
+                    armed = !Double.isNaN(triggerLevel);
+                    previousPower = power;
+                }
+            }
+        }
+        // Keep the oscillator on the unit circle against rounding drift
+        double norm = 1 / Math.hypot(phasorI, phasorQ);
+        phasorI *= norm;
+        phasorQ *= norm;
+    }
+
+    /**
+     * Copies the trace, one power value per column; columns not yet swept are NaN.
+     * @param out Receives up to {@code out.length} values in dB relative to a unit carrier.
+     * @return The column the sweep will write next.
+     */
+    public synchronized int copyTrace(double[] out) {
+        System.arraycopy(trace, 0, out, 0, Math.min(out.length, trace.length));
+        return column;
+    }
+
+    /**
+     * Sets the one-pole coefficient so that the whole cascade has the resolution bandwidth at 3 dB.
+     */
+    private void updateFilter() {
+        // N equal one-pole sections are 3 dB down at sqrt(2^(1/N) - 1) of a single section's corner
+        double corner = resolutionBandwidth / 2 / Math.sqrt(Math.pow(2, 1.0 / RBW_STAGES) - 1);
+        rbwGain = 1 - Math.exp(-2 * Math.PI * corner / sampleRate);
+        Arrays.fill(stageI, 0);
+        Arrays.fill(stageQ, 0);
+    }
+
+    /**
+     * Restarts the sweep at the first column with a cleared trace, armed if a trigger level is set.
+     */
+    private void updateSweep() {
+        sweepSamples = Math.max(1, Math.round(sweepTime * sampleRate));
+        sweepSample = 0;
+        column = 0;
+        columnPeak = 0;
+        Arrays.fill(trace, Double.NaN);
+        armed = !Double.isNaN(triggerLevel);
+        previousPower = Double.POSITIVE_INFINITY;
+    }
+}